@@ -0,0 +1,327 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// 접근 로그: 요청 처리 스레드는 링 버퍼 칸 하나에 값만 채워 넣고, 백그라운드 writer 스레드 하나가 꺼내서 파일에 쓴다
+// (System.out.println은 내부에서 락을 잡으므로 요청마다 바로 찍으면 요청 스레드끼리 줄을 서게 됨)
+//
+// 링 버퍼는 여러 생산자/하나의 소비자(MPSC)용 고정 크기 배열로, 칸마다 순번을 두어 락 없이 주고받는다
+//  - 생산자: tail을 CAS로 하나 올려 칸을 잡고 값을 채운 뒤 순번을 올려 공개한다. 칸이 비어 있지 않으면(가득 참) 버리고 dropped로 센다
+//  - 소비자: head의 칸 순번이 공개된 값이면 읽어서 포맷하고 칸을 다음 바퀴용으로 돌려준다
+// 생산자는 어떤 경우에도 기다리지 않는다.
+//
+// writer는 꺼낸 줄을 direct ByteBuffer에 UTF-8로 모았다가 한 번의 write로 파일에 쓰고,
+// 파일이 maxBytes를 넘으면 access.log → access.log.1 → ... → access.log.(maxFiles-1) 순으로 밀어내고 새 파일을 연다
+//
+// 형식 (ex) "%t %r %s %Dus %bB"):
+//   %t 시각  %m 메서드  %U 경로  %H 버전  %r 요청 줄  %s 상태 코드
+//   %D 처리 시간(마이크로초)  %T 처리 시간(밀리초)  %b 응답 바이트  %B 요청 바이트  %% '%'
+public class AccessLog {
+    static final String DEFAULT_FORMAT = "%t %r %s %Tms %bB";
+    private static final DateTimeFormatter TIME_FORMAT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    // 링 버퍼 칸 하나 (칸 객체는 처음에 만들어 두고 계속 재사용)
+    private static final class Slot {
+        long timeMillis;
+        String method;
+        String path;
+        String version;
+        int statusCode;
+        long nanos;
+        long bytesIn;
+        long bytesOut;
+        // null이 아니면 요청 줄 대신 오류 한 건
+        String message;
+        Throwable error;
+    }
+
+    private final int sampleRate;
+    private final char[] format;
+    private final Path file;
+    private final long maxBytes;
+    private final int maxFiles;
+
+    private final Slot[] slots;
+    // 칸별 순번: i번 칸은 순번이 pos면 pos번째 기록을 받을 수 있고, pos + 1이면 pos번째 기록이 공개된 상태
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // 소비자만 읽고 쓰는 다음 읽을 위치
+    private long head;
+    // 파일(또는 콘솔)까지 내보낸 위치 (종료할 때 기다리는 용도)
+    private volatile long flushedUpTo;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+
+    // 파일 쓰기 상태 (writer 스레드만 사용)
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder line = new StringBuilder(256);
+    private FileChannel channel;
+    private long fileSize;
+    private long cachedSecond = -1;
+    private String cachedTime;
+
+    // 기록하지 않는 로그 (sampleRate 0)
+    public AccessLog() {
+        this(0, 1, DEFAULT_FORMAT, null, 0, 0);
+    }
+
+    // capacity는 링 버퍼 칸 수 (2의 거듭제곱으로 올림), file이 null이면 콘솔로 출력
+    public AccessLog(int sampleRate, int capacity, String format, Path file, long maxBytes, int maxFiles) {
+        this.sampleRate = sampleRate;
+        this.format = format.toCharArray();
+        this.file = file;
+        this.maxBytes = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+        this.maxFiles = Math.max(1, maxFiles);
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new Slot[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            sequences.set(i, i);
+        }
+        if (sampleRate <= 0) return;
+        Thread writer = new Thread(this::writeLoop, "access-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // 처리가 끝난 요청 한 건 (샘플링에 걸리지 않았거나 버퍼가 가득 찼으면 버림)
+    public void log(HttpRequest request, int statusCode, long nanos, long bytesOut) {
+        if (sampleRate <= 0) return;
+        if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) return;
+        long pos = claim();
+        if (pos < 0) return;
+        Slot slot = slots[(int) pos & mask];
+        slot.timeMillis = System.currentTimeMillis();
+        slot.method = request.method();
+        slot.path = request.path();
+        slot.version = request.version();
+        slot.statusCode = statusCode;
+        slot.nanos = nanos;
+        slot.bytesIn = request.wireLength();
+        slot.bytesOut = bytesOut;
+        slot.message = null;
+        slot.error = null;
+        sequences.lazySet((int) pos & mask, pos + 1);
+    }
+
+    // 요청 처리 중 오류 한 건 (스택 트레이스는 writer 스레드가 만든다, 샘플링하지 않음)
+    public void error(String message, Throwable error) {
+        if (sampleRate <= 0) {
+            // 로그를 끈 경우에도 오류는 남긴다
+            System.out.println(message + ": " + error);
+            return;
+        }
+        long pos = claim();
+        if (pos < 0) return;
+        Slot slot = slots[(int) pos & mask];
+        slot.timeMillis = System.currentTimeMillis();
+        slot.message = message;
+        slot.error = error;
+        sequences.lazySet((int) pos & mask, pos + 1);
+    }
+
+    // 링 버퍼가 가득 차서 버린 건수
+    // 지금까지 기록한 줄이 파일에 다 써질 때까지 최대 timeoutMillis 대기 (서버 종료용)
+    public void awaitFlushed(long timeoutMillis) {
+        if (sampleRate <= 0) return;
+        long target = tail.get();
+        long until = System.nanoTime() + timeoutMillis * 1_000_000;
+        while (flushedUpTo < target && System.nanoTime() < until) {
+            LockSupport.parkNanos(1_000_000);
+        }
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    // 파일에 쓴 줄 수
+    public long written() {
+        return written.sum();
+    }
+
+    // 칸 하나 잡기 (가득 찼으면 dropped를 올리고 -1)
+    private long claim() {
+        while (true) {
+            long pos = tail.get();
+            long sequence = sequences.get((int) pos & mask);
+            if (sequence == pos) {
+                if (tail.compareAndSet(pos, pos + 1)) return pos;
+            } else if (sequence < pos) {
+                // 한 바퀴 전 기록을 writer가 아직 꺼내지 않음
+                dropped.increment();
+                return -1;
+            }
+            // sequence > pos: 다른 생산자가 먼저 잡았으므로 다시 시도
+        }
+    }
+
+    // writer 스레드: 공개된 기록을 모두 꺼내 버퍼에 쓰고, 더 없으면 파일에 내보낸 뒤 잠깐 쉰다
+    private void writeLoop() {
+        try {
+            openFile();
+        } catch (IOException e) {
+            System.out.println("접근 로그 파일을 열 수 없어 콘솔로 출력합니다: " + e.getMessage());
+            channel = null;
+        }
+        while (true) {
+            int drained = 0;
+            while (true) {
+                int index = (int) head & mask;
+                if (sequences.get(index) != head + 1) break;
+                Slot slot = slots[index];
+                format(slot);
+                // 칸의 참조를 비워서 요청 객체의 문자열이 오래 붙잡혀 있지 않게 함
+                slot.method = slot.path = slot.version = slot.message = null;
+                slot.error = null;
+                sequences.lazySet(index, head + slots.length);
+                head++;
+                drained++;
+                append();
+            }
+            if (drained > 0) {
+                written.add(drained);
+                flush();
+                flushedUpTo = head;
+            } else {
+                LockSupport.parkNanos(1_000_000);
+            }
+        }
+    }
+
+    // 칸 하나를 형식에 맞춰 line에 한 줄로
+    private void format(Slot slot) {
+        line.setLength(0);
+        if (slot.message != null) {
+            line.append(timeOf(slot.timeMillis)).append(" 오류: ").append(slot.message);
+            if (slot.error != null) {
+                StringWriter trace = new StringWriter();
+                slot.error.printStackTrace(new PrintWriter(trace));
+                line.append('\n').append(trace.toString().trim());
+            }
+            line.append('\n');
+            return;
+        }
+        for (int i = 0; i < format.length; i++) {
+            char c = format[i];
+            if (c != '%' || i + 1 == format.length) {
+                line.append(c);
+                continue;
+            }
+            switch (format[++i]) {
+                case 't': line.append(timeOf(slot.timeMillis)); break;
+                case 'm': line.append(slot.method); break;
+                case 'U': line.append(slot.path); break;
+                case 'H': line.append(slot.version != null ? slot.version : "-"); break;
+                case 'r':
+                    line.append(slot.method).append(' ').append(slot.path);
+                    if (slot.version != null) line.append(' ').append(slot.version);
+                    break;
+                case 's': line.append(slot.statusCode); break;
+                case 'D': line.append(slot.nanos / 1000); break;
+                case 'T': line.append((slot.nanos / 1000) / 1000.0); break;
+                case 'b': line.append(slot.bytesOut); break;
+                case 'B': line.append(slot.bytesIn); break;
+                case '%': line.append('%'); break;
+                default: line.append('%').append(format[i]); break;
+            }
+        }
+        line.append('\n');
+    }
+
+    // 같은 초의 기록은 시각 문자열을 다시 만들지 않고 밀리초만 바꿈
+    private String timeOf(long millis) {
+        long second = millis / 1000;
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedTime = TIME_FORMAT.format(Instant.ofEpochMilli(second * 1000));
+        }
+        int ms = (int) (millis % 1000);
+        return cachedTime.substring(0, cachedTime.length() - 3) + (ms < 10 ? "00" : ms < 100 ? "0" : "") + ms;
+    }
+
+    // line을 UTF-8로 버퍼에 (버퍼가 차면 내보내고 이어서)
+    private void append() {
+        CharBuffer chars = CharBuffer.wrap(line);
+        while (true) {
+            encoder.encode(chars, buffer, true);
+            if (!chars.hasRemaining()) break;
+            flush();
+        }
+        encoder.reset();
+    }
+
+    // 모아 둔 바이트를 파일(또는 콘솔)에 쓰고, 파일이 maxBytes를 넘었으면 교체
+    private void flush() {
+        buffer.flip();
+        try {
+            if (channel == null) {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                System.out.write(bytes, 0, bytes.length);
+                System.out.flush();
+            } else {
+                while (buffer.hasRemaining()) {
+                    fileSize += channel.write(buffer);
+                }
+                if (fileSize >= maxBytes) rotate();
+            }
+        } catch (IOException e) {
+            System.out.println("접근 로그를 쓰는 중 오류가 발생했습니다: " + e.getMessage());
+        }
+        buffer.clear();
+    }
+
+    private void openFile() throws IOException {
+        if (file == null) return;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileSize = channel.size();
+    }
+
+    // access.log.(n-1) → access.log.n, ..., access.log → access.log.1 (가장 오래된 파일은 덮어써서 버림)
+    private void rotate() throws IOException {
+        channel.close();
+        List<Path> chain = new ArrayList<>(maxFiles);
+        chain.add(file);
+        for (int i = 1; i < maxFiles; i++) {
+            chain.add(file.resolveSibling(file.getFileName() + "." + i));
+        }
+        if (maxFiles == 1) {
+            Files.deleteIfExists(file);
+        }
+        for (int i = chain.size() - 1; i > 0; i--) {
+            if (Files.exists(chain.get(i - 1))) {
+                Files.move(chain.get(i - 1), chain.get(i), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        openFile();
+    }
+}
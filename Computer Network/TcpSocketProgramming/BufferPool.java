@@ -0,0 +1,23 @@
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// 연결마다 쓰는 읽기/쓰기 바이트 버퍼 풀 (연결이 끝나면 돌려받아 다음 연결이 재사용)
+public class BufferPool {
+    static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 1024;
+
+    private static final Queue<byte[]> POOL = new ConcurrentLinkedQueue<>();
+
+    private BufferPool() {
+    }
+
+    static byte[] acquire() {
+        byte[] buffer = POOL.poll();
+        return buffer != null ? buffer : new byte[BUFFER_SIZE];
+    }
+
+    // 크기가 다른 버퍼(큰 요청 때문에 키운 것 등)는 받지 않는다
+    static void release(byte[] buffer) {
+        if (buffer.length == BUFFER_SIZE && POOL.size() < MAX_POOLED_BUFFERS) POOL.add(buffer);
+    }
+}
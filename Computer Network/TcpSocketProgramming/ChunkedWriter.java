@@ -0,0 +1,129 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+
+// Transfer-Encoding: chunked 본문 작성기
+// 내용을 chunkSize 바이트 정도씩 모아 "길이(16진수)\r\n내용\r\n" 청크로 내보내고, finish()에서 마지막 빈 청크를 보낸다
+// encoding(gzip/deflate)을 주면 모은 내용을 압축 스트림에 넘기고, 압축기가 내놓는 바이트를 청크로 내보낸다
+public class ChunkedWriter {
+    private static final int DEFAULT_CHUNK_SIZE = 8 * 1024;
+
+    private final HttpResponseWriter writer;
+    private final int chunkSize;
+    private final StringBuilder pending = new StringBuilder();
+    // 압축하지 않으면 null
+    private final DeflaterOutputStream compressor;
+
+    public ChunkedWriter(HttpResponseWriter writer) {
+        this(writer, DEFAULT_CHUNK_SIZE, null);
+    }
+
+    public ChunkedWriter(HttpResponseWriter writer, String encoding) {
+        this(writer, DEFAULT_CHUNK_SIZE, encoding);
+    }
+
+    public ChunkedWriter(HttpResponseWriter writer, int chunkSize, String encoding) {
+        this.writer = writer;
+        this.chunkSize = chunkSize;
+        try {
+            this.compressor = encoding == null ? null : ContentEncoding.compressor(new ChunkStream(), encoding, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void write(String text) {
+        pending.append(text);
+        // 문자 수는 바이트 수 이하이므로 문자 수가 chunkSize를 넘으면 바이트 수도 넘는다
+        if (pending.length() >= chunkSize) flushChunk();
+    }
+
+    // 사용자 한 명을 JSON 한 줄로 (중간 문자열 없이 바로 붙임)
+    public void writeLine(User user) {
+        writeLine(user, null);
+    }
+
+    // fields에 있는 필드만 (null이면 전부)
+    public void writeLine(User user, String[] fields) {
+        user.appendJson(pending, fields);
+        pending.append('\n');
+        if (pending.length() >= chunkSize) flushChunk();
+    }
+
+    // 이미 만들어진 본문 바이트 (다른 샤드의 응답을 그대로 이어 보낼 때), 모아둔 글자를 먼저 내보낸다
+    public void write(byte[] bytes, int offset, int length) {
+        if (length == 0) return;
+        if (pending.length() > 0) writeChunk();
+        if (compressor != null) {
+            try {
+                compressor.write(bytes, offset, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+        writer.writeHex(length);
+        writer.writeAscii("\r\n");
+        writer.write(bytes, offset, length);
+        writer.writeAscii("\r\n");
+    }
+
+    // 모아둔 내용을 청크 하나로 보내고 소켓까지 flush
+    public void flushChunk() {
+        if (pending.length() == 0) return;
+        writeChunk();
+        writer.flush();
+    }
+
+    // 남은 내용과 마지막 청크(길이 0) 전송 (작은 응답은 헤더부터 끝까지 한 번에 나가도록 같이 보냄)
+    public void finish() {
+        if (pending.length() > 0) writeChunk();
+        if (compressor != null) {
+            // 압축기에 남은 내용과 gzip 트레일러를 마지막 청크들로 내보내고 Deflater 반환
+            try {
+                compressor.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        writer.writeAscii("0\r\n\r\n");
+        writer.flush();
+    }
+
+    private void writeChunk() {
+        String chunk = pending.toString();
+        pending.setLength(0);
+        if (compressor != null) {
+            // 압축기 버퍼가 찰 때마다 ChunkStream으로 청크가 나간다
+            try {
+                compressor.write(chunk.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+        writer.writeHex(HttpResponseWriter.utf8Length(chunk));
+        writer.writeAscii("\r\n");
+        writer.write(chunk);
+        writer.writeAscii("\r\n");
+    }
+
+    // 압축기가 내놓는 바이트를 그대로 청크 하나로 (닫아도 응답은 끝나지 않음)
+    private final class ChunkStream extends OutputStream {
+        @Override
+        public void write(int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            if (length == 0) return;
+            writer.writeHex(length);
+            writer.writeAscii("\r\n");
+            writer.write(bytes, offset, length);
+            writer.writeAscii("\r\n");
+        }
+    }
+}
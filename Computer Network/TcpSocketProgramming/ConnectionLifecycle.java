@@ -0,0 +1,170 @@
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 연결 하나의 수명 관리
+// 단계(다음 요청 대기, 헤더 읽기, 본문 읽기, 처리 중)마다 제한 시간을 두고, 그 안에 진행이 없으면 closer로 연결을 끊는다
+// (요청을 보내지 않거나 헤더/본문을 아주 느리게 보내서 스레드와 메모리를 붙잡는 클라이언트 차단)
+// 타이머는 모든 연결이 TimingWheel 하나를 같이 쓰고 연결마다 예약은 하나만 둔다
+// 단계가 바뀌면 마감 시각만 고치고, 예약이 실행됐을 때 마감이 아직 남았으면 그때 다시 예약한다 (요청마다 예약/취소하지 않음)
+public class ConnectionLifecycle {
+    enum Phase { IDLE, HEADERS, BODY, BUSY }
+
+    static final String CLOSE_HEADER = "Connection: close";
+
+    // 다음 요청을 기다리는 시간, 요청 줄과 헤더를 다 받는 데 주는 시간, 본문을 받다가 멈춰 있어도 되는 시간
+    static long idleTimeoutMillis = 30_000;
+    static long headerTimeoutMillis = 10_000;
+    static long bodyTimeoutMillis = 30_000;
+    // 응답을 만드는 쪽이 클라이언트가 읽지 않아 쓰기를 더 못 하고 멈춰 있어도 되는 시간
+    static long writeTimeoutMillis = 30_000;
+    // 연결 하나에서 처리할 최대 요청 수 (0이면 제한 없음)
+    static int maxRequests = 0;
+
+    private static final TimingWheel WHEEL = new TimingWheel(100, 512, "connection-timeouts");
+    // 열려 있는 연결 (종료할 때 다음 요청을 기다리는 연결을 바로 닫기 위해)
+    private static final Set<ConnectionLifecycle> OPEN = ConcurrentHashMap.newKeySet();
+    private static volatile boolean draining;
+
+    // 연결을 끊는 작업 (휠 스레드나 drain()을 부른 스레드에서 실행되므로 금방 끝나야 함)
+    private final Runnable closer;
+    private volatile Phase phase = Phase.IDLE;
+    // 이 시각(System.nanoTime)까지 단계가 끝나지 않으면 끊는다 (처리 중이면 Long.MAX_VALUE)
+    private volatile long deadline;
+    // 걸려 있는 예약의 실행 시각과 세대 (예약을 바꾸면 이전 예약은 실행돼도 무시)
+    private volatile long scheduledAt = Long.MAX_VALUE;
+    private int generation;
+    private TimingWheel.Timeout timeout;
+    // 받은 요청 수 (연결을 맡은 스레드만 사용)
+    private int requests;
+    // 제한 시간이 지나 끊었으면 그때의 단계
+    private volatile Phase expiredIn;
+    private volatile boolean closed;
+
+    // --idleTimeout, --headerTimeout, --bodyTimeout, --writeTimeout (초), --maxRequests
+    static void configure(ServerConfig config) {
+        idleTimeoutMillis = config.getInt("idleTimeout", 30) * 1000L;
+        headerTimeoutMillis = config.getInt("headerTimeout", 10) * 1000L;
+        bodyTimeoutMillis = config.getInt("bodyTimeout", 30) * 1000L;
+        writeTimeoutMillis = config.getInt("writeTimeout", 30) * 1000L;
+        maxRequests = config.getInt("maxRequests", 0);
+    }
+
+    public ConnectionLifecycle(Runnable closer) {
+        this.closer = closer;
+        OPEN.add(this);
+        idle();
+    }
+
+    // 다음 요청을 기다리는 중 (부를 때마다 제한 시간이 다시 시작됨), 서버가 종료 중이면 바로 끊는다
+    public void idle() {
+        enter(Phase.IDLE, idleTimeoutMillis);
+        if (draining) closer.run();
+    }
+
+    // 요청의 앞부분을 받았고 헤더가 아직 다 오지 않음 (헤더 제한 시간은 처음 들어왔을 때부터 잼)
+    public void readingHeaders() {
+        if (phase != Phase.HEADERS) enter(Phase.HEADERS, headerTimeoutMillis);
+    }
+
+    // 본문을 받는 중 (받을 때마다 불러서 제한 시간을 늘림)
+    public void readingBody() {
+        enter(Phase.BODY, bodyTimeoutMillis);
+    }
+
+    // 요청을 처리하는 중 (제한 시간 없음)
+    public void busy() {
+        deadline = Long.MAX_VALUE;
+        phase = Phase.BUSY;
+    }
+
+    // 응답을 보내는 등 진행이 있었음 (대기/본문 단계의 제한 시간을 다시 시작)
+    public void touch() {
+        Phase current = phase;
+        if (current == Phase.IDLE) enter(Phase.IDLE, idleTimeoutMillis);
+        else if (current == Phase.BODY) enter(Phase.BODY, bodyTimeoutMillis);
+    }
+
+    public Phase phase() {
+        return phase;
+    }
+
+    // 제한 시간이 지나 끊었으면 그때의 단계 (아니면 null)
+    public Phase expiredIn() {
+        return expiredIn;
+    }
+
+    // 요청 하나를 받을 때 호출: 이 요청의 응답 뒤에 연결을 닫아야 하면 true
+    // (클라이언트가 원하거나, 최대 요청 수에 닿았거나, 서버가 종료 중)
+    public boolean lastRequest(HttpRequest request) {
+        requests++;
+        return request.wantsClose() || (maxRequests > 0 && requests >= maxRequests) || draining;
+    }
+
+    // 응답에 붙일 연결 헤더 (닫을 거면 Connection: close, 아니면 Keep-Alive로 남은 대기 시간과 요청 수를 알림)
+    public String connectionHeader(boolean last) {
+        if (last) return CLOSE_HEADER;
+        String header = "Keep-Alive: timeout=" + idleTimeoutMillis / 1000;
+        return maxRequests > 0 ? header + ", max=" + (maxRequests - requests) : header;
+    }
+
+    // 연결이 끝났을 때 (예약 취소)
+    public synchronized void close() {
+        closed = true;
+        OPEN.remove(this);
+        if (timeout != null) timeout.cancel();
+        timeout = null;
+    }
+
+    // 서버 종료: 새 요청의 응답부터 Connection: close를 붙이고, 다음 요청을 기다리던 연결은 바로 끊는다
+    // (처리 중인 연결은 응답을 마친 뒤 스스로 닫는다)
+    static void drain() {
+        draining = true;
+        for (ConnectionLifecycle lifecycle : OPEN) {
+            if (lifecycle.phase == Phase.IDLE) lifecycle.closer.run();
+        }
+    }
+
+    static boolean draining() {
+        return draining;
+    }
+
+    // 열려 있는 연결 수
+    static int openConnections() {
+        return OPEN.size();
+    }
+
+    private void enter(Phase next, long limitMillis) {
+        long at = System.nanoTime() + limitMillis * 1_000_000;
+        deadline = at;
+        phase = next;
+        // 걸려 있는 예약보다 마감이 빠를 때만 다시 예약
+        if (at < scheduledAt) reschedule(at);
+    }
+
+    private synchronized void reschedule(long at) {
+        if (closed || at >= scheduledAt) return;
+        if (timeout != null) timeout.cancel();
+        int current = ++generation;
+        scheduledAt = at;
+        long delayMillis = Math.max(0, (at - System.nanoTime() + 999_999) / 1_000_000);
+        timeout = WHEEL.schedule(() -> expire(current), delayMillis);
+    }
+
+    // 휠 스레드: 마감이 지났으면 끊고, 남았으면 남은 만큼 다시 예약 (처리 중이면 대기 시간 뒤에 다시 확인)
+    private void expire(int fired) {
+        synchronized (this) {
+            if (closed || fired != generation) return;
+            timeout = null;
+            scheduledAt = Long.MAX_VALUE;
+            long now = System.nanoTime();
+            long at = deadline;
+            if (at > now) {
+                reschedule(at == Long.MAX_VALUE ? now + idleTimeoutMillis * 1_000_000 : at);
+                return;
+            }
+            expiredIn = phase;
+        }
+        HttpServer.stats.connectionTimedOut();
+        closer.run();
+    }
+}
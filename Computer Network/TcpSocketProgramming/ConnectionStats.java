@@ -0,0 +1,73 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 연결 수락/거절/활성 개수와 요청 거절, 제한 시간 초과로 끊은 연결 개수 집계
+public class ConnectionStats {
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong rejectedRequests = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicInteger active = new AtomicInteger();
+
+    public void connectionAccepted() {
+        accepted.incrementAndGet();
+        active.incrementAndGet();
+    }
+
+    public void connectionClosed() {
+        active.decrementAndGet();
+    }
+
+    public void connectionRejected() {
+        rejected.incrementAndGet();
+    }
+
+    public void requestRejected() {
+        rejectedRequests.incrementAndGet();
+    }
+
+    public void connectionTimedOut() {
+        timedOut.incrementAndGet();
+    }
+
+    public long accepted() {
+        return accepted.get();
+    }
+
+    public long rejected() {
+        return rejected.get();
+    }
+
+    public long rejectedRequests() {
+        return rejectedRequests.get();
+    }
+
+    public long timedOut() {
+        return timedOut.get();
+    }
+
+    public int active() {
+        return active.get();
+    }
+
+    @Override
+    public String toString() {
+        return "accepted=" + accepted() + " rejected=" + rejected()
+            + " active=" + active() + " rejectedRequests=" + rejectedRequests() + " timedOut=" + timedOut();
+    }
+
+    // intervalSeconds마다 콘솔에 통계 출력 (0 이하면 출력하지 않음)
+    public void startReporting(int intervalSeconds) {
+        if (intervalSeconds <= 0) return;
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> System.out.println("연결 통계: " + this),
+            intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+}
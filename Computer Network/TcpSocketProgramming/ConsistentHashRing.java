@@ -0,0 +1,58 @@
+import java.util.Arrays;
+import java.util.HashSet;
+
+// id를 샤드 번호로 나누는 일관된 해시 링
+// 샤드마다 가상 노드를 vnodes개씩 링 위에 흩어 두고, id의 해시에서 시계 방향으로 처음 만나는 가상 노드의 샤드가 주인이다
+// 샤드가 하나 늘거나 줄어도 그 샤드의 가상 노드 구간에 있던 id만 옮겨 가고 나머지는 그대로 남는다
+// (가상 노드는 목록에서의 순서가 아니라 샤드 주소로 만들므로, 중간의 샤드를 빼서 뒤 샤드의 번호가 바뀌어도 링 위치는 그대로)
+// 링은 정렬된 long 배열과 샤드 번호 배열로 두고 이분 탐색으로 찾는다 (TreeMap보다 객체가 적고 빠름)
+public class ConsistentHashRing {
+    private final long[] points;
+    private final int[] owners;
+
+    // nodes[i]는 샤드 i의 주소 (host:port), ownerOf()는 그 번호 i를 돌려준다
+    public ConsistentHashRing(String[] nodes, int vnodes) {
+        if (nodes.length == 0) throw new IllegalArgumentException("샤드가 하나 이상 있어야 합니다.");
+        if (new HashSet<>(Arrays.asList(nodes)).size() != nodes.length) {
+            throw new IllegalArgumentException("샤드 주소가 중복되었습니다: " + String.join(",", nodes));
+        }
+        int count = nodes.length * Math.max(1, vnodes);
+        long[][] entries = new long[count][];
+        int n = 0;
+        for (int shard = 0; shard < nodes.length; shard++) {
+            for (int v = 0; v < Math.max(1, vnodes); v++) {
+                entries[n++] = new long[] {hash(nodes[shard] + "#" + v), shard};
+            }
+        }
+        Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+        points = new long[count];
+        owners = new int[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = entries[i][0];
+            owners[i] = (int) entries[i][1];
+        }
+    }
+
+    // key를 맡는 샤드 번호
+    public int ownerOf(String key) {
+        int i = Arrays.binarySearch(points, hash(key));
+        if (i < 0) i = -i - 1;
+        return owners[i == points.length ? 0 : i];
+    }
+
+    // 문자열의 64비트 해시 (FNV-1a로 섞은 뒤 MurmurHash3의 마무리 단계로 비트를 고르게 퍼뜨림)
+    // String.hashCode()는 비슷한 id가 링 위에 몰리므로 쓰지 않는다
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
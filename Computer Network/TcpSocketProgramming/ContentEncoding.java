@@ -0,0 +1,92 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// 응답 본문 압축 (Content-Encoding: gzip / deflate)
+// deflate는 HTTP 규격대로 zlib 헤더가 붙은 형식 (Deflater 기본값)
+public class ContentEncoding {
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+
+    // Accept-Encoding 값에서 쓸 인코딩 고르기 (q값이 같으면 gzip, 받을 수 있는 게 없으면 null)
+    // ex) "gzip, deflate", "deflate;q=1.0, gzip;q=0.5", "*"
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) return null;
+        double gzip = quality(acceptEncoding, GZIP);
+        double deflate = quality(acceptEncoding, DEFLATE);
+        if (gzip <= 0 && deflate <= 0) return null;
+        return gzip >= deflate ? GZIP : DEFLATE;
+    }
+
+    // Accept-Encoding에서 coding의 q값 (적혀 있지 않으면 *의 q값, 둘 다 없으면 0)
+    static double quality(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) return 0;
+        double any = 0;
+        for (String part : acceptEncoding.split(",")) {
+            int semicolon = part.indexOf(';');
+            String name = (semicolon == -1 ? part : part.substring(0, semicolon)).trim().toLowerCase();
+            double q = semicolon == -1 ? 1 : qualityOf(part.substring(semicolon + 1));
+            if (name.equals(coding) || (coding.equals(GZIP) && name.equals("x-gzip"))) return q;
+            if (name.equals("*")) any = q;
+        }
+        return any;
+    }
+
+    // 본문 전체를 한 번에 압축
+    static byte[] compress(byte[] body, String encoding) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (OutputStream compressor = compressor(out, encoding, false)) {
+            compressor.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // out으로 압축해서 쓰는 스트림 (syncFlush면 flush()할 때마다 지금까지의 내용을 풀 수 있게 내보낸다)
+    static DeflaterOutputStream compressor(OutputStream out, String encoding, boolean syncFlush) throws IOException {
+        if (encoding.equals(GZIP)) return new GZIPOutputStream(out, 8192, syncFlush);
+        return new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION), 8192, syncFlush) {
+            @Override
+            public void close() throws IOException {
+                // 직접 만든 Deflater는 스트림이 닫아 주지 않으므로 네이티브 메모리를 여기서 반환
+                try {
+                    super.close();
+                } finally {
+                    def.end();
+                }
+            }
+        };
+    }
+
+    // Content-Encoding에 맞게 압축을 푸는 스트림 (모르는 인코딩이면 IOException)
+    static InputStream decompressor(InputStream in, String encoding) throws IOException {
+        switch (encoding.trim().toLowerCase()) {
+            case GZIP: case "x-gzip": return new GZIPInputStream(in, 8192);
+            case DEFLATE: return new InflaterInputStream(in);
+            case "identity": return in;
+            default: throw new IOException("지원하지 않는 Content-Encoding: " + encoding);
+        }
+    }
+
+    private static double qualityOf(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            parameter = parameter.trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,9 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+// 파일 내용을 힙으로 복사하지 않고 소켓으로 보내는 출력 대상 (FileChannel.transferTo 사용)
+// 스레드 모드는 바로 전송하고, NIO 모드는 연결의 쓰기 큐에 넣어 이벤트 루프가 보낸다
+public interface FileSink {
+    // file의 처음부터 count 바이트를 전송 (file은 넘겨받은 쪽이 전송 후 닫는다)
+    void sendFile(FileChannel file, long count) throws IOException;
+}
@@ -1,19 +1,128 @@
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 public class HttpClient {
+    // false면 요청/응답 내용을 콘솔에 출력하지 않음 (부하/스트레스 테스트용)
+    static boolean printResponses = true;
+    // 요청에 붙이는 Accept-Encoding (null이면 보내지 않아 압축하지 않은 본문을 받음)
+    static String acceptEncoding = "gzip, deflate";
+
+    // 읽은 응답 (상태 코드와 본문)
+    public static class Response {
+        public final int statusCode;
+        public final String body;
+        // 서버가 Connection: close로 응답 뒤에 연결을 닫겠다고 알림
+        public final boolean close;
+
+        Response(int statusCode, String body) {
+            this(statusCode, body, false);
+        }
+
+        Response(int statusCode, String body, boolean close) {
+            this.statusCode = statusCode;
+            this.body = body;
+            this.close = close;
+        }
+    }
+
+    // 파이프라이닝: 응답을 기다리지 않고 요청을 연달아 보내고, 응답은 보낸 순서대로 읽는다
+    // 보내놓고 읽지 않은 응답이 maxInFlight개가 되면 가장 오래된 응답부터 읽어서 서버와 서로 쓰기만 하다 멈추지 않게 한다
+    public static class Pipeline {
+        private final PrintWriter writer;
+        private final InputStream reader;
+        private final String hostname;
+        private final int maxInFlight;
+        // 아직 읽지 않은 응답 (요청 줄, HEAD면 본문 없이 읽음)
+        private final ArrayDeque<String> inFlight = new ArrayDeque<>();
+        private final List<Response> responses = new ArrayList<>();
+
+        public Pipeline(PrintWriter writer, InputStream reader, String hostname, int maxInFlight) {
+            this.writer = writer;
+            this.reader = reader;
+            this.hostname = hostname;
+            this.maxInFlight = Math.max(1, maxInFlight);
+        }
+
+        public Pipeline post(String id, String name, String address, String tel, String age) throws IOException {
+            writePostRequest(writer, hostname, id, name, address, tel, age);
+            return sent("POST /users HTTP/1.1");
+        }
+
+        public Pipeline put(String id, String name, String address, String tel, String age) throws IOException {
+            writePutRequest(writer, hostname, id, name, address, tel, age);
+            return sent("PUT /users HTTP/1.1");
+        }
+
+        public Pipeline get(String path) throws IOException {
+            return request("GET " + path + " HTTP/1.1");
+        }
+
+        public Pipeline head(String path) throws IOException {
+            return request("HEAD " + path + " HTTP/1.1");
+        }
+
+        public Pipeline delete(String id) throws IOException {
+            return request("DELETE /users/" + id + " HTTP/1.1");
+        }
+
+        // 본문 없는 임의의 요청
+        public Pipeline request(String requestLine) throws IOException {
+            writeRequest(writer, hostname, requestLine);
+            return sent(requestLine);
+        }
+
+        // 보낸 요청들의 응답을 모두 읽어서 보낸 순서대로 반환
+        public List<Response> sync() throws IOException {
+            writer.flush();
+            while (!inFlight.isEmpty()) {
+                readOne();
+            }
+            List<Response> result = new ArrayList<>(responses);
+            responses.clear();
+            return result;
+        }
+
+        private Pipeline sent(String requestLine) throws IOException {
+            inFlight.add(requestLine);
+            if (inFlight.size() >= maxInFlight) {
+                writer.flush();
+                readOne();
+            }
+            return this;
+        }
+
+        private void readOne() throws IOException {
+            String requestLine = inFlight.poll();
+            print("[" + requestLine + "] 응답: ");
+            Response response = requestLine.startsWith("HEAD ") ? readHeadResponse(reader) : readResponse(reader);
+            if (response == null) throw new EOFException("응답을 다 받기 전에 연결이 끊어졌습니다.");
+            responses.add(response);
+        }
+    }
+
     public static void main(String[] args) {
         String hostname = "localhost";
         int port = 7070;
 
         try (Socket socket = new Socket(hostname, port)) {
-            // 하나의 소켓에서 지속 연결을 이용하기 위해 PrintWriter와 BufferedReader 생성
-            PrintWriter writer = new PrintWriter(socket.getOutputStream(), true);
-            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            // 하나의 소켓에서 지속 연결을 이용하기 위해 PrintWriter와 InputStream 생성
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(socket.getOutputStream()), StandardCharsets.UTF_8));
+            // 응답 본문 길이(Content-Length)는 바이트 단위이므로 바이트 스트림으로 읽는다
+            InputStream reader = new BufferedInputStream(socket.getInputStream());
         
             // POST /users: 사용자 추가하기 -> 성공
             sendPostRequest(writer, reader, hostname, "bae", "Seoul", "010-0101-0101", "10");
@@ -73,6 +182,19 @@ public class HttpClient {
             sendCustomRequest(writer, reader, hostname, "PATCH /users HTTP/1.1");
             System.out.println();
             
+            // 파이프라이닝: 사용자 n명을 응답을 기다리지 않고 연달아 추가하고 조회한 뒤 응답을 순서대로 확인 -> 성공
+            int n = new ServerConfig(args).getInt("pipeline", 20);
+            Pipeline pipeline = new Pipeline(writer, reader, hostname, 64);
+            long started = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                pipeline.post("pipeline-" + i, "park", "Incheon", "010-3434-3434", "30");
+            }
+            pipeline.get("/users?name=park");
+            List<Response> responses = pipeline.sync();
+            long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+            System.out.println("파이프라이닝 요청 " + responses.size() + "개, " + elapsedMillis + "ms");
+            System.out.println();
+
             System.out.println("요청 전송 완료");
         } catch (IOException e) {
             e.printStackTrace();
@@ -80,167 +202,276 @@ public class HttpClient {
     }
 
     // USER 생성 POST 요청을 보내는 함수
-    public static void sendPostRequest(PrintWriter writer, BufferedReader reader, String hostname, String name, String address, String tel, String age) throws IOException{
-        String id = UUID.randomUUID().toString();
-
-        // JSON 형식 문자열 생성
-        String body = String.format(
-            "{\"id\":\"%s\",\"name\":\"%s\",\"address\":\"%s\",\"tel\":\"%s\",\"age\":\"%s\"}", 
-            id, name, address, tel, age
-        );
+    public static Response sendPostRequest(PrintWriter writer, InputStream reader, String hostname, String name, String address, String tel, String age) throws IOException{
+        return sendPostRequest(writer, reader, hostname, UUID.randomUUID().toString(), name, address, tel, age);
+    }
 
-        // POST 요청 작성
-        writer.println("POST /users HTTP/1.1");
-        writer.println("Host: " + hostname);
-        writer.println("Content-Type: application/json");
-        writer.println("Content-Length: " + body.length());
-        writer.println("Connection: keep-alive");
-        writer.println();  // 헤더와 본문 사이의 빈 줄
-        writer.print(body);
+    // id를 직접 지정해서 USER 생성 POST 요청을 보내는 함수
+    public static Response sendPostRequest(PrintWriter writer, InputStream reader, String hostname, String id, String name, String address, String tel, String age) throws IOException{
+        writePostRequest(writer, hostname, id, name, address, tel, age);
         writer.flush();
 
         // RESPONSE 읽기
-        System.out.println("[POST /users HTTP/1.1] 응답: ");
-        readResponse(reader);
+        print("[POST /users HTTP/1.1] 응답: ");
+        return readResponse(reader);
     }
 
     // ALL USERS를 GET하는 요청을 보내는 함수
-    public static void sendGetAllRequest(PrintWriter writer, BufferedReader reader, String hostname) throws IOException{
-        // GET 요청 작성
-        writer.println("GET /users HTTP/1.1");
-        writer.println("Host: " + hostname);
-        writer.println("Connection: keep-alive");
-        writer.println(); 
+    public static Response sendGetAllRequest(PrintWriter writer, InputStream reader, String hostname) throws IOException{
+        writeRequest(writer, hostname, "GET /users HTTP/1.1");
+        writer.flush();
 
         // RESPONSE 읽기
-        System.out.println("[GET /users HTTP/1.1] 응답: ");
-        readResponse(reader);
+        print("[GET /users HTTP/1.1] 응답: ");
+        return readResponse(reader);
     }
 
     // Key와 Value를 통해 조건에 맞는 USER를 GET하는 요청을 보내는 함수
-    public static void sendGetRequestWithKeyValue(PrintWriter writer, BufferedReader reader, String hostname, String key, String value) throws IOException{
-        // GET 요청 작성
+    public static Response sendGetRequestWithKeyValue(PrintWriter writer, InputStream reader, String hostname, String key, String value) throws IOException{
         String requestLine = String.format("GET /users?%s=%s HTTP/1.1", key, value);
-        writer.println(requestLine);
-        writer.println("Host: " + hostname);
-        writer.println("Connection: keep-alive");
-        writer.println();  // 헤더와 본문 사이의 빈 줄
+        writeRequest(writer, hostname, requestLine);
+        writer.flush();
         
         // RESPONSE 읽기
-        System.out.println("[" + requestLine + "] 응답: ");
-        readResponse(reader);
+        print("[" + requestLine + "] 응답: ");
+        return readResponse(reader);
     }
 
     // 임의의 HTTP 요청을 보내는 함수 (그 외의 케이스 테스트용)
-    public static void sendCustomRequest(PrintWriter writer, BufferedReader reader, String hostname, String requestLine) throws IOException{
-        // HTTP 요청 작성
-        writer.println(requestLine);
-        writer.println("Host: " + hostname);
-        writer.println("Connection: keep-alive");
-        writer.println();
+    public static Response sendCustomRequest(PrintWriter writer, InputStream reader, String hostname, String requestLine) throws IOException{
+        writeRequest(writer, hostname, requestLine);
+        writer.flush();
         
         // RESPONSE 읽기
-        System.out.println("[" + requestLine + "] 응답: ");
-        readResponse(reader);
+        print("[" + requestLine + "] 응답: ");
+        return readResponse(reader);
     }
 
     // HEAD 요청을 보내는 함수
-    public static void sendHeadRequest(PrintWriter writer, BufferedReader reader, String hostname, String path) throws IOException{
-        // HEAD 요청 작성
-        writer.println("HEAD " + path + " HTTP/1.1");
-        writer.println("Host: " + hostname);
-        writer.println("Connection: keep-alive");
-        writer.println();  // 헤더와 본문 사이의 빈 줄
+    public static Response sendHeadRequest(PrintWriter writer, InputStream reader, String hostname, String path) throws IOException{
+        writeRequest(writer, hostname, "HEAD " + path + " HTTP/1.1");
+        writer.flush();
         
         // RESPONSE 읽기
-        System.out.println("[HEAD " + path + " HTTP/1.1] 응답: ");
-        readHeadResponse(reader);
+        print("[HEAD " + path + " HTTP/1.1] 응답: ");
+        return readHeadResponse(reader);
     }
 
     // PUT 요청을 보내는 함수
-    public static void sendPutRequest(PrintWriter writer, BufferedReader reader, String hostname, String id, String name, String address, String tel, String age) throws IOException{
-        // 수정할 사용자 정보를 포함하는 JSON 문자열 생성
-        // id를 포함해야 합니다.
-        String body = String.format(
-            "{\"id\":\"%s\",\"name\":\"%s\",\"address\":\"%s\",\"tel\":\"%s\",\"age\":\"%s\"}",
-            id, name, address, tel, age
-        );
-        
-        // PUT 요청 작성
-        writer.println("PUT /users HTTP/1.1");
-        writer.println("Host: " + hostname);
-        writer.println("Content-Type: application/json");
-        writer.println("Content-Length: " + body.length());
-        writer.println("Connection: keep-alive");
-        writer.println(); // 헤더와 본문 사이의 빈 줄 
-        writer.print(body);
+    public static Response sendPutRequest(PrintWriter writer, InputStream reader, String hostname, String id, String name, String address, String tel, String age) throws IOException{
+        writePutRequest(writer, hostname, id, name, address, tel, age);
         writer.flush();
 
         // RESPONSE 읽기
-        System.out.println("[PUT /users HTTP/1.1] 응답: ");
-        readResponse(reader);
+        print("[PUT /users HTTP/1.1] 응답: ");
+        return readResponse(reader);
     }
 
     // DELETE 요청을 보내는 함수 
-    public static void sendDeleteRequest(PrintWriter writer, BufferedReader reader, String hostname, String id) throws IOException {
+    public static Response sendDeleteRequest(PrintWriter writer, InputStream reader, String hostname, String id) throws IOException {
         String path = "/users/" + id;
+        writeRequest(writer, hostname, "DELETE " + path + " HTTP/1.1");
+        writer.flush();
 
-        // DELETE 요청 작성
-        writer.println("DELETE " + path + " HTTP/1.1");
+        //RESPONSE 읽기
+        print("[DELETE " + path + " HTTP/1.1] 응답:");
+        return readResponse(reader);
+    }
+
+    // 본문 없는 요청 작성 (GET, HEAD, DELETE 등)
+    static void writeRequest(PrintWriter writer, String hostname, String requestLine) {
+        writer.println(requestLine);
         writer.println("Host: " + hostname);
+        if (acceptEncoding != null) writer.println("Accept-Encoding: " + acceptEncoding);
         writer.println("Connection: keep-alive");
-        writer.println();  // 빈 줄
+        writer.println();  // 헤더와 본문 사이의 빈 줄
+    }
 
-        //RESPONSE 읽기
-        System.out.println("[DELETE " + path + " HTTP/1.1] 응답:");
-        readResponse(reader);
+    // POST 요청 작성
+    static void writePostRequest(PrintWriter writer, String hostname, String id, String name, String address, String tel, String age) {
+        writeRequestWithBody(writer, hostname, "POST /users HTTP/1.1", userJson(id, name, address, tel, age));
+    }
+
+    // PUT 요청 작성 (id를 포함해야 합니다.)
+    static void writePutRequest(PrintWriter writer, String hostname, String id, String name, String address, String tel, String age) {
+        writeRequestWithBody(writer, hostname, "PUT /users HTTP/1.1", userJson(id, name, address, tel, age));
+    }
+
+    private static void writeRequestWithBody(PrintWriter writer, String hostname, String requestLine, String body) {
+        writer.println(requestLine);
+        writer.println("Host: " + hostname);
+        writer.println("Content-Type: application/json");
+        writer.println("Content-Length: " + body.getBytes(StandardCharsets.UTF_8).length);
+        if (acceptEncoding != null) writer.println("Accept-Encoding: " + acceptEncoding);
+        writer.println("Connection: keep-alive");
+        writer.println();  // 헤더와 본문 사이의 빈 줄
+        writer.print(body);
+    }
+
+    // JSON 형식 문자열 생성
+    private static String userJson(String id, String name, String address, String tel, String age) {
+        return String.format(
+            "{\"id\":\"%s\",\"name\":\"%s\",\"address\":\"%s\",\"tel\":\"%s\",\"age\":\"%s\"}",
+            id, name, address, tel, age
+        );
     }
 
     // RESPONSE 읽는 함수
-    public static void readResponse(BufferedReader reader) throws IOException {
+    public static Response readResponse(InputStream reader) throws IOException {
         // 상태 라인과 헤더 읽기
-        String statusLine = reader.readLine();
-        if (statusLine == null) return;
-        System.out.println(statusLine);
+        String statusLine = readLine(reader);
+        // 이전 응답 본문 뒤에 붙은 빈 줄 건너뛰기
+        while (statusLine != null && statusLine.isEmpty()) statusLine = readLine(reader);
+        if (statusLine == null) return null;
+        print(statusLine);
         
         String line;
         int contentLength = 0;
-        while ((line = reader.readLine()) != null && !line.isEmpty()) {
-            System.out.println(line);
-            if (line.toLowerCase().startsWith("content-length:")) {
+        boolean chunked = false;
+        boolean close = false;
+        String contentEncoding = null;
+        while ((line = readLine(reader)) != null && !line.isEmpty()) {
+            print(line);
+            String lower = line.toLowerCase();
+            if (isConnectionClose(lower)) {
+                close = true;
+            } else if (lower.startsWith("content-length:")) {
                 try {
                     contentLength = Integer.parseInt(line.split(":")[1].trim());
                 } catch(NumberFormatException e) {
                     contentLength = 0;
                 }
+            } else if (lower.startsWith("transfer-encoding:") && lower.contains("chunked")) {
+                chunked = true;
+            } else if (lower.startsWith("content-encoding:")) {
+                contentEncoding = line.substring(line.indexOf(':') + 1).trim();
             }
         }
 
-        System.out.println();
+        print("");
+
+        // chunked 본문은 청크 단위로 읽어 이어 붙임
+        if (chunked) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            readChunkedBody(reader, body);
+            String responseBody = decodeBody(body.toByteArray(), body.size(), contentEncoding);
+            print(responseBody);
+            return new Response(statusCodeOf(statusLine), responseBody, close);
+        }
 
         // 빈 줄 후 본문 읽기 : exactly contentLength 바이트 읽기
-        char[] bodyChars = new char[contentLength];
+        byte[] bodyBytes = new byte[contentLength];
         int totalRead = 0;
         while(totalRead < contentLength) {
-            int read = reader.read(bodyChars, totalRead, contentLength - totalRead);
+            int read = reader.read(bodyBytes, totalRead, contentLength - totalRead);
             if (read == -1) break;
             totalRead += read;
         }
-        String responseBody = new String(bodyChars, 0, totalRead);
-        System.out.println(responseBody);
+        String responseBody = decodeBody(bodyBytes, totalRead, contentEncoding);
+        print(responseBody);
+        return new Response(statusCodeOf(statusLine), responseBody, close);
+    }
+
+    // Transfer-Encoding: chunked 본문을 디코딩해 out으로 복사 (고정 크기 버퍼만 사용)
+    // 청크 형식: "길이(16진수)[;확장]\r\n" + 내용 + "\r\n", 길이 0 청크 뒤에 trailer 헤더와 빈 줄
+    public static void readChunkedBody(InputStream reader, OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (true) {
+            String sizeLine = readLine(reader);
+            if (sizeLine == null) throw new EOFException("chunked 본문이 끝나기 전에 연결이 끊어졌습니다.");
+            int semicolon = sizeLine.indexOf(';');
+            String hex = (semicolon == -1 ? sizeLine : sizeLine.substring(0, semicolon)).trim();
+            long size;
+            try {
+                size = Long.parseLong(hex, 16);
+            } catch (NumberFormatException e) {
+                throw new IOException("잘못된 청크 길이: " + sizeLine);
+            }
+
+            if (size == 0) {
+                // trailer 헤더는 무시하고 빈 줄까지 읽기
+                String trailer;
+                while ((trailer = readLine(reader)) != null && !trailer.isEmpty()) {
+                }
+                return;
+            }
+
+            long remaining = size;
+            while (remaining > 0) {
+                int read = reader.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read == -1) throw new EOFException("청크가 끝나기 전에 연결이 끊어졌습니다.");
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+            // 청크 뒤의 CRLF
+            readLine(reader);
+        }
+    }
+
+    // Content-Encoding(gzip/deflate)에 맞게 압축을 풀어 UTF-8 문자열로
+    private static String decodeBody(byte[] body, int length, String contentEncoding) throws IOException {
+        if (contentEncoding == null || length == 0) return new String(body, 0, length, StandardCharsets.UTF_8);
+        try (InputStream in = ContentEncoding.decompressor(new ByteArrayInputStream(body, 0, length), contentEncoding)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length * 4);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        }
     }
 
     // HEAD RESPONSE 읽는 함수
-    public static void readHeadResponse(BufferedReader reader) throws IOException {
+    public static Response readHeadResponse(InputStream reader) throws IOException {
         // 상태 라인 읽기
-        String statusLine = reader.readLine();
-        if (statusLine == null) return;
-        System.out.println(statusLine);
+        String statusLine = readLine(reader);
+        // 이전 응답 본문 뒤에 붙은 빈 줄 건너뛰기
+        while (statusLine != null && statusLine.isEmpty()) statusLine = readLine(reader);
+        if (statusLine == null) return null;
+        print(statusLine);
 
         // 헤더 읽기
         String line;
-        while ((line = reader.readLine()) != null && !line.isEmpty()) {
-            System.out.println(line);
+        boolean close = false;
+        while ((line = readLine(reader)) != null && !line.isEmpty()) {
+            print(line);
+            if (isConnectionClose(line.toLowerCase())) close = true;
+        }
+        return new Response(statusCodeOf(statusLine), "", close);
+    }
+
+    // 소문자로 바꾼 헤더 줄이 "connection: close"인지
+    private static boolean isConnectionClose(String lower) {
+        return lower.startsWith("connection:") && lower.substring("connection:".length()).trim().equals("close");
+    }
+
+    // "HTTP/1.1 200 OK"에서 상태 코드 추출
+    private static int statusCodeOf(String statusLine) {
+        String[] part = statusLine.trim().split(" ");
+        try {
+            return part.length > 1 ? Integer.parseInt(part[1]) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
         }
     }
+
+    // 바이트 스트림에서 한 줄 읽기 (\r\n, \n 모두 허용, 스트림 끝이면 null)
+    static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') break;
+            line.write(b);
+        }
+        if (b == -1 && line.size() == 0) return null;
+        byte[] bytes = line.toByteArray();
+        int length = bytes.length;
+        if (length > 0 && bytes[length - 1] == '\r') length--;
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static void print(String text) {
+        if (printResponses) System.out.println(text);
+    }
 }
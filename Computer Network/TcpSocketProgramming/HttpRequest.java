@@ -0,0 +1,122 @@
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+// 파싱된 HTTP 요청 (HttpRequestParser가 채우고, 스레드 모드에서는 연결마다 하나를 재사용)
+public class HttpRequest {
+    // HttpRequestParser가 알아보는 헤더 (이름은 소문자, 순서가 곧 인덱스)
+    static final String[] KNOWN_HEADERS = {
+        "content-length", "connection", "transfer-encoding", "host", "if-none-match", "if-modified-since",
+        "accept-encoding", "expect", "x-shard-local"
+    };
+    static final int CONTENT_LENGTH = 0;
+    static final int CONNECTION = 1;
+    static final int TRANSFER_ENCODING = 2;
+    static final int HOST = 3;
+    static final int IF_NONE_MATCH = 4;
+    static final int IF_MODIFIED_SINCE = 5;
+    static final int ACCEPT_ENCODING = 6;
+    static final int EXPECT = 7;
+    // 샤드 모드에서 다른 샤드가 보낸 요청 (다시 전달하지 않고 이 서버의 데이터로만 응답)
+    static final int SHARD_LOCAL = 8;
+
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    String method;
+    String path;
+    String version;
+    long contentLength;
+    // 요청 줄부터 본문 끝까지의 바이트 수 (통계용, 본문을 스트림으로 읽는 요청은 읽은 만큼 더해짐)
+    long wireLength;
+    // 본문을 파서가 읽지 않고 bodyStream으로 흘려 읽는 요청이면 그 스트림 (POST /users/bulk, 스레드 모드)
+    InputStream bodyStream;
+    byte[] body = EMPTY_BODY;
+    final String[] headers = new String[KNOWN_HEADERS.length];
+
+    public String method() {
+        return method;
+    }
+
+    public String path() {
+        return path;
+    }
+
+    public String version() {
+        return version;
+    }
+
+    // 로그용 요청 첫 줄 (ex) GET /users HTTP/1.1), 로그를 찍을 때만 만든다
+    public String requestLine() {
+        return version == null ? method + " " + path : method + " " + path + " " + version;
+    }
+
+    public long wireLength() {
+        return wireLength;
+    }
+
+    public long contentLength() {
+        return contentLength;
+    }
+
+    public byte[] body() {
+        return body;
+    }
+
+    // 본문을 읽는 스트림 (흘려 읽는 요청이면 소켓에서 바로, 아니면 이미 읽어 둔 본문에서)
+    public InputStream bodyInput() {
+        return bodyStream != null ? bodyStream : new ByteArrayInputStream(body);
+    }
+
+    // Transfer-Encoding: chunked 요청인지
+    public boolean isChunked() {
+        String transferEncoding = headers[TRANSFER_ENCODING];
+        return transferEncoding != null && transferEncoding.toLowerCase().contains("chunked");
+    }
+
+    // 본문을 UTF-8 문자열로
+    public String bodyAsString() {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    // 알아보는 헤더의 값 (없으면 null), index는 KNOWN_HEADERS의 순서
+    public String header(int index) {
+        return headers[index];
+    }
+
+    // 응답 뒤에 연결을 닫기를 원하는지 (Connection: close, 또는 Connection: keep-alive가 없는 HTTP/1.0)
+    public boolean wantsClose() {
+        String connection = headers[CONNECTION];
+        if ("HTTP/1.0".equals(version)) return connection == null || !hasToken(connection, "keep-alive");
+        return connection != null && hasToken(connection, "close");
+    }
+
+    // "keep-alive, Upgrade"처럼 쉼표로 나열된 값에 token이 있는지
+    private static boolean hasToken(String value, String token) {
+        for (String part : value.split(",")) {
+            if (part.trim().equalsIgnoreCase(token)) return true;
+        }
+        return false;
+    }
+
+    void reset() {
+        method = null;
+        path = null;
+        version = null;
+        contentLength = 0;
+        wireLength = 0;
+        bodyStream = null;
+        body = EMPTY_BODY;
+        for (int i = 0; i < headers.length; i++) {
+            headers[i] = null;
+        }
+    }
+
+    void setBody(byte[] data, int offset, int length) {
+        if (length == 0) {
+            body = EMPTY_BODY;
+            return;
+        }
+        body = new byte[length];
+        System.arraycopy(data, offset, body, 0, length);
+    }
+}
@@ -0,0 +1,440 @@
+import java.io.EOFException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+// 바이트 단위 HTTP 요청 파서
+// 요청 줄과 헤더를 버퍼 안에서 그대로 훑어서, 알아보는 헤더만 값을 꺼내고 나머지는 문자열을 만들지 않고 건너뛴다
+// 본문은 Content-Length 바이트만큼 바이트로 읽는다
+// 단, POST /users/bulk는 본문 크기에 제한이 없도록 헤더까지만 파싱해서 돌려주고, 본문은 bodyStream()으로 흘려 읽는다
+// (Content-Length 또는 Transfer-Encoding: chunked)
+public class HttpRequestParser implements AutoCloseable {
+    // 본문을 흘려 읽는 경로
+    static final String STREAMING_PATH = "/users/bulk";
+    private static final int MAX_CHUNK_LINE = 1024;
+
+    // 요청 줄과 헤더의 최대 크기(넘으면 431), 메모리에 모아 읽는 본문의 최대 크기(넘으면 413, 흘려 읽는 본문은 제한 없음)
+    static int maxHeaderSize = 64 * 1024;
+    static long maxBodySize = 16L * 1024 * 1024;
+
+    // 자주 쓰는 메서드는 미리 만든 문자열을 그대로 쓴다
+    private static final String[] METHODS = {"GET", "HEAD", "POST", "PUT", "DELETE"};
+    private static final byte[][] METHOD_BYTES = toBytes(METHODS);
+    private static final String[] VERSIONS = {"HTTP/1.1", "HTTP/1.0"};
+    private static final byte[][] VERSION_BYTES = toBytes(VERSIONS);
+    private static final byte[][] HEADER_BYTES = toBytes(HttpRequest.KNOWN_HEADERS);
+
+    // 잘못된 요청 (statusCode로 응답한 뒤 연결을 닫는다)
+    public static class ParseException extends IOException {
+        private static final long serialVersionUID = 1L;
+        final int statusCode;
+        final String statusText;
+
+        ParseException(int statusCode, String statusText, String message) {
+            super(message);
+            this.statusCode = statusCode;
+            this.statusText = statusText;
+        }
+    }
+
+    private final InputStream in;
+    // 버퍼의 요청을 다 처리해서 소켓에서 더 읽어야 할 때 먼저 비울 응답 출력 (없으면 null)
+    private final Flushable output;
+    // 소켓에서 기다리는 동안의 단계를 알려 제한 시간을 관리 (없으면 null)
+    private final ConnectionLifecycle lifecycle;
+    private final HttpRequest request = new HttpRequest();
+    private final byte[] pooled;
+    private byte[] buffer;
+    private int start;
+    private int end;
+
+    // 블로킹 스트림에서 요청을 차례로 읽는 파서 (스레드 모드)
+    public HttpRequestParser(InputStream in) {
+        this(in, null);
+    }
+
+    // 파이프라이닝: 이미 받은 요청들의 응답은 output에 모아 두었다가, 다음 요청을 기다리기 직전에 한 번에 보낸다
+    public HttpRequestParser(InputStream in, Flushable output) {
+        this(in, output, null);
+    }
+
+    // lifecycle: 다음 요청을 기다리는지, 헤더/본문을 받는 중인지, 요청을 처리하는 중인지 알려줌
+    public HttpRequestParser(InputStream in, Flushable output, ConnectionLifecycle lifecycle) {
+        this.in = in;
+        this.output = output;
+        this.lifecycle = lifecycle;
+        this.pooled = BufferPool.acquire();
+        this.buffer = pooled;
+    }
+
+    // 다음 요청 읽기 (연결이 요청 사이에서 끊기면 null), 반환한 객체는 다음 read()에서 다시 채워진다
+    public HttpRequest read() throws IOException {
+        // 헤더까지 다 받고 본문을 기다리는 중인지
+        boolean awaitingBody = false;
+        while (true) {
+            start = skipBlankLines(buffer, start, end);
+            if (start < end) {
+                request.reset();
+                int result = parse(buffer, start, end, request, true);
+                awaitingBody = result < 0;
+                if (result > 0) {
+                    if (lifecycle != null) lifecycle.busy();
+                    start += result;
+                    if (start == end) {
+                        start = 0;
+                        end = 0;
+                        // 큰 요청 때문에 키웠던 버퍼는 버리고 풀 버퍼로 돌아감
+                        buffer = pooled;
+                    }
+                    return request;
+                }
+                if (result < 0) ensureCapacity(-result);
+            }
+
+            if (start == end) {
+                start = 0;
+                end = 0;
+            } else if (end == buffer.length) {
+                ensureCapacity(buffer.length - start + 1);
+            }
+            if (output != null) output.flush();
+            if (lifecycle != null) {
+                if (start == end) lifecycle.idle();
+                else if (awaitingBody) lifecycle.readingBody();
+                else lifecycle.readingHeaders();
+            }
+            int n = in.read(buffer, end, buffer.length - end);
+            if (n == -1) {
+                if (start == end) return null;
+                throw new EOFException("요청이 끝나기 전에 연결이 끊어졌습니다.");
+            }
+            end += n;
+        }
+    }
+
+    // 흘려 읽는 요청의 본문 스트림을 만들어 request에 붙인다 (read()로 받은 요청의 처리를 시작하기 전에)
+    public InputStream bodyStream(HttpRequest request) {
+        request.bodyStream = new BodyStream(request);
+        return request.bodyStream;
+    }
+
+    // 처리 함수가 다 읽지 않은 본문을 버려서 다음 요청의 시작 위치로 간다
+    public void finishBody(HttpRequest request) throws IOException {
+        if (!(request.bodyStream instanceof BodyStream)) return;
+        byte[] skip = new byte[8192];
+        while (request.bodyStream.read(skip, 0, skip.length) != -1) {
+        }
+    }
+
+    // 버퍼를 풀에 돌려준다
+    @Override
+    public void close() {
+        BufferPool.release(pooled);
+    }
+
+    // start부터 needed 바이트가 버퍼에 들어가도록 앞으로 당기거나 키운다
+    private void ensureCapacity(int needed) {
+        int length = end - start;
+        if (needed <= buffer.length) {
+            if (start + needed > buffer.length) {
+                System.arraycopy(buffer, start, buffer, 0, length);
+                start = 0;
+                end = length;
+            }
+            return;
+        }
+        byte[] grown = new byte[needed];
+        System.arraycopy(buffer, start, grown, 0, length);
+        buffer = grown;
+        start = 0;
+        end = length;
+    }
+
+    // 요청 앞의 빈 줄 건너뛰기
+    static int skipBlankLines(byte[] buf, int start, int end) {
+        while (start < end && (buf[start] == '\r' || buf[start] == '\n')) start++;
+        return start;
+    }
+
+    // buf[start, end)에서 요청 하나를 파싱해 out에 채운다
+    // 반환값: 양수면 요청 하나의 바이트 수(본문 포함), 0이면 헤더가 아직 다 오지 않음,
+    //        음수면 헤더는 다 왔고 본문이 모자람 (-반환값 = start부터 필요한 전체 바이트 수)
+    static int parse(byte[] buf, int start, int end, HttpRequest out) throws ParseException {
+        return parse(buf, start, end, out, false);
+    }
+
+    // streamBody면 본문을 흘려 읽는 요청(streamsBody)은 헤더까지만 파싱하고 헤더 바이트 수를 반환한다
+    static int parse(byte[] buf, int start, int end, HttpRequest out, boolean streamBody) throws ParseException {
+        // 헤더 끝("\n\n" 또는 "\n\r\n") 찾기
+        int bodyStart = -1;
+        for (int i = start; i < end - 1; i++) {
+            if (buf[i] != '\n') continue;
+            if (buf[i + 1] == '\n') {
+                bodyStart = i + 2;
+                break;
+            }
+            if (buf[i + 1] == '\r' && i + 2 < end && buf[i + 2] == '\n') {
+                bodyStart = i + 3;
+                break;
+            }
+        }
+        if (bodyStart == -1) {
+            if (end - start > maxHeaderSize) {
+                throw new ParseException(431, "Request Header Fields Too Large", "요청 헤더가 너무 큽니다.");
+            }
+            return 0;
+        }
+        if (bodyStart - start > maxHeaderSize) {
+            throw new ParseException(431, "Request Header Fields Too Large", "요청 헤더가 너무 큽니다.");
+        }
+
+        // 요청 줄: METHOD SP PATH SP VERSION
+        int lineEnd = indexOf(buf, start, bodyStart, (byte) '\n');
+        int requestLineEnd = trimCr(buf, start, lineEnd);
+        int sp1 = indexOf(buf, start, requestLineEnd, (byte) ' ');
+        if (sp1 <= start) throw badRequest();
+        int sp2 = indexOf(buf, sp1 + 1, requestLineEnd, (byte) ' ');
+        if (sp2 == -1) sp2 = requestLineEnd;
+        if (sp2 == sp1 + 1) throw badRequest();
+
+        out.method = match(buf, start, sp1, METHOD_BYTES, METHODS);
+        if (out.method == null) out.method = new String(buf, start, sp1 - start, StandardCharsets.US_ASCII);
+        out.path = new String(buf, sp1 + 1, sp2 - sp1 - 1, StandardCharsets.UTF_8);
+        if (sp2 < requestLineEnd) {
+            out.version = match(buf, sp2 + 1, requestLineEnd, VERSION_BYTES, VERSIONS);
+            if (out.version == null) out.version = new String(buf, sp2 + 1, requestLineEnd - sp2 - 1, StandardCharsets.US_ASCII);
+        }
+
+        // 헤더 줄
+        int lineStart = lineEnd + 1;
+        while (lineStart < bodyStart) {
+            int next = indexOf(buf, lineStart, bodyStart, (byte) '\n');
+            int valueEnd = trimCr(buf, lineStart, next);
+            if (valueEnd == lineStart) break;
+            int colon = indexOf(buf, lineStart, valueEnd, (byte) ':');
+            if (colon > lineStart) {
+                int header = indexOfHeader(buf, lineStart, colon);
+                if (header != -1) readHeader(buf, colon + 1, valueEnd, header, out);
+            }
+            lineStart = next + 1;
+        }
+
+        if (streamBody && streamsBody(out)) {
+            out.wireLength = bodyStart - start;
+            return bodyStart - start;
+        }
+        // chunked 요청 본문은 흘려 읽는 요청만 지원 (길이를 모르면 요청의 끝을 알 수 없으므로 연결을 닫는다)
+        if (out.isChunked()) {
+            throw new ParseException(411, "Length Required", "Transfer-Encoding: chunked 본문은 지원하지 않습니다. Content-Length를 보내 주세요.");
+        }
+        // 본문이 다 오기를 기다리지 않고 헤더만 보고 거절
+        if (out.contentLength > maxBodySize) {
+            throw new ParseException(413, "Payload Too Large", "요청 본문이 너무 큽니다. (최대 " + maxBodySize + "바이트)");
+        }
+
+        long total = (long) (bodyStart - start) + out.contentLength;
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new ParseException(413, "Payload Too Large", "요청 본문이 너무 큽니다.");
+        }
+        if (end - start < total) return (int) -total;
+        out.setBody(buf, bodyStart, (int) out.contentLength);
+        out.wireLength = total;
+        return (int) total;
+    }
+
+    // 본문을 흘려 읽는 요청인지
+    static boolean streamsBody(HttpRequest request) {
+        return request.method.equals("POST") && request.path.equals(STREAMING_PATH);
+    }
+
+    // 흘려 읽는 요청 본문: 파서 버퍼에 남은 바이트부터 읽고, 모자라면 소켓에서 읽는다
+    // Content-Length면 그 바이트 수만큼, chunked면 청크 머리("길이\r\n")와 꼬리를 풀어서 내용만 돌려준다
+    private final class BodyStream extends InputStream {
+        private final HttpRequest request;
+        private final boolean chunked;
+        // 지금 청크(또는 본문 전체)에서 남은 바이트
+        private long remaining;
+        private boolean finished;
+
+        BodyStream(HttpRequest request) {
+            this.request = request;
+            this.chunked = request.isChunked();
+            this.remaining = chunked ? 0 : request.contentLength;
+            this.finished = !chunked && remaining == 0;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (finished) return -1;
+            if (len == 0) return 0;
+            if (remaining == 0 && !nextChunk()) return -1;
+            int n = rawRead(b, off, (int) Math.min(len, remaining));
+            if (n == -1) throw new EOFException("요청 본문이 끝나기 전에 연결이 끊어졌습니다.");
+            remaining -= n;
+            request.wireLength += n;
+            if (remaining == 0) {
+                if (chunked) {
+                    // 청크 내용 뒤의 CRLF
+                    readChunkLine();
+                } else {
+                    finish();
+                }
+            }
+            return n;
+        }
+
+        // 다음 청크 머리 읽기 (마지막 청크면 trailer까지 읽고 false)
+        private boolean nextChunk() throws IOException {
+            String line = readChunkLine();
+            int semicolon = line.indexOf(';');
+            String hex = (semicolon == -1 ? line : line.substring(0, semicolon)).trim();
+            long size;
+            try {
+                size = Long.parseLong(hex, 16);
+            } catch (NumberFormatException e) {
+                throw new ParseException(400, "Bad Request", "잘못된 청크 길이입니다.");
+            }
+            if (size < 0) throw new ParseException(400, "Bad Request", "잘못된 청크 길이입니다.");
+            if (size == 0) {
+                while (!readChunkLine().isEmpty()) {
+                    // trailer 헤더는 무시
+                }
+                finish();
+                return false;
+            }
+            remaining = size;
+            return true;
+        }
+
+        // 본문을 다 읽으면 다시 처리 중 단계로
+        private void finish() {
+            finished = true;
+            if (lifecycle != null) lifecycle.busy();
+        }
+
+        private String readChunkLine() throws IOException {
+            StringBuilder line = new StringBuilder(16);
+            while (true) {
+                int b = rawByte();
+                if (b == -1) throw new EOFException("요청 본문이 끝나기 전에 연결이 끊어졌습니다.");
+                request.wireLength++;
+                if (b == '\n') break;
+                if (b != '\r') line.append((char) b);
+                if (line.length() > MAX_CHUNK_LINE) throw new ParseException(400, "Bad Request", "청크 머리가 너무 깁니다.");
+            }
+            return line.toString();
+        }
+
+        private int rawRead(byte[] b, int off, int len) throws IOException {
+            if (start < end) {
+                int n = Math.min(len, end - start);
+                System.arraycopy(buffer, start, b, off, n);
+                start += n;
+                return n;
+            }
+            // 버퍼가 비었으면 파서 버퍼를 거치지 않고 소켓에서 바로 (앞서 모아 둔 응답은 먼저 보냄)
+            if (output != null) output.flush();
+            if (lifecycle != null) lifecycle.readingBody();
+            return in.read(b, off, len);
+        }
+
+        private int rawByte() throws IOException {
+            if (start == end) {
+                start = 0;
+                end = 0;
+                if (output != null) output.flush();
+                if (lifecycle != null) lifecycle.readingBody();
+                int n = in.read(buffer, 0, buffer.length);
+                if (n == -1) return -1;
+                end = n;
+            }
+            return buffer[start++] & 0xFF;
+        }
+    }
+
+    private static void readHeader(byte[] buf, int from, int to, int header, HttpRequest out) throws ParseException {
+        // 값 앞뒤 공백 제거
+        while (from < to && (buf[from] == ' ' || buf[from] == '\t')) from++;
+        while (to > from && (buf[to - 1] == ' ' || buf[to - 1] == '\t')) to--;
+
+        if (header == HttpRequest.CONTENT_LENGTH) {
+            // 숫자는 문자열을 만들지 않고 바로 계산
+            if (from == to) throw badRequest();
+            long value = 0;
+            for (int i = from; i < to; i++) {
+                int digit = buf[i] - '0';
+                if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE) throw badRequest();
+                value = value * 10 + digit;
+            }
+            out.contentLength = value;
+            return;
+        }
+        out.headers[header] = new String(buf, from, to - from, StandardCharsets.ISO_8859_1);
+    }
+
+    // 헤더 이름이 알아보는 헤더면 그 인덱스, 아니면 -1 (대소문자 무시)
+    private static int indexOfHeader(byte[] buf, int from, int to) {
+        for (int i = 0; i < HEADER_BYTES.length; i++) {
+            if (equalsIgnoreCase(buf, from, to, HEADER_BYTES[i])) return i;
+        }
+        return -1;
+    }
+
+    // 미리 만든 문자열 중 바이트가 같은 것 (없으면 null)
+    private static String match(byte[] buf, int from, int to, byte[][] candidates, String[] values) {
+        for (int i = 0; i < candidates.length; i++) {
+            if (equals(buf, from, to, candidates[i])) return values[i];
+        }
+        return null;
+    }
+
+    private static boolean equals(byte[] buf, int from, int to, byte[] expected) {
+        if (to - from != expected.length) return false;
+        for (int i = 0; i < expected.length; i++) {
+            if (buf[from + i] != expected[i]) return false;
+        }
+        return true;
+    }
+
+    // expected는 소문자
+    private static boolean equalsIgnoreCase(byte[] buf, int from, int to, byte[] expected) {
+        if (to - from != expected.length) return false;
+        for (int i = 0; i < expected.length; i++) {
+            byte b = buf[from + i];
+            if (b >= 'A' && b <= 'Z') b += 'a' - 'A';
+            if (b != expected[i]) return false;
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] buf, int from, int to, byte target) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == target) return i;
+        }
+        return -1;
+    }
+
+    // 줄 끝의 '\r' 제외한 끝 위치
+    private static int trimCr(byte[] buf, int from, int lineEnd) {
+        return lineEnd > from && buf[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+    }
+
+    private static ParseException badRequest() {
+        return new ParseException(400, "Bad Request", "잘못된 요청입니다.");
+    }
+
+    private static byte[][] toBytes(String[] values) {
+        byte[][] result = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        return result;
+    }
+}
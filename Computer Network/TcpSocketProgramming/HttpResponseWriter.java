@@ -0,0 +1,283 @@
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+// HTTP 응답 작성기
+// 상태 줄과 헤더, 본문을 풀에서 빌린 바이트 버퍼 하나에 모았다가 flush()에서 한 번에 쓴다
+// 상태 줄과 고정 헤더는 미리 인코딩해 두고, Date 값은 1초에 한 번만 새로 만든다
+public class HttpResponseWriter implements Flushable, AutoCloseable {
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] CONTENT_TYPE = ascii("Content-Type: text/plain\r\n");
+    private static final byte[] CONTENT_LENGTH = ascii("Content-Length: ");
+    private static final byte[] CHUNKED = ascii("Transfer-Encoding: chunked\r\n");
+
+    // 상태 코드별로 인코딩한 "HTTP/1.1 200 OK\r\n" (처음 쓸 때 만든다)
+    private static final byte[][] STATUS_LINES = new byte[600][];
+
+    // 초 단위로 캐시한 "Date: ...\r\n" (여러 스레드가 같이 쓰므로 초와 값을 한 객체로 바꿔 끼운다)
+    private static final class CachedDate {
+        final long second;
+        final byte[] header;
+
+        CachedDate(long second) {
+            this.second = second;
+            this.header = ascii("Date: " + DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                Instant.ofEpochSecond(second).atOffset(ZoneOffset.UTC)) + "\r\n");
+        }
+    }
+
+    private static volatile CachedDate cachedDate = new CachedDate(System.currentTimeMillis() / 1000);
+
+    private final OutputStream out;
+    // 큰 본문을 버퍼에 복사하지 않고 헤더와 함께 보낼 때 쓰는 채널 (없으면 null)
+    private final GatheringByteChannel channel;
+    private final byte[] buffer = BufferPool.acquire();
+    private int count;
+    // 출력으로 이미 내보낸 바이트 수 (통계용, 버퍼에 남은 count와 합치면 지금까지 쓴 응답 바이트)
+    private long flushed;
+    // 응답마다 붙일 연결 헤더 (Connection: close 또는 Keep-Alive, null이면 붙이지 않음)
+    private String connectionHeader;
+    // 응답마다 붙일 서버 상태 헤더 (복제 팔로워의 X-Replication-Lag, null이면 붙이지 않음)
+    private String extraHeader;
+    // 마지막으로 쓴 응답의 상태 코드 (통계/접근 로그용)
+    private int lastStatus;
+    private final byte[] digits = new byte[20];
+
+    public HttpResponseWriter(OutputStream out) {
+        this(out, null);
+    }
+
+    public HttpResponseWriter(OutputStream out, GatheringByteChannel channel) {
+        this.out = out;
+        this.channel = channel;
+    }
+
+    // 상태 줄과 공통 헤더(Date, Content-Type)
+    public void status(int statusCode, String statusText) {
+        lastStatus = statusCode;
+        byte[] line = statusCode >= 0 && statusCode < STATUS_LINES.length ? STATUS_LINES[statusCode] : null;
+        if (line == null) {
+            line = ascii("HTTP/1.1 " + statusCode + " " + statusText + "\r\n");
+            if (statusCode >= 0 && statusCode < STATUS_LINES.length) STATUS_LINES[statusCode] = line;
+        }
+        put(line);
+        put(dateHeader());
+        put(CONTENT_TYPE);
+        if (connectionHeader != null) header(connectionHeader);
+        if (extraHeader != null) header(extraHeader);
+    }
+
+    // 이후 응답에 붙일 연결 헤더 (요청을 처리하기 전에 서버가 정함)
+    public void connectionHeader(String line) {
+        connectionHeader = line;
+    }
+
+    // 이후 응답에 붙일 서버 상태 헤더 (요청을 처리하기 전에 서버가 정함)
+    public void extraHeader(String line) {
+        extraHeader = line;
+    }
+
+    // 1xx 중간 응답 (ex. 100 Continue), 헤더 없이 상태 줄과 빈 줄만 쓰고 최종 응답이 뒤따른다
+    public void interim(int statusCode, String statusText) {
+        writeAscii("HTTP/1.1 " + statusCode + " " + statusText);
+        put(CRLF);
+        put(CRLF);
+    }
+
+    // "이름: 값" 형태의 헤더 한 줄
+    // 값에 CR/LF가 섞이면 헤더가 끊겨 다른 헤더나 본문이 끼어들 수 있으므로 막는다
+    public void header(String line) {
+        if (line.indexOf('\r') >= 0 || line.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("헤더에 줄바꿈 문자가 들어 있습니다: " + line.replace("\r", "\\r").replace("\n", "\\n"));
+        }
+        writeAscii(line);
+        put(CRLF);
+    }
+
+    public void contentLength(long length) {
+        put(CONTENT_LENGTH);
+        writeNumber(length);
+        put(CRLF);
+    }
+
+    public void chunked() {
+        put(CHUNKED);
+    }
+
+    // 헤더와 본문 사이 빈 줄
+    public void endHeaders() {
+        put(CRLF);
+    }
+
+    // 본문 문자열을 UTF-8로 버퍼에 바로 인코딩 (버퍼보다 크면 따로 인코딩해서 모아둔 헤더와 함께 쓴다)
+    public void write(String text) {
+        int length = utf8Length(text);
+        if (length > buffer.length - count) {
+            write(text.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                buffer[count++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[count++] = (byte) (0xC0 | (c >> 6));
+                buffer[count++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(++i));
+                buffer[count++] = (byte) (0xF0 | (cp >> 18));
+                buffer[count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buffer[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buffer[count++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // 짝이 맞지 않는 서로게이트는 String.getBytes처럼 '?'로 바꾼다
+                buffer[count++] = '?';
+            } else {
+                buffer[count++] = (byte) (0xE0 | (c >> 12));
+                buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[count++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    public void write(byte[] bytes) {
+        write(bytes, 0, bytes.length);
+    }
+
+    public void write(byte[] bytes, int offset, int length) {
+        if (length <= buffer.length - count) {
+            System.arraycopy(bytes, offset, buffer, count, length);
+            count += length;
+            return;
+        }
+        try {
+            if (channel != null) {
+                // 모아둔 헤더와 큰 본문을 한 번의 gathering write로 전송
+                ByteBuffer[] parts = {ByteBuffer.wrap(buffer, 0, count), ByteBuffer.wrap(bytes, offset, length)};
+                while (parts[1].hasRemaining()) {
+                    channel.write(parts);
+                }
+            } else {
+                out.write(buffer, 0, count);
+                out.write(bytes, offset, length);
+            }
+            flushed += count + length;
+            count = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 아스키 문자열 (헤더 이름/값, 청크 길이 등)
+    public void writeAscii(String text) {
+        if (text.length() > buffer.length - count) {
+            write(text.getBytes(StandardCharsets.ISO_8859_1));
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            buffer[count++] = (byte) text.charAt(i);
+        }
+    }
+
+    // 청크 길이 (16진수)
+    public void writeHex(int value) {
+        writeAscii(Integer.toHexString(value));
+    }
+
+    // 모아둔 응답을 한 번에 전송
+    public void flush() {
+        drain();
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 모아둔 바이트를 출력 스트림에 넘기기만 한다 (NIO 모드에서 응답의 마지막 조각을 따로 내보내지 않도록)
+    void drain() {
+        if (count == 0) return;
+        try {
+            out.write(buffer, 0, count);
+            flushed += count;
+            count = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 지금까지 쓴 응답 바이트 수 (버퍼에 모아 둔 것과 sent()로 알린 파일 본문 포함)
+    public long bytesWritten() {
+        return flushed + count;
+    }
+
+    // writer를 거치지 않고 보낸 본문 바이트 수 알리기 (sendfile 등)
+    public void sent(long bytes) {
+        flushed += bytes;
+    }
+
+    public int lastStatus() {
+        return lastStatus;
+    }
+
+    // 버퍼를 풀에 돌려준다 (출력 스트림은 닫지 않음)
+    @Override
+    public void close() {
+        BufferPool.release(buffer);
+    }
+
+    // 문자열을 UTF-8로 인코딩했을 때의 바이트 수 (Content-Length 계산용)
+    static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private void put(byte[] bytes) {
+        write(bytes, 0, bytes.length);
+    }
+
+    private void writeNumber(long value) {
+        int i = digits.length;
+        do {
+            digits[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        write(digits, i, digits.length - i);
+    }
+
+    private static byte[] dateHeader() {
+        long now = System.currentTimeMillis() / 1000;
+        CachedDate date = cachedDate;
+        if (date.second != now) {
+            date = new CachedDate(now);
+            cachedDate = date;
+        }
+        return date.header;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -1,384 +1,862 @@
 import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 public class HttpServer {
     private static final int PORT = 7070;
+    private static final String[] NO_HEADERS = new String[0];
+
+    // 연결/요청 수 제한과 통계 (스레드 모드, 가상 스레드 모드 공용)
+    static final ConnectionStats stats = new ConnectionStats();
+    // GET /metrics 통계와 비동기 접근 로그 (두 모드 공용)
+    static final ServerMetrics metrics = new ServerMetrics();
+    static AccessLog accessLog = new AccessLog();
+    private static Semaphore requestPermits = new Semaphore(Integer.MAX_VALUE);
+    private static int retryAfterSeconds = 1;
+
+    // 사용자 데이터 (시작할 때 users.txt에서 한 번 읽어 둠)
+    static UserStore store;
+    // GET/HEAD 응답 캐시 (저장소 버전이 바뀌면 항목이 무효가 됨)
+    static ResponseCache cache = new ResponseCache(64L * 1024 * 1024, 1024 * 1024);
+    private static final String ALL_USERS = "/users";
+    static final String VARY_ACCEPT_ENCODING = "Vary: Accept-Encoding";
+
+    // 본문이 compressMinBytes 이상이면 Accept-Encoding에 맞춰 gzip/deflate로 압축 (--compress=false면 끔)
+    static boolean compress = true;
+    private static int compressMinBytes = 1024;
+    // GET /users용 users.txt.gz (바이너리 스냅샷이거나 압축을 끄면 null)
+    static PrecompressedSnapshot precompressed;
+    // POST /users/bulk: bulkBatchSize개씩 묶어 저장, 응답에 담는 실패 줄은 bulkMaxErrors개까지
+    private static int bulkBatchSize = 1000;
+    private static int bulkMaxErrors = 1000;
+    // 샤드 모드면 다른 샤드로 보내거나 모아서 처리하는 라우터 (--shards가 없으면 null)
+    static ShardRouter router;
+    // 복제 팔로워면 리더를 따라가는 쪽 (--replicaOf가 없으면 null)
+    static ReplicationFollower follower;
+    // /metrics에 덧붙일 모드별 통계 (샤드, 복제)
+    private static final List<ServerMetrics.Source> metricSources = new ArrayList<>();
 
     public static void main(String[] args) {
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
-            System.out.println(PORT + "번 포트에서 서버 실행되는 중");
+        ServerConfig config = new ServerConfig(args);
+        int port = config.getInt("port", PORT);
+        // 스냅샷, 변경 로그, 접근 로그를 두는 디렉터리 --dataDir (한 컴퓨터에서 샤드 여러 개를 띄울 때 서로 다르게)
+        Path dataDir = Paths.get(config.get("dataDir", "."));
+        // 샤드 모드 --shards=host:port,... (ShardRouter 참고)
+        try {
+            router = ShardRouter.fromConfig(config, port);
+            if (router != null) metricSources.add(router);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
 
-            while (true) {
-                Socket socket = serverSocket.accept();
-                new Thread(() -> handleClient(socket)).start();
+        try {
+            Files.createDirectories(dataDir);
+            // 변경 로그는 --walBatchSize개까지 묶어 한 번에 쓰고 fsync (--walBatchWindow 마이크로초 동안 더 모을 수 있음)
+            MutationLog log = new MutationLog(dataDir, "users.log", config.getBoolean("walSync", true),
+                config.getInt("walBatchSize", 256), config.getInt("walBatchWindow", 0));
+            // --storage=binary: users.txt(JSON 줄) 대신 users.dat(바이너리 레코드)와 users.idx(id 인덱스)에 스냅샷 저장
+            Path snapshotFile = dataDir.resolve(config.get("storage", "text").equals("binary") ? "users.dat" : "users.txt");
+            store = UserStore.load(snapshotFile, log);
+            // 응답 압축 여부 --compress, 압축할 최소 본문 크기 --compressMin
+            compress = config.getBoolean("compress", true);
+            compressMinBytes = config.getInt("compressMin", 1024);
+            if (compress && store.hasTextSnapshot()) {
+                precompressed = new PrecompressedSnapshot(store, snapshotFile);
+                // 첫 요청 전에 미리 만들어 둠
+                precompressed.current(store.version());
             }
+        } catch (IOException e) {
+            System.out.println("users.txt 파일을 읽는 중 오류가 발생했습니다: " + e.getMessage());
+            return;
+        }
+        // 접근 로그는 --accessLog 파일("-"이면 콘솔)에 --accessLogFormat 형식으로, --accessLogSample개 중 하나만 기록 (0이면 끔)
+        // 링 버퍼는 --accessLogBuffer칸, 파일이 --accessLogMaxMB를 넘으면 교체하고 --accessLogFiles개까지 보관
+        String accessLogFile = config.get("accessLog", "access.log");
+        accessLog = new AccessLog(config.getInt("accessLogSample", 1), config.getInt("accessLogBuffer", 65536),
+            config.get("accessLogFormat", AccessLog.DEFAULT_FORMAT), accessLogFile.equals("-") ? null : dataDir.resolve(accessLogFile),
+            config.getInt("accessLogMaxMB", 64) * 1024L * 1024, config.getInt("accessLogFiles", 5));
+        // 복제: --replicationPort면 그 포트로 팔로워에게 변경 로그를 보내는 리더 (최근 --replicationBacklogMB만큼은 이어 보낼 수 있음),
+        // --replicaOf=host:port면 그 리더를 따라가는 읽기 전용 팔로워 (쓰기 요청은 --leaderHttp로 307)
+        try {
+            int replicationPort = config.getInt("replicationPort", 0);
+            if (replicationPort > 0) {
+                ReplicationLeader leader = new ReplicationLeader(store, config.getInt("replicationBacklogMB", 64) * 1024L * 1024);
+                leader.start(replicationPort);
+                metricSources.add(leader);
+            }
+            String replicaOf = config.get("replicaOf", null);
+            if (replicaOf != null) {
+                follower = new ReplicationFollower(replicaOf, store, dataDir, config.get("leaderHttp", null));
+                follower.start();
+                metricSources.add(follower);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("복제를 시작하지 못했습니다: " + e.getMessage());
+            return;
+        }
+        // 변경 로그가 --compactThreshold 바이트를 넘으면 --compactInterval 초 간격으로 스냅샷 압축
+        store.startCompactor(config.getInt("compactInterval", 10), config.getInt("compactThreshold", 1024 * 1024));
+        // 일괄 추가는 --bulkBatch개씩 한 번에 기록하고, 실패한 줄은 --bulkMaxErrors개까지 응답에 적는다
+        bulkBatchSize = Math.max(1, config.getInt("bulkBatch", 1000));
+        bulkMaxErrors = config.getInt("bulkMaxErrors", 1000);
+        // 요청 헤더 한도 --maxHeaderKB, 메모리에 모아 읽는 본문 한도 --maxBodyMB
+        HttpRequestParser.maxHeaderSize = config.getInt("maxHeaderKB", 64) * 1024;
+        HttpRequestParser.maxBodySize = config.getInt("maxBodyMB", 16) * 1024L * 1024;
+        // 연결 제한 시간 --idleTimeout, --headerTimeout, --bodyTimeout, --writeTimeout (초), 연결당 최대 요청 수 --maxRequests
+        ConnectionLifecycle.configure(config);
+        // 종료 신호를 받으면 처리 중인 요청을 --drainTimeout 초까지 기다렸다가 끝낸다
+        int drainSeconds = config.getInt("drainTimeout", 10);
+        // 응답 캐시 전체 크기 --cacheBytes, 항목 하나의 본문 한도 --cacheEntryBytes
+        cache = new ResponseCache(config.getInt("cacheBytes", 64 * 1024 * 1024), config.getInt("cacheEntryBytes", 1024 * 1024));
+
+        // --mode=nio: Selector 기반 이벤트 루프 서버로 실행
+        if (config.get("mode", "thread").equals("nio")) {
+            try {
+                NioHttpServer server = new NioHttpServer(port, config);
+                addShutdownHook(server::stopAccepting, drainSeconds);
+                server.run();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return;
+        }
+
+        // --mode=virtual: 연결마다 가상 스레드에서 handleClient 실행
+        ExecutorService executor = config.get("mode", "thread").equals("virtual") ? newVirtualThreadExecutor() : null;
+        Semaphore connectionPermits = new Semaphore(config.getInt("maxConnections", 10000));
+        requestPermits = new Semaphore(config.getInt("maxInFlight", 1024));
+        retryAfterSeconds = config.getInt("retryAfter", 1);
+        stats.startReporting(config.getInt("statsInterval", 10));
+
+        // 채널에서 accept해야 소켓에 SocketChannel이 붙어 transferTo(sendfile)로 파일을 보낼 수 있다
+        ServerSocketChannel listener;
+        try {
+            listener = ServerSocketChannel.open();
         } catch (IOException e) {
             e.printStackTrace();
+            return;
+        }
+        // 종료 훅은 리스너를 닫아서 accept를 끝낸다
+        addShutdownHook(() -> {
+            try {
+                listener.close();
+            } catch (IOException ignored) {
+            }
+        }, drainSeconds);
+        try (ServerSocketChannel serverChannel = listener) {
+            serverChannel.bind(new InetSocketAddress(port));
+            System.out.println(port + "번 포트에서 서버 실행되는 중");
+
+            while (true) {
+                Socket socket = serverChannel.accept().socket();
+                // 응답은 한 번에 모아서 쓰므로 Nagle 알고리즘으로 기다릴 이유가 없다
+                socket.setTcpNoDelay(true);
+
+                // 동시 연결 수 제한을 넘으면 503 응답 후 바로 연결 종료
+                if (!connectionPermits.tryAcquire()) {
+                    stats.connectionRejected();
+                    rejectConnection(socket);
+                    continue;
+                }
+                stats.connectionAccepted();
+
+                Runnable task = () -> {
+                    try {
+                        handleClient(socket);
+                    } finally {
+                        connectionPermits.release();
+                        stats.connectionClosed();
+                    }
+                };
+                if (executor != null) {
+                    executor.execute(task);
+                } else {
+                    new Thread(task).start();
+                }
+            }
+        } catch (IOException e) {
+            // 종료 중에 리스너를 닫아서 accept가 끝난 경우는 정상
+            if (!ConnectionLifecycle.draining()) e.printStackTrace();
+        }
+    }
+
+    // 종료 신호(Ctrl+C, kill)를 받으면: 새 연결을 받지 않고, 다음 요청을 기다리던 연결은 닫고,
+    // 처리 중인 연결은 응답을 마치고 닫힐 때까지 drainSeconds초까지 기다린 뒤 접근 로그를 비운다
+    private static void addShutdownHook(Runnable stopAccepting, int drainSeconds) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            ConnectionLifecycle.drain();
+            stopAccepting.run();
+            long until = System.nanoTime() + drainSeconds * 1_000_000_000L;
+            while (stats.active() > 0 && System.nanoTime() < until) {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+            System.out.println("서버 종료: 남은 연결 " + stats.active() + "개");
+            accessLog.awaitFlushed(1000);
+        }, "shutdown-drain"));
+    }
+
+    // 가상 스레드 executor 생성 (가상 스레드를 지원하지 않는 JDK에서는 캐시 스레드 풀 사용)
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.out.println("가상 스레드를 지원하지 않는 JDK입니다. 스레드 풀로 대신 실행합니다.");
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    // 연결 수 초과 시 503 응답 후 소켓 닫기
+    private static void rejectConnection(Socket socket) {
+        try (Socket s = socket; HttpResponseWriter writer = new HttpResponseWriter(s.getOutputStream())) {
+            sendHttpResponse(writer, 503, "Service Unavailable", "서버가 혼잡합니다. 잠시 후 다시 시도해 주세요.",
+                "Retry-After: " + retryAfterSeconds, "Connection: close");
+            writer.flush();
+        } catch (IOException | UncheckedIOException e) {
+            // 거절하는 연결이므로 무시
         }
     }
 
     private static void handleClient(Socket socket) {
+        // 제한 시간이 지나면 입력 쪽만 닫아서 읽기에 막혀 있던 스레드를 깨운다 (헤더를 받다 끊겼으면 408 응답 후 종료)
+        ConnectionLifecycle lifecycle = new ConnectionLifecycle(() -> {
+            try {
+                socket.shutdownInput();
+            } catch (IOException ignored) {
+                // 이미 닫힌 연결
+            }
+        });
         try (
-            BufferedReader br = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            PrintWriter writer = new PrintWriter(socket.getOutputStream(), true)
+            HttpResponseWriter writer = new HttpResponseWriter(socket.getOutputStream(), socket.getChannel());
+            // 버퍼에 파이프라이닝된 요청이 남아 있는 동안은 응답을 모아 두고, 소켓에서 더 읽기 직전에 한 번에 보낸다
+            HttpRequestParser parser = new HttpRequestParser(socket.getInputStream(), writer, lifecycle)
         ) {
+            // GET /users 파일 본문은 응답 버퍼를 거치지 않고 소켓 채널로 바로 전송
+            FileSink fileSink = (file, count) -> {
+                try (FileChannel source = file) {
+                    WritableByteChannel target = socket.getChannel() != null
+                        ? socket.getChannel() : Channels.newChannel(socket.getOutputStream());
+                    long sent = 0;
+                    while (sent < count) {
+                        sent += source.transferTo(sent, count - sent, target);
+                    }
+                }
+            };
+
             // 지속 연결
             while (true) {
-                // Request 첫 줄 읽기
-                String request = br.readLine();
+                // 요청 줄, 헤더, 본문까지 한 번에 읽기 (요청 객체는 연결 안에서 재사용)
+                HttpRequest request;
+                try {
+                    request = parser.read();
+                } catch (HttpRequestParser.ParseException e) {
+                    // 요청 경계를 알 수 없으므로 오류 응답 후 연결 종료
+                    sendHttpResponse(writer, e.statusCode, e.statusText, e.getMessage(), ConnectionLifecycle.CLOSE_HEADER);
+                    writer.flush();
+                    break;
+                } catch (IOException e) {
+                    if (lifecycle.expiredIn() == null) throw e;
+                    // 헤더/본문을 제한 시간 안에 다 보내지 않음
+                    sendHttpResponse(writer, 408, "Request Timeout", "요청을 받는 데 시간이 너무 오래 걸립니다.",
+                        ConnectionLifecycle.CLOSE_HEADER);
+                    writer.flush();
+                    break;
+                }
+                // 연결이 끊겼거나 다음 요청을 기다리다 제한 시간이 지남
                 if (request == null) break;
-                if (request.isEmpty()) continue;
-
-                System.out.println("클라이언트 요청: " + request);
-                String[] part = request.split(" ");
-                String method = part[0];
-                String path = part[1];
-
-                int contentLength = 0;
-                String line;
-
-                // 헤더 읽기 
-                while ((line = br.readLine()) != null && !line.isEmpty()) {
-                    if (line.toLowerCase().startsWith("content-length:")) {
-                        try {
-                            contentLength = Integer.parseInt(line.split(" ")[1].trim());
-                        } catch (NumberFormatException e) {
-                            contentLength = 0;
+                // POST /users/bulk는 헤더까지만 읽었으므로 본문은 처리 함수가 스트림으로 읽는다
+                boolean streaming = HttpRequestParser.streamsBody(request);
+
+                // 처리 중인 요청 수 제한을 넘으면 503 응답 (본문은 이미 읽었으므로 버림)
+                if (!requestPermits.tryAcquire()) {
+                    stats.requestRejected();
+                    // 거절한 요청도 한 요청으로 센다 (종료 중이거나 최대 요청 수에 닿았으면 닫음)
+                    // 스트리밍 요청은 아직 받지 않은 본문을 다 받아서 버릴 이유가 없으므로 연결을 닫는다
+                    boolean last = lifecycle.lastRequest(request) || streaming;
+                    sendHttpResponse(writer, 503, "Service Unavailable", "서버가 혼잡합니다. 잠시 후 다시 시도해 주세요.",
+                        "Retry-After: " + retryAfterSeconds, lifecycle.connectionHeader(last));
+                    if (last) break;
+                    continue;
+                }
+                // 클라이언트가 원하거나 최대 요청 수에 닿았거나 서버가 종료 중이면 이 응답 뒤에 닫는다
+                boolean last = lifecycle.lastRequest(request);
+                writer.connectionHeader(lifecycle.connectionHeader(last));
+                try {
+                    if (streaming) {
+                        // Expect: 100-continue면 본문을 보내도 된다고 먼저 알림
+                        if ("100-continue".equalsIgnoreCase(request.header(HttpRequest.EXPECT))) {
+                            writer.interim(100, "Continue");
+                            writer.flush();
                         }
+                        parser.bodyStream(request);
                     }
+                    handle(request, writer, fileSink);
+                    // 처리 함수가 다 읽지 않은 본문은 버리고 다음 요청으로
+                    if (streaming) parser.finishBody(request);
+                } finally {
+                    requestPermits.release();
+                    writer.connectionHeader(null);
                 }
+                if (last) break;
+            }
+            writer.flush();
+        } catch (IOException | UncheckedIOException e) {
+            // 제한 시간으로 끊은 연결에서 나는 오류는 기록하지 않음
+            if (lifecycle.expiredIn() == null) accessLog.error("연결 처리 중 오류 " + socket.getRemoteSocketAddress(), e);
+        } finally {
+            lifecycle.close();
+            // 연결 루프가 끝나면 (Connection: close, EOF, 제한 시간, 오류) 소켓도 닫는다
+            // (HttpResponseWriter의 close()는 스트림을 닫지 않으므로 여기서 직접 닫아야 한다)
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // 이미 닫힌 연결
+            }
+        }
+    }
 
-                // GET USERS BY KEY AND VALUE REQUEST
-                if (method.equals("GET") && path.startsWith("/users?")) {
-                    handleGetUsersByKeyValue(writer, path);
-                }
+    // 요청 하나 처리 (스레드 모드와 NIO 모드가 공유): 라우팅한 뒤 처리 시간, 상태 코드, 바이트 수를 통계와 접근 로그에 남긴다
+    static void handle(HttpRequest request, HttpResponseWriter writer, FileSink fileSink) {
+        long started = System.nanoTime();
+        long written = writer.bytesWritten();
+        if (follower != null) writer.extraHeader(follower.lagHeader());
+        route(request, writer, fileSink);
+        long nanos = System.nanoTime() - started;
+        long responseBytes = writer.bytesWritten() - written;
+        metrics.record(request, writer.lastStatus(), nanos, responseBytes);
+        accessLog.log(request, writer.lastStatus(), nanos, responseBytes);
+    }
 
-                // GET ALL USERS REQUEST
-                else if (method.equals("GET") && path.equals("/users")) {
-                    handleGetAllUsers(writer);
-                }
+    // method와 path에 따라 요청 처리 함수 호출
+    private static void route(HttpRequest request, HttpResponseWriter writer, FileSink fileSink) {
+        String method = request.method();
+        String path = request.path();
 
-                // GET (BAD REQUEST)
-                else if (method.equals("GET")) {
-                    sendHttpResponse(writer, 400, "Bad Request", "지원하지 않는 요청입니다.");
-                }
+        // 복제 팔로워는 읽기 전용
+        if (follower != null && (method.equals("POST") || method.equals("PUT") || method.equals("DELETE"))) {
+            follower.rejectWrite(request, writer);
+            return;
+        }
 
-                // HEAD 쿼리 파라미터가 포함된 경우 REQUEST
-                else if (method.equals("HEAD") && path.startsWith("/users?")) {
-                    handleHeadUsersByKeyValue(writer, path);
-                }
+        // 샤드 모드: 다른 샤드가 맡은 id면 그 샤드로, id를 모르는 조회는 모든 샤드에서 모아서
+        if (router != null && router.route(request, writer)) {
+            return;
+        }
 
-                // HEAD 전체 사용자 조회 REQUEST
-                else if (method.equals("HEAD") && path.equals("/users")) {
-                    handleHeadAllUsers(writer);
-                }
+        // GET METRICS REQUEST
+        if (method.equals("GET") && path.equals("/metrics")) {
+            sendHttpResponse(writer, 200, "OK", metrics.render(stats, store, cache, accessLog, metricSources));
+        }
 
-                // POST (BAD REQUEST)
-                else if (method.equals("POST") && !path.equals("/users")) {
-                    sendHttpResponse(writer, 400, "Bad Request", "지원하지 않는 요청입니다.");
-                }
+        // GET USERS BY KEY AND VALUE REQUEST
+        else if (method.equals("GET") && path.startsWith("/users?")) {
+            handleGetUsersByKeyValue(request, writer, path);
+        }
 
-                // POST USER REQUEST
-                else if (method.equals("POST") && path.equals("/users")) {
-                    handlePostUser(br, writer, contentLength);
-                }
+        // GET ALL USERS REQUEST
+        else if (method.equals("GET") && path.equals("/users")) {
+            handleGetAllUsers(request, writer, fileSink);
+        }
 
-                // PUT 사용자 정보 수정 REQUEST
-                else if (method.equals("PUT") && path.equals("/users")) {
-                    handlePutUser(br, writer, contentLength);
-                }
+        // GET EXPORT USERS REQUEST
+        else if (method.equals("GET") && path.equals("/users/export")) {
+            handleExportUsers(request, writer);
+        }
 
-                // DELETE USER REQUEST
-                else if (method.equals("DELETE") && path.startsWith("/users/")) {
-                    String id = path.substring("/users/".length());
-                    handleDeleteUser(writer, id);
-                }
+        // GET (BAD REQUEST)
+        else if (method.equals("GET")) {
+            sendHttpResponse(writer, 400, "Bad Request", "지원하지 않는 요청입니다.");
+        }
 
-                // NOT ALLOWED METHOD
-                else {
-                    sendHttpResponse(writer, 405, "Method Not Allowed", "지원되지 않는 메서드입니다.");
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+        // HEAD 쿼리 파라미터가 포함된 경우 REQUEST
+        else if (method.equals("HEAD") && path.startsWith("/users?")) {
+            handleHeadUsersByKeyValue(request, writer, path);
+        }
+
+        // HEAD 전체 사용자 조회 REQUEST
+        else if (method.equals("HEAD") && path.equals("/users")) {
+            handleHeadAllUsers(request, writer);
+        }
+
+        // POST BULK USERS REQUEST
+        else if (method.equals("POST") && path.equals(HttpRequestParser.STREAMING_PATH)) {
+            handleBulkUsers(request, writer);
+        }
+
+        // POST (BAD REQUEST)
+        else if (method.equals("POST") && !path.equals("/users")) {
+            sendHttpResponse(writer, 400, "Bad Request", "지원하지 않는 요청입니다.");
+        }
+
+        // POST USER REQUEST
+        else if (method.equals("POST") && path.equals("/users")) {
+            handlePostUser(request, writer);
+        }
+
+        // PUT 사용자 정보 수정 REQUEST
+        else if (method.equals("PUT") && path.equals("/users")) {
+            handlePutUser(request, writer);
+        }
+
+        // DELETE USER REQUEST
+        else if (method.equals("DELETE") && path.startsWith("/users/")) {
+            String id = path.substring("/users/".length());
+            handleDeleteUser(writer, id);
+        }
+
+        // NOT ALLOWED METHOD
+        else {
+            sendHttpResponse(writer, 405, "Method Not Allowed", "지원되지 않는 메서드입니다.");
         }
     }
 
     // HTTP 응답 처리 함수 (본문 전송)
-    private static void sendHttpResponse(PrintWriter writer, int statusCode, String statusText, String body) {
-        String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneId.of("GMT")));
-        writer.println("HTTP/1.1 " + statusCode + " " + statusText);
-        writer.println("Date: " + date);             
-        writer.println("Content-Type: text/plain");
-        writer.println("Content-Length: " + body.length());
-        writer.println(); // 헤더와 본문 사이 빈 줄
-        writer.println(body);
+    // 응답은 writer의 버퍼에 모이고, 요청 처리가 끝난 뒤 flush()로 한 번에 전송된다
+    static void sendHttpResponse(HttpResponseWriter writer, int statusCode, String statusText, String body) {
+        sendHttpResponse(writer, statusCode, statusText, body, NO_HEADERS);
+    }
+
+    // HTTP 응답 처리 함수 (추가 헤더 포함)
+    static void sendHttpResponse(HttpResponseWriter writer, int statusCode, String statusText, String body, String... extraHeaders) {
+        writer.status(statusCode, statusText);
+        for (String header : extraHeaders) {
+            writer.header(header);
+        }
+        // Content-Length는 문자 수가 아니라 UTF-8 바이트 수
+        writer.contentLength(HttpResponseWriter.utf8Length(body));
+        writer.endHeaders(); // 헤더와 본문 사이 빈 줄
+        writer.write(body);
     }
 
     // HEAD 응답 처리 함수 (본문은 보내지 않고 헤더만 전송)
-    private static void sendHttpHeadResponse(PrintWriter writer, int statusCode, String statusText, String body) {
-        String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneId.of("GMT")));
-        writer.println("HTTP/1.1 " + statusCode + " " + statusText);
-        writer.println("Date: " + date);          
-        writer.println("Content-Type: text/plain");
-        writer.println("Content-Length: " + body.length());
-        writer.println(); // 헤더와 본문 사이 빈 줄
+    private static void sendHttpHeadResponse(HttpResponseWriter writer, int statusCode, String statusText, String body) {
+        sendHttpHeadResponse(writer, statusCode, statusText, HttpResponseWriter.utf8Length(body));
         // HEAD 방식은 본문을 전송하지 않음
     }
 
-    // GET /users?key=value 요청 처리 함수
-    private static void handleGetUsersByKeyValue(PrintWriter writer, String path) {
-        // ex) /users?name=kim
-        String query = path.substring(path.indexOf("?") + 1).trim();
-        
-        // 쿼리 파라미터가 없을 때 400 Bad Request
-        if(query.isEmpty()){
-            sendHttpResponse(writer, 400, "Bad Request", "쿼리 파라미터가 없습니다.");
-            return;
+    // HEAD 응답 처리 함수 (본문 길이를 바이트 수로 직접 지정)
+    private static void sendHttpHeadResponse(HttpResponseWriter writer, int statusCode, String statusText, long contentLength) {
+        writer.status(statusCode, statusText);
+        writer.contentLength(contentLength);
+        writer.endHeaders();
+    }
+
+    // chunked 응답 헤더 전송 함수 (본문은 ChunkedWriter로 이어서 보냄)
+    static void sendChunkedHeaders(HttpResponseWriter writer, int statusCode, String statusText, String... extraHeaders) {
+        writer.status(statusCode, statusText);
+        for (String header : extraHeaders) {
+            writer.header(header);
         }
-        
-        // "="를 기준으로 최대 2부분만 분리 (ex) name=kim)
-        String[] param = query.split("=", 2);
+        writer.chunked();
+        writer.endHeaders();
+    }
+
+    // 파일 본문 응답 함수 (헤더는 writer로, 본문은 fileSink로 복사 없이 전송, file은 fileSink가 닫는다)
+    private static void sendFileResponse(HttpResponseWriter writer, FileSink fileSink, FileChannel file, long size,
+                                         String... extraHeaders) throws IOException {
+        sendFileHeaders(writer, size, extraHeaders);
+        writer.flush();
+        fileSink.sendFile(file, size);
+        writer.sent(size);
+    }
 
-        // 잘못된 쿼리 파라미터일 때 400 Bad Request
-        if (param.length != 2 || param[0].trim().isEmpty() || param[1].trim().isEmpty()) {
-            sendHttpResponse(writer, 400, "Bad Request", "잘못된 쿼리 파라미터입니다.");
+    // 파일 본문 응답의 헤더 (HEAD는 여기까지만)
+    private static void sendFileHeaders(HttpResponseWriter writer, long size, String... extraHeaders) {
+        writer.status(200, "OK");
+        for (String header : extraHeaders) {
+            writer.header(header);
+        }
+        writer.contentLength(size);
+        writer.endHeaders();
+    }
+
+    // length 바이트 본문에 쓸 Content-Encoding (압축하지 않으면 null)
+    static String encodingFor(HttpRequest request, long length) {
+        if (!compress || length < compressMinBytes) return null;
+        return ContentEncoding.negotiate(request.header(HttpRequest.ACCEPT_ENCODING));
+    }
+
+    // 클라이언트가 gzip을 받으면 현재 버전의 users.txt.gz (없거나 아직 만드는 중이면 null)
+    private static PrecompressedSnapshot.Snapshot precompressedFor(HttpRequest request) {
+        if (precompressed == null) return null;
+        if (ContentEncoding.quality(request.header(HttpRequest.ACCEPT_ENCODING), ContentEncoding.GZIP) <= 0) return null;
+        return precompressed.current(store.version());
+    }
+
+    // GET /users?key=value 요청 처리 함수
+    private static void handleGetUsersByKeyValue(HttpRequest request, HttpResponseWriter writer, String path) {
+        // ex) /users?name=kim, /users?age>=20&age<30&fields=id,name&limit=100&cursor=...
+        UserQuery query;
+        try {
+            query = UserQuery.parse(path.substring(path.indexOf("?") + 1));
+        } catch (IllegalArgumentException e) {
+            // 쿼리 파라미터가 없거나 잘못됐을 때 400 Bad Request
+            sendHttpResponse(writer, 400, "Bad Request", e.getMessage());
             return;
         }
         
-        String key = param[0].trim();
-        String value = param[1].trim();
-        
-        File file = new File("users.txt");
-
         // file이 존재하지 않을 때 404 Not Found
-        if (!file.exists()) {
+        if (!store.exists()) {
             sendHttpResponse(writer, 404, "Not Found", "users.txt 파일을 찾을 수 없습니다.");
             return;
         }
         
-        StringBuilder matchedUsers = new StringBuilder();
-        try (BufferedReader fileReader = new BufferedReader(new FileReader(file))) {
-            String fileLine;
-            while ((fileLine = fileReader.readLine()) != null) {
-                // 단순 문자열 포함 검사: "key":"value" 형태로 검색
-                if (fileLine.contains("\"" + key + "\":") && fileLine.contains("\"" + value + "\"")) {
-                    matchedUsers.append(fileLine).append("\n");
-                }
-            }
-        } catch (IOException e) {
-            sendHttpResponse(writer, 500, "Internal Server Error", "파일 처리 중 오류가 발생했습니다.");
+        // 인덱스로 조건에 맞는 사용자 조회 (캐시에 있으면 그대로, 없으면 만들어서 캐시)
+        sendUserList(request, writer, path, query, false);
+    }
+
+    // GET /users 전체 조회 요청 처리 함수
+    private static void handleGetAllUsers(HttpRequest request, HttpResponseWriter writer, FileSink fileSink) {
+        // 저장된 데이터가 없을 때 404 Not Found
+        if (!store.exists()) {
+            sendHttpResponse(writer, 404, "Not Found", "users.txt 파일을 찾을 수 없습니다.");
             return;
         }
-        
-        //해당하는 유저가 없을 때 404 Not Found
-        if (matchedUsers.length() == 0) {
-            sendHttpResponse(writer, 404, "Not Found", "일치하는 사용자를 찾을 수 없습니다.");
+        // 바이너리 스냅샷은 그대로 보낼 수 없으므로 메모리의 사용자를 JSON 줄로 만들어 보냄
+        if (!store.hasTextSnapshot()) {
+            sendUserList(request, writer, ALL_USERS, UserQuery.ALL, false);
             return;
-        } else {
-            sendHttpResponse(writer, 200, "OK", matchedUsers.toString());
+        }
+        PrecompressedSnapshot.Snapshot gzip = precompressedFor(request);
+        ResponseCache.Entry entry = cache.get(ALL_USERS, store.version());
+        if (entry == null && gzip != null) {
+            entry = cache.put(ALL_USERS, new ResponseCache.Entry(gzip.version, gzip.lastModified, 200, "OK", null, gzip.sourceSize));
+        }
+        // 클라이언트가 가진 버전과 같으면 파일을 열지 않고 304
+        if (entry != null && entry.notModified(request)) {
+            sendNotModified(writer, entry, gzip != null ? ContentEncoding.GZIP : null);
             return;
         }
-    }
 
-    // GET /users 전체 조회 요청 처리 함수
-    private static void handleGetAllUsers(PrintWriter writer) {
-        File file = new File("users.txt");
-        if (file.exists() && file.isFile()) {
-            if (file.canRead()) {
-                try {
-                    String content = Files.readString(file.toPath());
-                    sendHttpResponse(writer, 200, "OK", content);
-                    return;
-                } catch (IOException e) {
-                    sendHttpResponse(writer, 500, "Internal Server Error", "파일을 읽는 중에 오류가 발생했습니다.");
+        // 미리 압축해 둔 users.txt.gz를 그대로 전송 (열기 전에 다른 버전으로 교체됐으면 압축하지 않은 스냅샷으로)
+        if (gzip != null) {
+            try {
+                FileChannel file = precompressed.open(gzip);
+                if (file != null) {
+                    sendFileResponse(writer, fileSink, file, gzip.size, entry.etagHeader(ContentEncoding.GZIP),
+                        entry.lastModifiedHeader, VARY_ACCEPT_ENCODING, "Content-Encoding: gzip");
                     return;
                 }
-            } else {
-                sendHttpResponse(writer, 403, "Forbidden", "users.txt 파일에 접근할 권한이 없습니다.");
-                return;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-        } else {
-            // file이 존재하지 않을 때 404 Not Found
+        }
+
+        // 최신 상태의 users.txt 스냅샷을 본문으로 그대로 전송 (압축되지 않은 변경이 있으면 메모리의 사용자를 보냄)
+        long version = store.version();
+        long lastModified = store.lastModified();
+        Path snapshot = store.currentSnapshot();
+        if (snapshot == null) {
+            sendUserList(request, writer, ALL_USERS, UserQuery.ALL, false);
+            return;
+        }
+        FileChannel file;
+        try {
+            file = FileChannel.open(snapshot, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
             sendHttpResponse(writer, 404, "Not Found", "users.txt 파일을 찾을 수 없습니다.");
             return;
+        } catch (AccessDeniedException e) {
+            sendHttpResponse(writer, 403, "Forbidden", "users.txt 파일에 접근할 권한이 없습니다.");
+            return;
+        } catch (IOException e) {
+            sendHttpResponse(writer, 500, "Internal Server Error", "파일을 읽는 중에 오류가 발생했습니다.");
+            return;
+        }
+        try {
+            long size = file.size();
+            // 본문은 파일에 있으므로 캐시에는 크기와 ETag/Last-Modified만 둔다 (HEAD가 파일을 보지 않고 답할 수 있게)
+            if (entry == null || entry.contentLength != size) {
+                entry = cache.put(ALL_USERS, new ResponseCache.Entry(version, lastModified, 200, "OK", null, size));
+            }
+            if (precompressed != null) {
+                sendFileResponse(writer, fileSink, file, size, entry.etagHeader, entry.lastModifiedHeader, VARY_ACCEPT_ENCODING);
+            } else {
+                sendFileResponse(writer, fileSink, file, size, entry.etagHeader, entry.lastModifiedHeader);
+            }
+        } catch (IOException e) {
+            // 헤더를 보낸 뒤 전송이 실패하면 응답을 이어갈 수 없으므로 연결 쪽 오류로 넘김
+            throw new UncheckedIOException(e);
         }
     }
     
     // POST /users 요청 처리 함수 (사용자 추가)
-    private static void handlePostUser(BufferedReader br, PrintWriter writer, int contentLength) {
+    private static void handlePostUser(HttpRequest request, HttpResponseWriter writer) {
         // 요청 본문이 비어있을 때 400 Bad Request
-        if (contentLength <= 0) {
+        if (request.contentLength() <= 0) {
             sendHttpResponse(writer, 400, "Bad Request", "요청 본문이 비어 있습니다.");
             return;
         }
-        
-        char[] bodyChars = new char[contentLength];
+
+        // 본문은 파서가 Content-Length 바이트만큼 이미 읽어 둠, 저장 전에 한 번만 파싱
+        User user = parseUser(request, writer);
+        if (user == null) return;
+        // id가 없을 때 400 Bad Request
+        String id = user.id();
+        if (id == null || id.isEmpty()) {
+            sendHttpResponse(writer, 400, "Bad Request", "요청 본문에 id가 없습니다.");
+            return;
+        }
         try {
-            int readChars = br.read(bodyChars, 0, contentLength);
-            // 요청 본문 읽은 것과 contentLength가 다를 때 400 Bad Request
-            if (readChars != contentLength) {
-                sendHttpResponse(writer, 400, "Bad Request", "요청 본문을 완전히 읽지 못했습니다.");
-                return;
-            }
-            
-            String body = new String(bodyChars);
-            try {
-                Files.write(Paths.get("users.txt"), (body + "\n").getBytes(),
-                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-                sendHttpResponse(writer, 201, "Created", "사용자 정보가 저장되었습니다.");
-                return;
-            } catch (IOException e) {
-                sendHttpResponse(writer, 500, "Internal Server Error", "파일 저장 중 오류가 발생했습니다.");
-                return;
-            }
+            store.insert(user);
+            sendHttpResponse(writer, 201, "Created", "사용자 정보가 저장되었습니다.");
         } catch (IOException e) {
-            sendHttpResponse(writer, 500, "Internal Server Error", "요청 본문을 읽는 중 오류가 발생했습니다.");
-            return;
+            sendHttpResponse(writer, 500, "Internal Server Error", "파일 저장 중 오류가 발생했습니다.");
         }
     }
 
-    // HEAD /users?key=value 요청 처리 함수 (헤더만 전송)
-    private static void handleHeadUsersByKeyValue(PrintWriter writer, String path) {
-        String query = path.substring(path.indexOf("?") + 1).trim();
-
-        // 쿼리 파라미터가 없을 때 400 Bad Request
-        if(query.isEmpty()){
-            sendHttpHeadResponse(writer, 400, "Bad Request", "쿼리 파라미터가 없습니다.");
-            return;
+    // POST /users/bulk 요청 처리 함수 (사용자 일괄 추가)
+    // 본문은 한 줄에 사용자 하나인 JSON(NDJSON)이고, 흘려 읽으면서 bulkBatchSize개씩 모아 한 번에 저장한다
+    // 잘못된 줄은 건너뛰고 계속하며, 응답은 실패한 줄 {"line":N,"error":"..."}들과 마지막 요약 줄로 된 NDJSON
+    // 샤드 모드면 다른 샤드가 맡은 줄은 샤드별로 묶어 그 샤드의 /users/bulk로 보낸다
+    private static void handleBulkUsers(HttpRequest request, HttpResponseWriter writer) {
+        long started = System.nanoTime();
+        ShardRouter.BulkForwarder forwarder = router != null && request.header(HttpRequest.SHARD_LOCAL) == null
+            ? router.bulkForwarder(bulkBatchSize) : null;
+        StringBuilder errors = new StringBuilder();
+        List<User> batch = new ArrayList<>(bulkBatchSize);
+        long[] batchLines = new long[bulkBatchSize];
+        long lineNumber = 0;
+        long received = 0;
+        long inserted = 0;
+        long failed = 0;
+        long batches = 0;
+        int reported = 0;
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(request.bodyInput(), StandardCharsets.UTF_8), 64 * 1024);
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+                received++;
+                String error = null;
+                User user = null;
+                try {
+                    user = User.parse(line);
+                    if (user.id() == null || user.id().isEmpty()) error = "id가 없습니다.";
+                } catch (JsonTokenizer.JsonException e) {
+                    error = "올바른 JSON이 아닙니다: " + e.getMessage();
+                }
+                if (error != null) {
+                    failed++;
+                    if (reported++ < bulkMaxErrors) appendBulkError(errors, lineNumber, error);
+                    continue;
+                }
+                if (forwarder != null && forwarder.forward(user.id(), line, lineNumber)) continue;
+                batchLines[batch.size()] = lineNumber;
+                batch.add(user);
+                if (batch.size() == bulkBatchSize) {
+                    batches++;
+                    if (insertBatch(batch)) {
+                        inserted += batch.size();
+                    } else {
+                        failed += batch.size();
+                        for (int i = 0; i < batch.size(); i++) {
+                            if (reported++ < bulkMaxErrors) appendBulkError(errors, batchLines[i], "저장 중 오류가 발생했습니다.");
+                        }
+                    }
+                    batch.clear();
+                }
+            }
+        } catch (IOException e) {
+            // 본문 도중에 연결이 끊기거나 청크 형식이 깨지면 요청의 끝을 알 수 없으므로 연결 쪽 오류로 넘김
+            throw new UncheckedIOException(e);
+        }
+        if (!batch.isEmpty()) {
+            batches++;
+            if (insertBatch(batch)) {
+                inserted += batch.size();
+            } else {
+                failed += batch.size();
+                for (int i = 0; i < batch.size(); i++) {
+                    if (reported++ < bulkMaxErrors) appendBulkError(errors, batchLines[i], "저장 중 오류가 발생했습니다.");
+                }
+            }
+        }
+        if (forwarder != null) {
+            forwarder.finish();
+            inserted += forwarder.inserted;
+            failed += forwarder.failed;
+            batches += forwarder.batches;
+            for (int i = 0; i < forwarder.failedLines.size(); i++) {
+                if (reported++ < bulkMaxErrors) appendBulkError(errors, forwarder.failedLines.get(i), forwarder.failedReasons.get(i));
+            }
         }
 
-        String[] param = query.split("=", 2);
-
-        // 잘못된 쿼리 파라미터일 때 400 Bad Request
-        if (param.length != 2 || param[0].trim().isEmpty() || param[1].trim().isEmpty()) {
-            sendHttpHeadResponse(writer, 400, "Bad Request", "잘못된 쿼리 파라미터입니다.");
+        // 요청 본문이 비어있을 때 400 Bad Request
+        if (received == 0) {
+            sendHttpResponse(writer, 400, "Bad Request", "요청 본문이 비어 있습니다.");
             return;
         }
+        errors.append("{\"received\":").append(received)
+            .append(",\"inserted\":").append(inserted)
+            .append(",\"failed\":").append(failed)
+            .append(",\"batches\":").append(batches)
+            .append(",\"millis\":").append((System.nanoTime() - started) / 1_000_000)
+            .append("}\n");
+        sendHttpResponse(writer, 200, "OK", errors.toString());
+    }
 
-        String key = param[0].trim();
-        String value = param[1].trim();
+    // 일괄 추가의 한 묶음 저장 (실패하면 false, 묶음 전체가 반영되지 않음)
+    private static boolean insertBatch(List<User> batch) {
+        try {
+            store.insertAll(batch);
+            return true;
+        } catch (IOException e) {
+            accessLog.error("일괄 추가 저장 중 오류", e);
+            return false;
+        }
+    }
 
-        File file = new File("users.txt");
+    private static void appendBulkError(StringBuilder out, long line, String error) {
+        out.append("{\"line\":").append(line).append(",\"error\":");
+        User.appendString(out, error);
+        out.append("}\n");
+    }
 
-        //file이 존재하지 않을 때 404 Not Found
-        if (!file.exists()) {
-            sendHttpHeadResponse(writer, 404, "Not Found", "");
-            return;
+    // GET /users/export 요청 처리 함수 (한 시점의 전체 사용자를 NDJSON으로 내보내기)
+    // 모든 스트라이프 락을 잡고 목록만 복사한 뒤 놓으므로, 내보내는 동안의 변경은 섞이지 않고 쓰기도 막지 않는다
+    // 어느 시점인지는 X-Snapshot-Version 헤더(저장소 버전)로 알려준다
+    private static void handleExportUsers(HttpRequest request, HttpResponseWriter writer) {
+        UserStore.Snapshot snapshot = store.consistentSnapshot();
+        String versionHeader = "X-Snapshot-Version: " + snapshot.version;
+        String encoding = encodingFor(request, Long.MAX_VALUE);
+        if (encoding != null) {
+            sendChunkedHeaders(writer, 200, "OK", versionHeader, VARY_ACCEPT_ENCODING, "Content-Encoding: " + encoding);
+        } else if (compress) {
+            sendChunkedHeaders(writer, 200, "OK", versionHeader, VARY_ACCEPT_ENCODING);
+        } else {
+            sendChunkedHeaders(writer, 200, "OK", versionHeader);
         }
+        ChunkedWriter chunked = new ChunkedWriter(writer, encoding);
+        for (User user : snapshot.users) {
+            chunked.writeLine(user);
+        }
+        chunked.finish();
+    }
 
-        StringBuilder matchedUsers = new StringBuilder();
-        try (BufferedReader fileReader = new BufferedReader(new FileReader(file))) {
-            String fileLine;
-            while ((fileLine = fileReader.readLine()) != null) {
-                if (fileLine.contains("\"" + key + "\":") && fileLine.contains("\"" + value + "\"")) {
-                    matchedUsers.append(fileLine).append("\n");
-                }
-            }
-        } catch (IOException e) {
-            sendHttpHeadResponse(writer, 500, "Internal Server Error", "");
+    // HEAD /users?key=value 요청 처리 함수 (헤더만 전송)
+    private static void handleHeadUsersByKeyValue(HttpRequest request, HttpResponseWriter writer, String path) {
+        UserQuery query;
+        try {
+            query = UserQuery.parse(path.substring(path.indexOf("?") + 1));
+        } catch (IllegalArgumentException e) {
+            // 쿼리 파라미터가 없거나 잘못됐을 때 400 Bad Request
+            sendHttpHeadResponse(writer, 400, "Bad Request", e.getMessage());
             return;
         }
-        
-        //해당하는 유저가 없을 때 404 Not Found
-        if (matchedUsers.length() == 0) {
+
+        //file이 존재하지 않을 때 404 Not Found
+        if (!store.exists()) {
             sendHttpHeadResponse(writer, 404, "Not Found", "");
             return;
-        } else {
-            sendHttpHeadResponse(writer, 200, "OK", matchedUsers.toString());
-            return;
         }
+
+        // GET과 같은 헤더 (GET이 만들어 둔 캐시 항목이 있으면 그 메타데이터로, 없으면 만들어서 캐시)
+        sendUserList(request, writer, path, query, true);
     }
 
     // HEAD /users 전체 조회 처리 함수 (헤더만 전송)
-    private static void handleHeadAllUsers(PrintWriter writer) {
-        File file = new File("users.txt");
-        if (file.exists() && file.isFile()) {
-            if (file.canRead()) {
-                try {
-                    String content = Files.readString(file.toPath());
-                    sendHttpHeadResponse(writer, 200, "OK", content);
-                    return;
-                } catch (IOException e) {
-                    sendHttpHeadResponse(writer, 500, "Internal Server Error", "파일을 읽는 중에 오류가 발생했습니다.");
-                    return;
-                }
-            } else {
-                sendHttpHeadResponse(writer, 403, "Forbidden", "users.txt 파일에 접근할 권한이 없습니다.");
+    private static void handleHeadAllUsers(HttpRequest request, HttpResponseWriter writer) {
+        // 저장된 데이터가 없을 때 404 Not Found
+        if (!store.exists()) {
+            sendHttpHeadResponse(writer, 404, "Not Found", "users.txt 파일을 찾을 수 없습니다.");
+            return;
+        }
+        if (!store.hasTextSnapshot()) {
+            sendUserList(request, writer, ALL_USERS, UserQuery.ALL, true);
+            return;
+        }
+        // 캐시된 메타데이터가 있으면 파일을 전혀 보지 않고 응답
+        PrecompressedSnapshot.Snapshot gzip = precompressedFor(request);
+        ResponseCache.Entry entry = cache.get(ALL_USERS, store.version());
+        if (entry == null && gzip != null) {
+            entry = cache.put(ALL_USERS, new ResponseCache.Entry(gzip.version, gzip.lastModified, 200, "OK", null, gzip.sourceSize));
+        }
+        // GET이 users.txt.gz를 보낼 때와 같은 헤더
+        if (gzip != null) {
+            if (entry.notModified(request)) {
+                sendNotModified(writer, entry, ContentEncoding.GZIP);
                 return;
             }
-        } else {
-            // file이 존재하지 않을 때 404 Not Found
-            sendHttpHeadResponse(writer, 404, "Not Found", "users.txt 파일을 찾을 수 없습니다.");
+            sendFileHeaders(writer, gzip.size, entry.etagHeader(ContentEncoding.GZIP), entry.lastModifiedHeader,
+                VARY_ACCEPT_ENCODING, "Content-Encoding: gzip");
             return;
         }
+        if (entry == null) {
+            long version = store.version();
+            long lastModified = store.lastModified();
+            Path snapshot = store.currentSnapshot();
+            if (snapshot == null) {
+                sendUserList(request, writer, ALL_USERS, UserQuery.ALL, true);
+                return;
+            }
+            try {
+                long size = Files.size(snapshot);
+                entry = cache.put(ALL_USERS, new ResponseCache.Entry(version, lastModified, 200, "OK", null, size));
+            } catch (IOException e) {
+                sendHttpHeadResponse(writer, 500, "Internal Server Error", "파일을 읽는 중에 오류가 발생했습니다.");
+                return;
+            }
+        }
+        sendCachedResponse(request, writer, entry, true);
     }
 
     // PUT /user 요청 처리 함수
-    private static void handlePutUser(BufferedReader br, PrintWriter writer, int contentLength) {
+    private static void handlePutUser(HttpRequest request, HttpResponseWriter writer) {
         // 요청 본문이 비어있을 때 400 Bad Request
-        if (contentLength <= 0) {
+        if (request.contentLength() <= 0) {
             sendHttpResponse(writer, 400, "Bad Request", "요청 본문이 비어 있습니다.");
             return; 
         }
+        User user = parseUser(request, writer);
+        if (user == null) return;
         
-        char[] bodyChars = new char[contentLength];
-        try {
-            int readChars = br.read(bodyChars, 0, contentLength);
-            // 요청 본문 읽은 것과 contentLength가 다를 때 400 Bad Request
-            if (readChars != contentLength) {
-                sendHttpResponse(writer, 400, "Bad Request", "요청 본문을 완전히 읽지 못했습니다.");
-                return; 
-            }
-        } catch (IOException e) {
-            sendHttpResponse(writer, 500, "Internal Server Error", "요청 본문을 읽는 중 오류 발생");
-            return; 
-        }
-        String body = new String(bodyChars);
-        
-        // JSON 본문에서 id 추출 ("id":"값" 형태)
-        String id = extractValueFromJson(body, "id");
+        // JSON 본문의 id
+        String id = user.id();
         // id가 없을 때 400 Bad Request
         if (id == null || id.isEmpty()) {
             sendHttpResponse(writer, 400, "Bad Request", "요청 본문에 id가 없습니다.");
             return; 
         }
         
-        File file = new File("users.txt");
         //file이 존재하지 않을 때 404 Not Found
-        if (!file.exists()) {
+        if (!store.exists()) {
             sendHttpResponse(writer, 404, "Not Found", "users.txt 파일을 찾을 수 없습니다.");
             return; 
         }
         
-        // 파일에서 id가 일치하는 줄은 수정할 정보를 모으고, 나머지는 원래 정보를 모은다
-        StringBuilder fileContent = new StringBuilder();
-        boolean userFound = false;
-        try (BufferedReader fileReader = new BufferedReader(new FileReader(file))) {
-            String fileLine;
-            while ((fileLine = fileReader.readLine()) != null) {
-                // "id":"값" 형태로 id를 검사
-                if (fileLine.contains("\"id\":\"" + id + "\"")) {
-                    fileContent.append(body).append("\n");
-                    userFound = true; // 해당하는 줄을 수정된 정보로 대체
-                } else {
-                    fileContent.append(fileLine).append("\n");
-                }
-            }
+        // 메모리의 사용자 정보를 교체하고 파일에 반영
+        boolean userFound;
+        try {
+            userFound = store.update(id, user);
         } catch (IOException e) {
-            sendHttpResponse(writer, 500, "Internal Server Error", "파일 읽기 중 오류 발생");
+            sendHttpResponse(writer, 500, "Internal Server Error", "파일 저장 중 오류 발생");
             return; 
         }
         
@@ -387,43 +865,23 @@ public class HttpServer {
             sendHttpResponse(writer, 404, "Not Found", "해당 id의 사용자를 찾을 수 없습니다.");
             return; 
         }
-        
-        // 전체 파일 내용을 업데이트 (덮어쓰기)
-        try {
-            Files.write(Paths.get("users.txt"), fileContent.toString().getBytes(),
-                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE);
-            sendHttpResponse(writer, 200, "OK", "사용자 정보가 수정되었습니다.");
-            return;
-        } catch (IOException e) {
-            sendHttpResponse(writer, 500, "Internal Server Error", "파일 저장 중 오류 발생");
-            return;
-        }
+        sendHttpResponse(writer, 200, "OK", "사용자 정보가 수정되었습니다.");
     }
 
     // DELETE /users/{id} 요청 처리 함수
-    private static void handleDeleteUser(PrintWriter writer, String id) {
-        File file = new File("users.txt");
+    private static void handleDeleteUser(HttpResponseWriter writer, String id) {
         // users.txt 파일이 존재하지 않을 때 404 Not Found
-        if (!file.exists()) {
+        if (!store.exists()) {
             sendHttpResponse(writer, 404, "Not Found", "users.txt 파일을 찾을 수 없습니다.");
             return;
         }
 
-        StringBuilder fileContent = new StringBuilder();
-        boolean userFound = false;
-
-        // 파일에서 id가 일치하는 줄은 생략하고, 나머지를 StringBuilder에 모은다
-        try (BufferedReader fileReader = new BufferedReader(new FileReader(file))) {
-            String fileLine;
-            while ((fileLine = fileReader.readLine()) != null) {
-                if (fileLine.contains("\"id\":\"" + id + "\"")) {
-                    userFound = true;  // 해당하는 줄은 생략
-                } else {
-                    fileContent.append(fileLine).append("\n");
-                }
-            }
+        // 메모리에서 사용자를 지우고 파일에 반영
+        boolean userFound;
+        try {
+            userFound = store.delete(id);
         } catch (IOException e) {
-            sendHttpResponse(writer, 500, "Internal Server Error", "파일 읽기 중 오류 발생");
+            sendHttpResponse(writer, 500, "Internal Server Error", "파일 저장 중 오류 발생");
             return;
         }
 
@@ -432,28 +890,130 @@ public class HttpServer {
             sendHttpResponse(writer, 404, "Not Found", "해당 id의 사용자를 찾을 수 없습니다.");
             return;
         }
+        sendHttpResponse(writer, 200, "OK", "사용자 정보가 삭제되었습니다.");
+    }
 
-        // 전체 파일 내용을 업데이트 (덮어쓰기)
-        try {
-            Files.write(Paths.get("users.txt"), fileContent.toString().getBytes(),
-            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE);
-            sendHttpResponse(writer, 200, "OK", "사용자 정보가 삭제되었습니다.");
-            return;
-        } catch (IOException e) {
-            sendHttpResponse(writer, 500, "Internal Server Error", "파일 저장 중 오류 발생");
+
+    // 사용자 목록 응답 (GET/HEAD 공통): 캐시에 현재 버전의 항목이 있으면 그대로, 없으면 본문을 만들어 캐시한 뒤 응답
+    // 페이지 조회는 limit개까지만 담고, 다음 페이지가 있으면 X-Next-Cursor 헤더로 마지막 id를 인코딩해 알려준다
+    // 페이지가 아닌 조회는 본문이 캐시 항목 한도보다 커지면 캐시하지 않고 만든 데까지를 첫 청크로 해서 나머지를 chunked로 흘려보낸다
+    private static void sendUserList(HttpRequest request, HttpResponseWriter writer, String cacheKey, UserQuery query, boolean head) {
+        ResponseCache.Entry entry = cache.get(cacheKey, store.version());
+        // 본문이 없는 항목은 파일 전송용이다 (currentSnapshot()을 본 뒤 압축이 끝나 파일 경로가 같은 버전으로 넣었을 수 있음)
+        if (entry == null || entry.body == null) {
+            // 버전을 먼저 읽어 두므로, 만드는 도중에 바뀐 데이터가 섞여도 다음 요청에서 오래된 항목으로 걸러진다
+            long version = store.version();
+            long lastModified = store.lastModified();
+            Iterator<User> matchedUsers = store.query(query).iterator();
+
+            //해당하는 유저가 없을 때 404 Not Found (페이지 조회는 빈 페이지로 끝을 알린다)
+            if (!query.paged() && !query.conditions.isEmpty() && !matchedUsers.hasNext()) {
+                entry = cache.put(cacheKey, ResponseCache.Entry.of(version, lastModified, 404, "Not Found",
+                    "일치하는 사용자를 찾을 수 없습니다."));
+                sendCachedResponse(request, writer, entry, head);
+                return;
+            }
+
+            StringBuilder body = new StringBuilder();
+            if (query.paged()) {
+                int count = 0;
+                User last = null;
+                while (count < query.limit || (query.limit < 0 && count < UserQuery.MAX_LIMIT)) {
+                    if (!matchedUsers.hasNext()) break;
+                    last = matchedUsers.next();
+                    last.appendJson(body, query.fields);
+                    body.append('\n');
+                    count++;
+                }
+                String[] headers = last != null && matchedUsers.hasNext()
+                    ? new String[] {"X-Next-Cursor: " + UserQuery.encodeCursor(last.id())} : NO_HEADERS;
+                entry = cache.put(cacheKey, ResponseCache.Entry.of(version, lastModified, 200, "OK", body.toString(), headers));
+                sendCachedResponse(request, writer, entry, head);
+                return;
+            }
+
+            while (matchedUsers.hasNext() && body.length() <= cache.maxEntryBytes()) {
+                matchedUsers.next().appendJson(body, query.fields);
+                body.append('\n');
+            }
+            if (matchedUsers.hasNext()) {
+                // 캐시 한도보다 큰 본문은 흘려보내면서 압축
+                String encoding = encodingFor(request, Long.MAX_VALUE);
+                if (encoding != null) {
+                    sendChunkedHeaders(writer, 200, "OK", VARY_ACCEPT_ENCODING, "Content-Encoding: " + encoding);
+                } else if (compress) {
+                    sendChunkedHeaders(writer, 200, "OK", VARY_ACCEPT_ENCODING);
+                } else {
+                    sendChunkedHeaders(writer, 200, "OK");
+                }
+                if (head) return;
+                ChunkedWriter chunked = new ChunkedWriter(writer, encoding);
+                chunked.write(body.toString());
+                while (matchedUsers.hasNext()) {
+                    chunked.writeLine(matchedUsers.next(), query.fields);
+                }
+                chunked.finish();
+                return;
+            }
+            entry = cache.put(cacheKey, ResponseCache.Entry.of(version, lastModified, 200, "OK", body.toString()));
+        }
+        sendCachedResponse(request, writer, entry, head);
+    }
+
+    // 캐시 항목으로 응답 (조건부 요청이 맞으면 304, HEAD면 헤더만)
+    // 본문이 compressMinBytes 이상이고 클라이언트가 받으면 항목에 한 번 압축해 둔 본문으로 응답
+    private static void sendCachedResponse(HttpRequest request, HttpResponseWriter writer, ResponseCache.Entry entry, boolean head) {
+        boolean compressible = compress && entry.statusCode == 200 && entry.body != null;
+        String encoding = compressible ? encodingFor(request, entry.contentLength) : null;
+        if (entry.notModified(request)) {
+            sendNotModified(writer, entry, encoding);
             return;
         }
+        writer.status(entry.statusCode, entry.statusText);
+        if (entry.statusCode == 200) {
+            writer.header(entry.etagHeader(encoding));
+            writer.header(entry.lastModifiedHeader);
+        }
+        // 본문이 파일인 GET /users도 users.txt.gz가 있으면 인코딩에 따라 달라진다
+        if (compressible || (precompressed != null && entry.statusCode == 200)) writer.header(VARY_ACCEPT_ENCODING);
+        for (String header : entry.headers) {
+            writer.header(header);
+        }
+        byte[] body = entry.body;
+        if (encoding != null) {
+            body = cache.encodedBody(entry, encoding);
+            writer.header("Content-Encoding: " + encoding);
+        }
+        writer.contentLength(body != null ? body.length : entry.contentLength);
+        writer.endHeaders();
+        if (!head && body != null) writer.write(body);
     }
 
+    // 304 Not Modified (본문 없음, encoding은 그대로 보냈다면 썼을 Content-Encoding)
+    private static void sendNotModified(HttpResponseWriter writer, ResponseCache.Entry entry, String encoding) {
+        writer.status(304, "Not Modified");
+        writer.header(entry.etagHeader(encoding));
+        writer.header(entry.lastModifiedHeader);
+        if (compress) writer.header(VARY_ACCEPT_ENCODING);
+        writer.endHeaders();
+    }
 
-    // JSON 문자열에서 특정 key의 값 추출 함수
-    private static String extractValueFromJson(String json, String key) {
-        String search = "\"" + key + "\":\"";
-        int start = json.indexOf(search);
-        if (start == -1) return null;
-        start += search.length();
-        int end = json.indexOf("\"", start);
-        if (end == -1) return null;
-        return json.substring(start, end);
+    // 요청 본문을 User로 파싱, 잘못된 JSON이면 400 응답 후 null
+    private static User parseUser(HttpRequest request, HttpResponseWriter writer) {
+        try {
+            return User.parse(request.bodyAsString());
+        } catch (JsonTokenizer.JsonException e) {
+            sendHttpResponse(writer, 400, "Bad Request", "요청 본문이 올바른 JSON이 아닙니다: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // JSON 문자열에서 특정 key의 값 추출 함수 (최상위 필드만, 없거나 잘못된 JSON이면 null)
+    static String extractValueFromJson(String json, String key) {
+        try {
+            return JsonTokenizer.findValue(json, key);
+        } catch (JsonTokenizer.JsonException e) {
+            return null;
+        }
     }
 }
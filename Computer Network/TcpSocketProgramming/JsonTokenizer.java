@@ -0,0 +1,247 @@
+// 스트리밍 JSON 토크나이저
+// 문자열을 앞에서부터 한 토큰씩 읽고, 이름/값 문자열은 필요할 때만 만든다 (이스케이프가 없으면 substring 한 번)
+// 이름 비교는 nameEquals()로 원문 위치에서 바로 하므로 문자열을 만들지 않는다
+public class JsonTokenizer {
+    enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, TRUE, FALSE, NULL, END_DOCUMENT
+    }
+
+    // 잘못된 JSON
+    public static class JsonException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        JsonException(String message, int position) {
+            super(message + " (위치 " + position + ")");
+        }
+    }
+
+    private final String json;
+    private int position;
+    // 마지막 토큰의 원문 범위 (문자열이면 따옴표 안쪽)
+    private int tokenStart;
+    private int tokenEnd;
+    private boolean tokenEscaped;
+    // 객체 안에서 다음 문자열이 이름인지 (깊이마다 비트 하나, 64단계까지)
+    private long inObject;
+    private long expectName;
+    private int depth;
+
+    public JsonTokenizer(String json) {
+        this.json = json;
+    }
+
+    public Token next() {
+        skipWhitespace();
+        if (position >= json.length()) {
+            if (depth != 0) throw error("JSON이 끝나기 전에 입력이 끝났습니다.");
+            return Token.END_DOCUMENT;
+        }
+
+        char c = json.charAt(position);
+        // 값/이름 사이의 구분자
+        if (c == ',' || c == ':') {
+            position++;
+            skipWhitespace();
+            if (position >= json.length()) throw error("JSON이 끝나기 전에 입력이 끝났습니다.");
+            if (c == ',' && isInObject()) setExpectName(true);
+            char separator = c;
+            c = json.charAt(position);
+            // 끝 쉼표 ({"id":"a",}, [1,]) 거부
+            if (separator == ',' && (c == '}' || c == ']')) throw error("'" + c + "' 앞에 ','가 올 수 없습니다.");
+        }
+
+        switch (c) {
+            case '{':
+                position++;
+                push(true);
+                return Token.BEGIN_OBJECT;
+            case '}':
+                if (!isInObject()) throw error("'}'가 맞지 않습니다.");
+                position++;
+                depth--;
+                return Token.END_OBJECT;
+            case '[':
+                position++;
+                push(false);
+                return Token.BEGIN_ARRAY;
+            case ']':
+                if (depth == 0 || isInObject()) throw error("']'가 맞지 않습니다.");
+                position++;
+                depth--;
+                return Token.END_ARRAY;
+            case '"':
+                readString();
+                if (isInObject() && isExpectName()) {
+                    setExpectName(false);
+                    skipWhitespace();
+                    if (position >= json.length() || json.charAt(position) != ':') throw error("이름 뒤에 ':'가 없습니다.");
+                    return Token.NAME;
+                }
+                return Token.STRING;
+            case 't':
+                return literal("true", Token.TRUE);
+            case 'f':
+                return literal("false", Token.FALSE);
+            case 'n':
+                return literal("null", Token.NULL);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) return readNumber();
+                throw error("알 수 없는 문자 '" + c + "'");
+        }
+    }
+
+    // 마지막 NAME/STRING/NUMBER/TRUE/FALSE 토큰의 값
+    public String value() {
+        if (!tokenEscaped) return json.substring(tokenStart, tokenEnd);
+        return unescape();
+    }
+
+    // 마지막 NAME 토큰이 name과 같은지 (이스케이프가 없으면 원문에서 바로 비교)
+    public boolean nameEquals(String name) {
+        if (tokenEscaped) return unescape().equals(name);
+        return tokenEnd - tokenStart == name.length() && json.regionMatches(tokenStart, name, 0, name.length());
+    }
+
+    // 방금 읽은 BEGIN_OBJECT/BEGIN_ARRAY의 안쪽을 끝까지 건너뛴다
+    public void skipContainer() {
+        int target = depth - 1;
+        while (depth > target) {
+            if (next() == Token.END_DOCUMENT) throw error("JSON이 끝나기 전에 입력이 끝났습니다.");
+        }
+    }
+
+    // 최상위 객체에서 key 필드의 값(문자열, 숫자, true/false)을 찾는다, 없거나 null이면 null
+    public static String findValue(String json, String key) {
+        JsonTokenizer tokenizer = new JsonTokenizer(json);
+        if (tokenizer.next() != Token.BEGIN_OBJECT) throw tokenizer.error("JSON 객체가 아닙니다.");
+        while (true) {
+            Token token = tokenizer.next();
+            if (token == Token.END_OBJECT) return null;
+            boolean matched = tokenizer.nameEquals(key);
+            Token value = tokenizer.next();
+            if (value == Token.BEGIN_OBJECT || value == Token.BEGIN_ARRAY) {
+                tokenizer.skipContainer();
+            } else if (matched) {
+                return value == Token.NULL ? null : tokenizer.value();
+            }
+        }
+    }
+
+    JsonException error(String message) {
+        return new JsonException(message, position);
+    }
+
+    private void readString() {
+        int i = position + 1;
+        boolean escaped = false;
+        while (i < json.length()) {
+            char c = json.charAt(i);
+            if (c == '"') {
+                tokenStart = position + 1;
+                tokenEnd = i;
+                tokenEscaped = escaped;
+                position = i + 1;
+                return;
+            }
+            if (c == '\\') {
+                escaped = true;
+                i += 2;
+                continue;
+            }
+            if (c < 0x20) throw error("문자열 안에 제어 문자가 있습니다.");
+            i++;
+        }
+        throw error("문자열이 닫히지 않았습니다.");
+    }
+
+    private Token readNumber() {
+        int start = position;
+        if (json.charAt(position) == '-') position++;
+        int digits = position;
+        while (position < json.length()) {
+            char c = json.charAt(position);
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                position++;
+            } else {
+                break;
+            }
+        }
+        if (position == digits) throw error("숫자가 아닙니다.");
+        tokenStart = start;
+        tokenEnd = position;
+        tokenEscaped = false;
+        return Token.NUMBER;
+    }
+
+    private Token literal(String word, Token token) {
+        if (!json.startsWith(word, position)) throw error("알 수 없는 값");
+        tokenStart = position;
+        tokenEnd = position + word.length();
+        tokenEscaped = false;
+        position += word.length();
+        return token;
+    }
+
+    private String unescape() {
+        StringBuilder out = new StringBuilder(tokenEnd - tokenStart);
+        for (int i = tokenStart; i < tokenEnd; i++) {
+            char c = json.charAt(i);
+            if (c != '\\') {
+                out.append(c);
+                continue;
+            }
+            char e = json.charAt(++i);
+            switch (e) {
+                case '"': out.append('"'); break;
+                case '\\': out.append('\\'); break;
+                case '/': out.append('/'); break;
+                case 'b': out.append('\b'); break;
+                case 'f': out.append('\f'); break;
+                case 'n': out.append('\n'); break;
+                case 'r': out.append('\r'); break;
+                case 't': out.append('\t'); break;
+                case 'u':
+                    if (i + 4 >= tokenEnd) throw error("잘못된 \\u 이스케이프");
+                    try {
+                        out.append((char) Integer.parseInt(json.substring(i + 1, i + 5), 16));
+                    } catch (NumberFormatException ex) {
+                        throw error("잘못된 \\u 이스케이프");
+                    }
+                    i += 4;
+                    break;
+                default:
+                    throw error("잘못된 이스케이프 '\\" + e + "'");
+            }
+        }
+        return out.toString();
+    }
+
+    private void skipWhitespace() {
+        while (position < json.length()) {
+            char c = json.charAt(position);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') return;
+            position++;
+        }
+    }
+
+    private void push(boolean object) {
+        if (depth >= 64) throw error("JSON이 너무 깊습니다.");
+        depth++;
+        long bit = 1L << (depth - 1);
+        inObject = object ? inObject | bit : inObject & ~bit;
+        setExpectName(object);
+    }
+
+    private boolean isInObject() {
+        return depth > 0 && (inObject & (1L << (depth - 1))) != 0;
+    }
+
+    private boolean isExpectName() {
+        return (expectName & (1L << (depth - 1))) != 0;
+    }
+
+    private void setExpectName(boolean value) {
+        long bit = 1L << (depth - 1);
+        expectName = value ? expectName | bit : expectName & ~bit;
+    }
+}
@@ -0,0 +1,62 @@
+// 지연 시간 히스토그램 (HdrHistogram처럼 로그-선형 구간으로 나눠서 값 범위가 넓어도 상대 오차 약 1.6% 이내로 기록)
+// 값은 마이크로초 단위, 스레드마다 하나씩 쓰고 끝난 뒤 add()로 합친다
+public class LatencyHistogram {
+    // 2의 거듭제곱 구간 하나를 SUB_BUCKETS / 2개로 나눈다
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+    private static final int BUCKET_COUNT = SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * HALF;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long total;
+    private long max;
+
+    public void record(long micros) {
+        if (micros < 0) micros = 0;
+        counts[indexOf(micros)]++;
+        total++;
+        if (micros > max) max = micros;
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    public long count() {
+        return total;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    // 백분위 값 (ex) 99.9), 해당 구간의 가장 큰 값으로 보고한다
+    public long percentile(double percentile) {
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(highestValueOf(i), max);
+        }
+        return max;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        int sub = (int) (value >>> exponent);
+        return SUB_BUCKETS + (exponent - 1) * HALF + (sub - HALF);
+    }
+
+    private static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exponent = (index - SUB_BUCKETS) / HALF + 1;
+        long sub = (index - SUB_BUCKETS) % HALF + HALF;
+        return ((sub + 1) << exponent) - 1;
+    }
+}
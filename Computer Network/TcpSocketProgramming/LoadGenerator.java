@@ -0,0 +1,293 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// HttpClient 기반 부하 생성기
+// 지속 연결 풀을 여러 스레드가 나눠 쓰면서 POST/GET/HEAD/PUT/DELETE를 비율대로 섞어 보내고, 처리량과 지연 시간 백분위를 출력한다
+// --rate(초당 요청 수)를 주면 정해진 시각마다 요청을 시작하는 open-loop 모드가 되고, 지연 시간은 예정 시각부터 잰다
+// (서버가 밀려서 요청을 늦게 보내게 돼도 그만큼 지연 시간에 포함되므로 느려진 구간이 가려지지 않음)
+// --readPorts를 주면 GET/HEAD는 그 포트들(복제 팔로워)에 연결을 나눠 보내고, 쓰기만 --port(리더)로 보낸다
+// 실행: java LoadGenerator --host=localhost --port=7070 --connections=16 --threads=16 --duration=10 --mix=post:20,get:40,head:10,put:20,delete:10
+//      java LoadGenerator --port=7070 --readPorts=7071,7072 --mix=get:90,post:10
+public class LoadGenerator {
+    enum Op { POST, GET, HEAD, PUT, DELETE }
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    // 풀에 들어가는 지속 연결 (요청이 실패하면 닫았다가 다음에 쓸 때 다시 연결)
+    private static class PooledConnection {
+        private final String hostname;
+        private final int port;
+        private Socket socket;
+        PrintWriter writer;
+        InputStream reader;
+
+        PooledConnection(String hostname, int port) {
+            this.hostname = hostname;
+            this.port = port;
+        }
+
+        void ensureOpen() throws IOException {
+            if (socket != null) return;
+            socket = new Socket(hostname, port);
+            socket.setTcpNoDelay(true);
+            writer = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(socket.getOutputStream()), StandardCharsets.UTF_8));
+            reader = new BufferedInputStream(socket.getInputStream());
+        }
+
+        void close() {
+            if (socket == null) return;
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+            socket = null;
+        }
+    }
+
+    // 스레드 하나가 모은 결과
+    private static class WorkerResult {
+        final LatencyHistogram[] latencies = new LatencyHistogram[Op.values().length];
+        long errors;
+        long rejected;
+
+        WorkerResult() {
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = new LatencyHistogram();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        ServerConfig config = new ServerConfig(args);
+        String hostname = config.get("host", "localhost");
+        int port = config.getInt("port", 7070);
+        int connections = Math.max(1, config.getInt("connections", 16));
+        int threads = Math.max(1, config.getInt("threads", connections));
+        boolean virtual = config.getBoolean("virtual", false);
+        int durationSeconds = config.getInt("duration", 10);
+        int warmupSeconds = config.getInt("warmup", 2);
+        int rate = config.getInt("rate", 0);
+        int users = Math.max(1, config.getInt("users", 1000));
+        int maxP99Millis = config.getInt("maxP99", 0);
+        Op[] mix = parseMix(config.get("mix", "mixed"));
+
+        HttpClient.printResponses = false;
+        // --acceptEncoding=none: 압축하지 않은 응답으로 측정
+        String acceptEncoding = config.get("acceptEncoding", HttpClient.acceptEncoding);
+        HttpClient.acceptEncoding = acceptEncoding.equals("none") ? null : acceptEncoding;
+
+        // GET/PUT/DELETE가 대상을 찾을 수 있도록 사용자를 먼저 넣어 둔다 (파이프라이닝으로 한 연결에서)
+        if (config.getBoolean("preload", true)) {
+            try {
+                preload(hostname, port, users);
+            } catch (IOException e) {
+                System.out.println("사용자 미리 넣기 실패: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        BlockingQueue<PooledConnection> pool = new ArrayBlockingQueue<>(connections);
+        for (int i = 0; i < connections; i++) {
+            pool.add(new PooledConnection(hostname, port));
+        }
+        // 읽기 전용 연결 풀 (--readPorts가 없으면 쓰기와 같은 풀)
+        BlockingQueue<PooledConnection> readPool = pool;
+        String readPorts = config.get("readPorts", null);
+        if (readPorts != null) {
+            String[] ports = readPorts.split(",");
+            readPool = new ArrayBlockingQueue<>(connections);
+            for (int i = 0; i < connections; i++) {
+                readPool.add(new PooledConnection(hostname, Integer.parseInt(ports[i % ports.length].trim())));
+            }
+        }
+        BlockingQueue<PooledConnection> reads = readPool;
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmupSeconds * 1_000_000_000L;
+        long end = measureFrom + durationSeconds * 1_000_000_000L;
+        long intervalNanos = rate > 0 ? 1_000_000_000L / rate : 0;
+        AtomicLong sequence = new AtomicLong();
+
+        ExecutorService executor = virtual ? HttpServer.newVirtualThreadExecutor() : Executors.newFixedThreadPool(threads);
+        List<Future<WorkerResult>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> runWorker(pool, reads, hostname, mix, users, start, measureFrom, end, intervalNanos, sequence)));
+        }
+
+        WorkerResult total = new WorkerResult();
+        for (Future<WorkerResult> future : futures) {
+            try {
+                WorkerResult result = future.get();
+                for (int i = 0; i < total.latencies.length; i++) {
+                    total.latencies[i].add(result.latencies[i]);
+                }
+                total.errors += result.errors;
+                total.rejected += result.rejected;
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+                total.errors++;
+            }
+        }
+        executor.shutdown();
+        for (PooledConnection connection : pool) {
+            connection.close();
+        }
+        for (PooledConnection connection : readPool) {
+            connection.close();
+        }
+
+        LatencyHistogram all = new LatencyHistogram();
+        for (LatencyHistogram histogram : total.latencies) {
+            all.add(histogram);
+        }
+        System.out.printf("요청 %d개 / %d초, 처리량 %.1f req/s, 오류 %d개, 거절(503) %d개%n",
+            all.count(), durationSeconds, all.count() / (double) Math.max(1, durationSeconds), total.errors, total.rejected);
+        System.out.printf("%-7s %9s %9s %9s %9s %9s %9s   (ms)%n", "", "count", "p50", "p90", "p99", "p99.9", "max");
+        printRow("ALL", all);
+        for (Op op : Op.values()) {
+            if (total.latencies[op.ordinal()].count() > 0) printRow(op.name(), total.latencies[op.ordinal()]);
+        }
+
+        // 회귀 확인용: 오류가 있거나 p99가 기준을 넘으면 실패 코드로 종료
+        boolean slow = maxP99Millis > 0 && all.percentile(99) > maxP99Millis * 1000L;
+        if (slow) System.out.println("p99가 기준(" + maxP99Millis + "ms)을 넘었습니다.");
+        System.exit(total.errors == 0 && !slow ? 0 : 1);
+    }
+
+    private static WorkerResult runWorker(BlockingQueue<PooledConnection> writePool, BlockingQueue<PooledConnection> readPool, String hostname, Op[] mix, int users,
+                                          long start, long measureFrom, long end, long intervalNanos, AtomicLong sequence) throws InterruptedException {
+        WorkerResult result = new WorkerResult();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            // open-loop면 정해진 시작 시각까지 기다리고, closed-loop면 앞 요청이 끝나는 대로 바로 보낸다
+            long intended;
+            if (intervalNanos > 0) {
+                intended = start + sequence.getAndIncrement() * intervalNanos;
+                if (intended >= end) break;
+                long wait;
+                while ((wait = intended - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            } else {
+                intended = System.nanoTime();
+                if (intended >= end) break;
+            }
+
+            Op op = mix[random.nextInt(mix.length)];
+            String id = "load-" + random.nextInt(users);
+            int statusCode;
+            BlockingQueue<PooledConnection> pool = op == Op.GET || op == Op.HEAD ? readPool : writePool;
+            PooledConnection connection = pool.take();
+            try {
+                connection.ensureOpen();
+                statusCode = execute(connection, hostname, op, id, random);
+            } catch (IOException e) {
+                connection.close();
+                statusCode = -1;
+            } finally {
+                pool.add(connection);
+            }
+            long done = System.nanoTime();
+
+            // 워밍업 구간은 기록하지 않음
+            if (intended < measureFrom) continue;
+            result.latencies[op.ordinal()].record((done - intended) / 1000);
+            if (statusCode == 503) result.rejected++;
+            else if (statusCode < 0 || statusCode >= 500) result.errors++;
+        }
+        return result;
+    }
+
+    private static int execute(PooledConnection c, String hostname, Op op, String id, ThreadLocalRandom random) throws IOException {
+        String age = String.valueOf(random.nextInt(1, 100));
+        HttpClient.Response response;
+        switch (op) {
+            case POST:
+                response = HttpClient.sendPostRequest(c.writer, c.reader, hostname, id, "load", "Seoul", "010-0000-0000", age);
+                break;
+            case GET:
+                response = HttpClient.sendGetRequestWithKeyValue(c.writer, c.reader, hostname, "id", id);
+                break;
+            case HEAD:
+                response = HttpClient.sendHeadRequest(c.writer, c.reader, hostname, "/users?id=" + id);
+                break;
+            case PUT:
+                response = HttpClient.sendPutRequest(c.writer, c.reader, hostname, id, "load", "Busan", "010-1111-1111", age);
+                break;
+            default:
+                response = HttpClient.sendDeleteRequest(c.writer, c.reader, hostname, id);
+                break;
+        }
+        if (response == null) throw new EOFException("응답을 받기 전에 연결이 끊어졌습니다.");
+        // 서버가 닫겠다고 한 연결(최대 요청 수, 종료 중)은 다음에 쓸 때 다시 연결
+        if (response.close) c.close();
+        return response.statusCode;
+    }
+
+    private static void preload(String hostname, int port, int users) throws IOException {
+        try (Socket socket = new Socket(hostname, port)) {
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(socket.getOutputStream()), StandardCharsets.UTF_8));
+            InputStream reader = new BufferedInputStream(socket.getInputStream());
+            HttpClient.Pipeline pipeline = new HttpClient.Pipeline(writer, reader, hostname, 64);
+            for (int i = 0; i < users; i++) {
+                pipeline.post("load-" + i, "load", "Seoul", "010-0000-0000", "30");
+            }
+            pipeline.sync();
+        }
+    }
+
+    // "post:20,get:40" 형태의 비율(또는 read/write/mixed)을 뽑기용 배열로 변환
+    private static Op[] parseMix(String mix) {
+        switch (mix) {
+            case "read":
+                mix = "get:80,head:20";
+                break;
+            case "write":
+                mix = "post:40,put:40,delete:20";
+                break;
+            case "mixed":
+                mix = "post:20,get:40,head:10,put:20,delete:10";
+                break;
+            default:
+                break;
+        }
+        List<Op> table = new ArrayList<>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split(":");
+            Op op = Op.valueOf(pair[0].trim().toUpperCase());
+            int weight = pair.length > 1 ? Integer.parseInt(pair[1].trim()) : 1;
+            for (int i = 0; i < weight; i++) {
+                table.add(op);
+            }
+        }
+        if (table.isEmpty()) throw new IllegalArgumentException("요청 비율이 비어 있습니다: " + mix);
+        return table.toArray(new Op[0]);
+    }
+
+    private static void printRow(String name, LatencyHistogram histogram) {
+        StringBuilder row = new StringBuilder(String.format("%-7s %9d", name, histogram.count()));
+        for (double percentile : PERCENTILES) {
+            row.append(String.format(" %9.3f", histogram.percentile(percentile) / 1000.0));
+        }
+        row.append(String.format(" %9.3f", histogram.max() / 1000.0));
+        System.out.println(row);
+    }
+}
@@ -0,0 +1,65 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// 한 컴퓨터에서 샤드 모드 서버 여러 개를 띄우는 실행기 (샤드마다 JVM 하나, 포트와 데이터 디렉터리는 따로)
+// 샤드 i는 포트 --basePort+i, 데이터는 --dataRoot/shard-i에 두고, 나머지 인자(--mode, --shardRouting 등)는 모든 샤드에 그대로 넘긴다
+// Ctrl+C로 끝내면 샤드들도 함께 종료한다 (각자 처리 중인 요청을 마치고 닫힘)
+// 실행: java LocalCluster --shards=3 --basePort=7070 [--dataRoot=cluster] [--shardRouting=redirect] [--mode=nio]
+public class LocalCluster {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        ServerConfig config = new ServerConfig(args);
+        int shards = config.getInt("shards", 3);
+        int basePort = config.getInt("basePort", 7070);
+        String dataRoot = config.get("dataRoot", "cluster");
+
+        StringBuilder addresses = new StringBuilder();
+        for (int i = 0; i < shards; i++) {
+            if (i > 0) addresses.append(',');
+            addresses.append("localhost:").append(basePort + i);
+        }
+
+        List<Process> processes = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            List<String> command = new ArrayList<>();
+            command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+            command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add("HttpServer");
+            for (String arg : args) {
+                if (!arg.startsWith("--shards=") && !arg.startsWith("--basePort=") && !arg.startsWith("--dataRoot=")) command.add(arg);
+            }
+            command.add("--port=" + (basePort + i));
+            command.add("--shards=" + addresses);
+            command.add("--shardIndex=" + i);
+            command.add("--dataDir=" + Path.of(dataRoot, "shard-" + i));
+            processes.add(new ProcessBuilder(command).inheritIO().start());
+        }
+        System.out.println("샤드 " + shards + "개 실행: " + addresses);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (Process process : processes) {
+                process.destroy();
+            }
+            for (Process process : processes) {
+                try {
+                    process.waitFor();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }));
+        // 샤드 하나가 끝나면 나머지도 내림
+        CompletableFuture<?>[] exits = new CompletableFuture<?>[processes.size()];
+        for (int i = 0; i < exits.length; i++) {
+            exits[i] = processes.get(i).onExit();
+        }
+        Process first = (Process) CompletableFuture.anyOf(exits).join();
+        System.out.println("샤드 " + processes.indexOf(first) + "가 종료 코드 " + first.exitValue() + "로 끝났습니다.");
+        System.exit(0);
+    }
+}
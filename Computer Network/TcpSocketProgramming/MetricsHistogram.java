@@ -0,0 +1,53 @@
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.LongAdder;
+
+// /metrics용 지연 시간 히스토그램 (Prometheus histogram 형식)
+// 구간 경계가 고정돼 있고 칸마다 LongAdder를 써서 여러 스레드가 락 없이 동시에 기록한다
+// (LatencyHistogram은 스레드마다 따로 쓰고 합치는 용도라 서버 안에서 같이 쓰기에는 맞지 않음)
+public class MetricsHistogram {
+    // 구간 상한 (마이크로초), 마지막 칸은 +Inf
+    private static final long[] BOUNDS_MICROS = {
+        50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000,
+        100_000, 250_000, 500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000
+    };
+    // le 라벨 값 (초 단위 문자열, 출력할 때마다 만들지 않음)
+    private static final String[] BOUND_LABELS = new String[BOUNDS_MICROS.length + 1];
+
+    static {
+        for (int i = 0; i < BOUNDS_MICROS.length; i++) {
+            BOUND_LABELS[i] = BigDecimal.valueOf(BOUNDS_MICROS[i], 6).stripTrailingZeros().toPlainString();
+        }
+        BOUND_LABELS[BOUNDS_MICROS.length] = "+Inf";
+    }
+
+    private final LongAdder[] counts = new LongAdder[BOUNDS_MICROS.length + 1];
+    private final LongAdder sumMicros = new LongAdder();
+
+    public MetricsHistogram() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        int i = 0;
+        while (i < BOUNDS_MICROS.length && micros > BOUNDS_MICROS[i]) i++;
+        counts[i].increment();
+        sumMicros.add(micros);
+    }
+
+    // name_bucket{labels,le="..."} / name_sum / name_count 줄 (labels는 "method=\"GET\"" 같은 라벨 목록, 없으면 빈 문자열)
+    // 읽는 동안 기록이 이어져도 누적 값은 줄어들지 않는다 (칸마다 따로 읽으므로 count와 +Inf가 조금 어긋날 수는 있음)
+    public void appendTo(StringBuilder out, String name, String labels) {
+        String prefix = labels.isEmpty() ? "{le=\"" : "{" + labels + ",le=\"";
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i].sum();
+            out.append(name).append("_bucket").append(prefix).append(BOUND_LABELS[i]).append("\"} ").append(cumulative).append('\n');
+        }
+        String suffix = labels.isEmpty() ? "" : "{" + labels + "}";
+        out.append(name).append("_sum").append(suffix).append(' ').append(sumMicros.sum() / 1e6).append('\n');
+        out.append(name).append("_count").append(suffix).append(' ').append(cumulative).append('\n');
+    }
+}
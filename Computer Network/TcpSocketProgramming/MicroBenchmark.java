@@ -0,0 +1,390 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+// 핫 패스 마이크로벤치마크 (요청 파싱, JSON 필드 추출, 사용자 조회, 응답 만들기, 스냅샷 읽기)
+// JMH처럼 워밍업 반복 뒤 측정 반복을 돌려 ns/op 평균과 편차를 내고, 기본으로 벤치마크와 데이터 크기마다 JVM을 따로 띄운다
+// 데이터는 사용자 수(--sizes)별로 만들며, 1000만 명은 힙이 커야 하므로 직접 지정한다
+// 실행: java MicroBenchmark --sizes=1000,100000,1000000 --warmup=3 --iterations=5 --time=1000 [--only=lookup] [--fork=false]
+//      java -Xmx16g MicroBenchmark --sizes=10000000
+public class MicroBenchmark {
+    // 한 번 호출이 한 op (반환값을 sink에 모아 JIT이 계산을 없애지 못하게 함)
+    interface Op {
+        long run();
+    }
+
+    // 데이터 크기에 따라 op를 준비하는 벤치마크
+    interface Setup {
+        Op prepare(Dataset data) throws IOException;
+    }
+
+    private static final Map<String, Setup> BENCHMARKS = new LinkedHashMap<>();
+
+    static {
+        BENCHMARKS.put("parseRequest.bytes", MicroBenchmark::parseBytes);
+        BENCHMARKS.put("parseRequest.readLine", MicroBenchmark::parseReadLine);
+        BENCHMARKS.put("extractValueFromJson", MicroBenchmark::extractField);
+        BENCHMARKS.put("User.parse", MicroBenchmark::parseUser);
+        BENCHMARKS.put("lookupByName.index", MicroBenchmark::lookupIndex);
+        BENCHMARKS.put("lookupByName.lineScan", MicroBenchmark::lookupLineScan);
+        BENCHMARKS.put("sendHttpResponse", MicroBenchmark::sendResponse);
+        BENCHMARKS.put("loadSnapshot.text", MicroBenchmark::loadText);
+        BENCHMARKS.put("loadSnapshot.binary", MicroBenchmark::loadBinary);
+        BENCHMARKS.put("loadStore.binary", MicroBenchmark::loadStoreBinary);
+        BENCHMARKS.put("recordFile.get", MicroBenchmark::recordFileGet);
+        BENCHMARKS.put("recordFile.open", MicroBenchmark::recordFileOpen);
+        BENCHMARKS.put("recordFile.countByAge", MicroBenchmark::recordFileCountByAge);
+    }
+
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        ServerConfig config = new ServerConfig(args);
+        String[] sizes = config.get("sizes", "1000,10000,100000,1000000").split(",");
+        String only = config.get("only", "");
+        boolean fork = config.getBoolean("fork", true);
+        boolean child = config.getBoolean("child", false);
+
+        if (!child) {
+            System.out.printf("%-24s %10s %5s %14s %12s  %s%n", "Benchmark", "(records)", "Cnt", "Score", "Error", "Units");
+        }
+        for (Map.Entry<String, Setup> benchmark : BENCHMARKS.entrySet()) {
+            if (!benchmark.getKey().contains(only)) continue;
+            for (String size : sizes) {
+                int records = Integer.parseInt(size.trim());
+                if (fork && !child) {
+                    forkRun(benchmark.getKey(), records, args);
+                } else {
+                    run(benchmark.getKey(), benchmark.getValue(), records, config);
+                }
+            }
+        }
+        if (sink == 42) System.out.println();
+    }
+
+    // 벤치마크 하나를 새 JVM에서 실행 (앞 벤치마크의 JIT 프로파일과 힙 상태가 섞이지 않도록)
+    private static void forkRun(String name, int records, String[] args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("MicroBenchmark");
+        for (String arg : args) {
+            if (!arg.startsWith("--only=") && !arg.startsWith("--sizes=")) command.add(arg);
+        }
+        command.add("--child=true");
+        command.add("--only=" + name);
+        command.add("--sizes=" + records);
+        int exit = new ProcessBuilder(command).inheritIO().start().waitFor();
+        if (exit != 0) System.out.println(name + " (" + records + ") 실행 실패: 종료 코드 " + exit);
+    }
+
+    private static void run(String name, Setup setup, int records, ServerConfig config) throws IOException {
+        // --only는 부분 일치라 자식 JVM에서는 이름이 정확히 같은 것만
+        if (config.getBoolean("child", false) && !name.equals(config.get("only", ""))) return;
+        int warmup = config.getInt("warmup", 3);
+        int iterations = config.getInt("iterations", 5);
+        long iterationNanos = config.getInt("time", 1000) * 1_000_000L;
+
+        try (Dataset data = new Dataset(records)) {
+            Op op = setup.prepare(data);
+            for (int i = 0; i < warmup; i++) {
+                measure(op, iterationNanos);
+            }
+            double[] scores = new double[iterations];
+            for (int i = 0; i < iterations; i++) {
+                scores[i] = measure(op, iterationNanos);
+            }
+
+            double mean = 0;
+            for (double score : scores) mean += score;
+            mean /= scores.length;
+            double variance = 0;
+            for (double score : scores) variance += (score - mean) * (score - mean);
+            double error = scores.length > 1 ? Math.sqrt(variance / (scores.length - 1)) : 0;
+            System.out.printf("%-24s %10d %5d %14.3f ± %10.3f  ns/op%n", name, records, iterations, mean, error);
+        }
+    }
+
+    // iterationNanos 동안 op를 반복 실행하고 op 하나의 평균 시간(ns) 반환 (시계는 64번마다 확인)
+    private static double measure(Op op, long iterationNanos) {
+        long ops = 0;
+        long result = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < 64; i++) {
+                result += op.run();
+            }
+            ops += 64;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        sink += result;
+        return (double) elapsed / ops;
+    }
+
+    // 벤치마크용 사용자 데이터 (users.txt 형식 줄과, 그 스냅샷으로 띄운 UserStore)
+    static class Dataset implements AutoCloseable {
+        // 이름은 5000가지라 이름 하나에 records / 5000명 정도가 걸린다
+        static final int NAMES = 5000;
+
+        final int records;
+        final String[] lines;
+        private final Path dir;
+        private UserStore store;
+        private MutationLog log;
+        private Path textFile;
+        private Path recordFile;
+        private UserRecordFile recordReader;
+
+        Dataset(int records) throws IOException {
+            this.records = records;
+            this.lines = new String[records];
+            for (int i = 0; i < records; i++) {
+                lines[i] = "{\"id\":\"" + idOf(i) + "\",\"name\":\"name" + (i % NAMES) + "\",\"address\":\"city" + (i % 50)
+                    + "\",\"tel\":\"010-" + i + "\",\"age\":\"" + (i % 100) + "\"}";
+            }
+            this.dir = Files.createTempDirectory("bench");
+        }
+
+        // 필요할 때만 스냅샷 파일을 써서 UserStore로 읽는다
+        UserStore store() throws IOException {
+            if (store != null) return store;
+            log = new MutationLog(dir, "users.log", false);
+            store = UserStore.load(textFile(), log);
+            return store;
+        }
+
+        // users.txt 형식 스냅샷 파일
+        Path textFile() throws IOException {
+            if (textFile != null) return textFile;
+            textFile = dir.resolve("users.txt");
+            Files.write(textFile, List.of(lines), StandardCharsets.UTF_8);
+            return textFile;
+        }
+
+        // 같은 사용자들의 users.dat 바이너리 스냅샷 (+ users.idx)
+        Path recordFile() throws IOException {
+            if (recordFile != null) return recordFile;
+            recordFile = dir.resolve("users.dat");
+            try (UserRecordFile.Writer writer = new UserRecordFile.Writer(recordFile)) {
+                for (String line : lines) {
+                    writer.add(User.parse(line));
+                }
+                writer.finish(UserRecordFile.indexFileOf(recordFile));
+            }
+            return recordFile;
+        }
+
+        // users.dat를 열어 둔 것 (close()에서 닫음)
+        UserRecordFile recordReader() throws IOException {
+            if (recordReader == null) recordReader = UserRecordFile.open(recordFile());
+            return recordReader;
+        }
+
+        // i번째 사용자의 id (소문자 UUID라 users.idx에서 레코드를 읽지 않고 찾는 경로를 잰다)
+        static String idOf(long i) {
+            return new UUID(i * 0x9e3779b97f4a7c15L, i).toString();
+        }
+
+        String nameOf(long i) {
+            return "name" + Math.floorMod(i, Math.min(NAMES, records));
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (log != null) log.close();
+            if (recordReader != null) recordReader.close();
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    private static byte[] sampleRequest(Dataset data) {
+        String body = data.lines[data.records / 2];
+        return ("POST /users HTTP/1.1\r\nHost: localhost\r\nUser-Agent: bench\r\nAccept: */*\r\n"
+            + "Content-Type: application/json\r\nContent-Length: " + body.getBytes(StandardCharsets.UTF_8).length
+            + "\r\nConnection: keep-alive\r\n\r\n" + body).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // HttpRequestParser로 바이트 배열에서 바로 파싱
+    private static Op parseBytes(Dataset data) {
+        byte[] request = sampleRequest(data);
+        HttpRequest out = new HttpRequest();
+        return () -> {
+            out.reset();
+            try {
+                return HttpRequestParser.parse(request, 0, request.length, out) + out.body().length;
+            } catch (HttpRequestParser.ParseException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    // 예전 handleClient 방식 (readLine, split, toLowerCase, 문자 단위 본문 읽기) 비교용
+    private static Op parseReadLine(Dataset data) {
+        byte[] request = sampleRequest(data);
+        return () -> {
+            try {
+                BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(request), StandardCharsets.UTF_8));
+                String[] part = br.readLine().split(" ");
+                int contentLength = 0;
+                String line;
+                while ((line = br.readLine()) != null && !line.isEmpty()) {
+                    if (line.toLowerCase().startsWith("content-length:")) {
+                        contentLength = Integer.parseInt(line.split(" ")[1].trim());
+                    }
+                }
+                char[] body = new char[contentLength];
+                return part[1].length() + br.read(body, 0, contentLength);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    private static Op extractField(Dataset data) {
+        long[] next = {0};
+        return () -> {
+            String line = data.lines[(int) (next[0]++ % data.records)];
+            return HttpServer.extractValueFromJson(line, "tel").length();
+        };
+    }
+
+    // POST/PUT 본문을 저장용 User로 파싱
+    private static Op parseUser(Dataset data) {
+        long[] next = {0};
+        return () -> User.parse(data.lines[(int) (next[0]++ % data.records)]).field("tel").length();
+    }
+
+    // GET /users?name=... : 인덱스 조회
+    private static Op lookupIndex(Dataset data) throws IOException {
+        UserStore store = data.store();
+        long[] next = {0};
+        return () -> store.findBy("name", data.nameOf(next[0]++ * 7919)).size();
+    }
+
+    // GET /users?name=... : 예전처럼 모든 줄을 훑으며 필드 비교 (파일 읽기는 빼고 메모리의 줄만)
+    private static Op lookupLineScan(Dataset data) {
+        long[] next = {0};
+        return () -> {
+            String name = data.nameOf(next[0]++ * 7919);
+            long matched = 0;
+            for (String line : data.lines) {
+                if (name.equals(HttpServer.extractValueFromJson(line, "name"))) matched++;
+            }
+            return matched;
+        };
+    }
+
+    // 사용자 한 명을 본문으로 200 응답 만들기 (출력은 버림)
+    private static Op sendResponse(Dataset data) {
+        OutputStream discard = OutputStream.nullOutputStream();
+        HttpResponseWriter writer = new HttpResponseWriter(discard);
+        long[] next = {0};
+        return () -> {
+            String body = data.lines[(int) (next[0]++ % data.records)];
+            HttpServer.sendHttpResponse(writer, 200, "OK", body);
+            writer.flush();
+            return body.length();
+        };
+    }
+
+    // 시작할 때 users.txt 스냅샷 읽기: 줄마다 JSON 파싱 (op 하나가 파일 전체)
+    private static Op loadText(Dataset data) throws IOException {
+        Path file = data.textFile();
+        return () -> {
+            long count = 0;
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (User.parse(line).id() != null) count++;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return count;
+        };
+    }
+
+    // 시작할 때 users.dat 스냅샷 읽기: 인덱스 매핑 후 레코드 디코딩 (op 하나가 파일 전체)
+    private static Op loadBinary(Dataset data) throws IOException {
+        Path file = data.recordFile();
+        return () -> {
+            long[] count = {0};
+            try (UserRecordFile records = UserRecordFile.open(file)) {
+                records.forEach(user -> count[0]++);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return count[0];
+        };
+    }
+
+    // 서버가 시작할 때 users.dat로 UserStore 만들기: 레코드를 디코딩하지 않고 열기만 (op 하나가 열고 닫기)
+    private static Op loadStoreBinary(Dataset data) throws IOException {
+        Path file = data.recordFile();
+        Path logDir = Files.createDirectories(file.resolveSibling("store-log"));
+        return () -> {
+            try (MutationLog log = new MutationLog(logDir, "users.log", false)) {
+                return UserStore.load(file, log).size();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    // users.idx 인덱스로 id 하나 읽기 (메모리에 올리지 않은 스냅샷에서)
+    private static Op recordFileGet(Dataset data) throws IOException {
+        UserRecordFile records = data.recordReader();
+        long[] next = {0};
+        return () -> {
+            try {
+                return records.get(Dataset.idOf(Math.floorMod(next[0]++ * 7919, data.records))).field("tel").length();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    // 시작할 때 users.dat 열기: 인덱스는 다시 만들지 않고 매핑만 (op 하나가 열고 닫기)
+    private static Op recordFileOpen(Dataset data) throws IOException {
+        Path file = data.recordFile();
+        UserRecordFile.open(file).close();
+        return () -> {
+            try (UserRecordFile records = UserRecordFile.open(file)) {
+                return records.count();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    // age 범위에 드는 사용자 수: postings 구간만 보고 레코드는 읽지 않음
+    private static Op recordFileCountByAge(Dataset data) throws IOException {
+        UserRecordFile records = data.recordReader();
+        long[] next = {0};
+        return () -> {
+            long min = next[0]++ % 100;
+            return records.countByAge(min, min + 9);
+        };
+    }
+}
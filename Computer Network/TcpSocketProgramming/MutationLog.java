@@ -0,0 +1,374 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// 사용자 변경(추가/수정/삭제)을 파일 끝에 덧붙이기만 하는 변경 로그
+// 레코드 형식: [타입 1바이트][본문 길이 4바이트][CRC32 4바이트][본문]
+//  - 'U' (upsert): 본문은 사용자 JSON
+//  - 'D' (tombstone): 본문은 삭제할 id
+// 로그 파일은 세대 번호를 붙여(users.log.1, users.log.2, ...) 압축할 때마다 새 세대로 넘어간다
+// 파일 쓰기는 writer 스레드 하나가 큐 순서대로 처리하고, 요청 스레드는 자기 레코드가 기록될 때까지 기다린다
+// writer는 큐에 쌓인 레코드를 배치로 묶어(group commit) 한 번의 write와 한 번의 fsync로 기록한다
+// 기록한 바이트는 그대로 Listener에 넘길 수 있다 (복제: 리더가 팔로워에게 로그를 바이트 그대로 보냄)
+public class MutationLog implements AutoCloseable {
+    public static final byte UPSERT = 'U';
+    public static final byte TOMBSTONE = 'D';
+    static final int HEADER_SIZE = 9;
+
+    // 로그 레코드를 다시 적용하는 쪽 (시작할 때 replay)
+    public interface Replayer {
+        void apply(byte type, String payload);
+    }
+
+    // 배치를 파일에 기록한 직후 writer 스레드에서 호출 (records는 읽기만, position은 이 배치까지 쓴 누적 바이트 수)
+    // 호출이 끝나야 기다리던 요청이 깨어나므로 금방 끝나야 한다
+    public interface Listener {
+        void written(ByteBuffer[] records, int count, long position);
+    }
+
+    private final Path dir;
+    private final String baseName;
+    private final boolean sync;
+    // 배치 하나에 묶을 최대 레코드 수
+    private final int batchSize;
+    // 첫 레코드가 들어온 뒤 배치를 더 모으며 기다리는 시간 (0이면 이미 쌓인 것만 묶음)
+    private final long batchWindowNanos;
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    // 배치 하나를 쓰고 fsync하는 데 걸린 시간 (/metrics용)
+    private final MetricsHistogram flushTimes = new MetricsHistogram();
+    private Thread writer;
+    private FileChannel channel;
+    private long generation;
+    private long size;
+    // open에서 replay한 로그 중 레코드가 있던 파일의 가장 최근 수정 시각 (없으면 0)
+    private long replayedModified;
+    // 이 프로세스가 시작한 뒤 기록한 전체 바이트 수 (세대가 바뀌어도 이어서 셈, 복제 위치로 씀)
+    private volatile long position;
+    private volatile Listener listener;
+
+    public MutationLog(Path dir, String baseName, boolean sync) {
+        this(dir, baseName, sync, 256, 0);
+    }
+
+    public MutationLog(Path dir, String baseName, boolean sync, int batchSize, long batchWindowMicros) {
+        this.dir = dir;
+        this.baseName = baseName;
+        this.sync = sync;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchWindowNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, batchWindowMicros));
+    }
+
+    // 남아있는 로그를 세대 순서대로 replay한 뒤 새 세대 로그를 연다
+    public synchronized void open(Replayer replayer) throws IOException {
+        long last = 0;
+        for (long gen : generations()) {
+            Path path = pathOf(gen);
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            replay(path, replayer);
+            if (Files.size(path) > 0) replayedModified = Math.max(replayedModified, modified);
+            last = gen;
+        }
+        generation = last + 1;
+        channel = openChannel(pathOf(generation));
+
+        writer = new Thread(this::writeLoop, "mutation-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void appendUpsert(String json) throws IOException {
+        append(UPSERT, json);
+    }
+
+    // 여러 레코드를 버퍼 하나에 이어 붙여 한 번에 기록 (일괄 추가에서 레코드마다 대기하지 않도록)
+    public void appendUpserts(List<String> jsons) throws IOException {
+        if (jsons.isEmpty()) return;
+        List<ByteBuffer> records = new ArrayList<>(jsons.size());
+        int total = 0;
+        for (String json : jsons) {
+            ByteBuffer record = encode(UPSERT, json);
+            records.add(record);
+            total += record.remaining();
+        }
+        ByteBuffer batch = ByteBuffer.allocate(total);
+        for (ByteBuffer record : records) {
+            batch.put(record);
+        }
+        batch.flip();
+        await(new PendingWrite(batch));
+    }
+
+    public void appendTombstone(String id) throws IOException {
+        append(TOMBSTONE, id);
+    }
+
+    // 이미 로그 형식으로 인코딩된 레코드들을 그대로 기록 (팔로워가 리더에게 받은 바이트)
+    public void appendEncoded(ByteBuffer records) throws IOException {
+        if (!records.hasRemaining()) return;
+        await(new PendingWrite(records.slice()));
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public long position() {
+        return position;
+    }
+
+    // 지금까지 쓴 로그 크기 (현재 세대)
+    public synchronized long size() {
+        return size;
+    }
+
+    // 아직 지우지 않은 모든 세대의 로그 크기 (압축 시점을 정할 때, replay한 이전 세대도 포함)
+    public synchronized long totalSize() throws IOException {
+        long total = size;
+        for (long gen : generations()) {
+            if (gen != generation) total += Files.size(pathOf(gen));
+        }
+        return total;
+    }
+
+    public long replayedModified() {
+        return replayedModified;
+    }
+
+    public MetricsHistogram flushTimes() {
+        return flushTimes;
+    }
+
+    // 새 세대 로그로 넘어가고, 이전 세대 번호 반환 (압축이 끝나면 그 세대까지 지운다)
+    public synchronized long rotate() throws IOException {
+        channel.close();
+        long previous = generation;
+        generation++;
+        channel = openChannel(pathOf(generation));
+        size = 0;
+        return previous;
+    }
+
+    // upToGeneration 이하 세대의 로그 파일 삭제
+    public void deleteUpTo(long upToGeneration) throws IOException {
+        for (long gen : generations()) {
+            if (gen <= upToGeneration) Files.deleteIfExists(pathOf(gen));
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) writer.interrupt();
+        if (channel != null) channel.close();
+    }
+
+    // writer 스레드에 레코드를 넘기고 파일에 기록될 때까지 대기
+    private void append(byte type, String payload) throws IOException {
+        await(new PendingWrite(encode(type, payload)));
+    }
+
+    private void await(PendingWrite pending) throws IOException {
+        queue.add(pending);
+        try {
+            pending.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("변경 로그 기록 대기 중 인터럽트", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    // writer 스레드: 큐에 들어온 순서대로 배치를 만들어 기록 (sync면 fsync까지 끝난 뒤 대기 중인 요청을 깨움)
+    private void writeLoop() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        ByteBuffer[] records = new ByteBuffer[batchSize];
+        while (true) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            int count = batch.size();
+            long bytes = 0;
+            for (int i = 0; i < count; i++) {
+                records[i] = batch.get(i).record;
+                bytes += records[i].remaining();
+            }
+            try {
+                long started = System.nanoTime();
+                synchronized (this) {
+                    // 배치 전체를 gathering write 한 번으로 기록
+                    long written = 0;
+                    while (written < bytes) {
+                        written += channel.write(records, 0, count);
+                    }
+                    if (sync) channel.force(false);
+                    size += bytes;
+                }
+                flushTimes.recordNanos(System.nanoTime() - started);
+                position += bytes;
+                Listener current = listener;
+                if (current != null) {
+                    // write가 position을 끝까지 옮겼으므로 처음부터 다시 읽는 사본으로 넘긴다
+                    for (int i = 0; i < count; i++) {
+                        records[i] = records[i].duplicate().rewind();
+                    }
+                    current.written(records, count, position);
+                }
+                for (PendingWrite pending : batch) {
+                    pending.done.complete(null);
+                }
+            } catch (IOException e) {
+                discardPartialWrite();
+                for (PendingWrite pending : batch) {
+                    pending.done.completeExceptionally(e);
+                }
+            }
+            batch.clear();
+            Arrays.fill(records, 0, count, null);
+        }
+    }
+
+    // 기록에 실패한 배치가 파일에 일부 남았을 수 있으므로 마지막으로 온전히 기록한 크기로 잘라낸다
+    // (남겨 두면 다음 배치가 깨진 레코드 뒤에 붙어 replay에서 통째로 버려지고, 실패로 알린 변경이 되살아날 수도 있다)
+    // 잘라내지 못하면 새 세대로 넘어간다 (이전 세대의 깨진 꼬리는 replay가 잘라냄)
+    private synchronized void discardPartialWrite() {
+        try {
+            if (channel.size() > size) {
+                channel.truncate(size);
+                if (sync) channel.force(false);
+            }
+        } catch (IOException e) {
+            try {
+                rotate();
+            } catch (IOException rotateFailed) {
+                // 다음 배치가 다시 실패하면 또 시도한다
+            }
+        }
+    }
+
+    // 첫 레코드를 기다린 뒤, batchSize까지 큐에 쌓인 레코드와 대기 시간 동안 들어오는 레코드를 모은다
+    private void collectBatch(List<PendingWrite> batch) throws InterruptedException {
+        batch.add(queue.take());
+        queue.drainTo(batch, batchSize - batch.size());
+        if (batchWindowNanos <= 0) return;
+
+        long deadline = System.nanoTime() + batchWindowNanos;
+        while (batch.size() < batchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) break;
+            PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) break;
+            batch.add(next);
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+    }
+
+    // 기록 대기 중인 레코드
+    private static class PendingWrite {
+        final ByteBuffer record;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        PendingWrite(ByteBuffer record) {
+            this.record = record;
+        }
+    }
+
+    static ByteBuffer encode(byte type, String payload) {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + bytes.length);
+        record.put(type).putInt(bytes.length).putInt(crcOf(type, bytes, 0, bytes.length)).put(bytes);
+        record.flip();
+        return record;
+    }
+
+    private static int crcOf(byte type, byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    // 로그 하나를 읽어 적용, 깨진 레코드(쓰다가 죽은 꼬리)를 만나면 그 앞까지만 남기고 잘라낸다
+    private static void replay(Path path, Replayer replayer) throws IOException {
+        byte[] data = Files.readAllBytes(path);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        decode(buffer, replayer);
+        int valid = buffer.position();
+        if (valid < data.length) {
+            System.out.println(path.getFileName() + ": 손상된 로그 꼬리 " + (data.length - valid) + "바이트를 잘라냅니다.");
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                ch.truncate(valid);
+            }
+        }
+    }
+
+    // buffer의 position부터 온전한 레코드를 차례로 replayer에 넘기고, 처음 만난 불완전하거나 깨진 레코드 앞에서 멈춘다
+    // (멈춘 곳이 buffer의 position으로 남음, buffer는 배열이 있는 힙 버퍼)
+    static void decode(ByteBuffer buffer, Replayer replayer) {
+        byte[] data = buffer.array();
+        int base = buffer.arrayOffset();
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int start = buffer.position();
+            byte type = buffer.get();
+            int length = buffer.getInt();
+            int crc = buffer.getInt();
+            int offset = base + buffer.position();
+            if ((type != UPSERT && type != TOMBSTONE) || length < 0 || length > buffer.remaining()
+                    || crcOf(type, data, offset, length) != crc) {
+                buffer.position(start);
+                return;
+            }
+            buffer.position(buffer.position() + length);
+            replayer.apply(type, new String(data, offset, length, StandardCharsets.UTF_8));
+        }
+    }
+
+    // buffer의 position에 헤더와 본문이 다 들어 있는 레코드가 있는지 (decode가 여기서 멈췄다면 레코드가 깨진 것)
+    static boolean hasCompleteRecord(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE) return false;
+        byte type = buffer.get(buffer.position());
+        int length = buffer.getInt(buffer.position() + 1);
+        return (type != UPSERT && type != TOMBSTONE) || length < 0 || length <= buffer.remaining() - HEADER_SIZE;
+    }
+
+    private FileChannel openChannel(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path pathOf(long gen) {
+        return dir.resolve(baseName + "." + gen);
+    }
+
+    // 디렉터리에 있는 로그 세대 번호 (오름차순)
+    private List<Long> generations() throws IOException {
+        List<Long> result = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, baseName + ".*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(baseName.length() + 1);
+                try {
+                    result.add(Long.parseLong(suffix));
+                } catch (NumberFormatException e) {
+                    // 세대 번호가 아닌 파일은 무시
+                }
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+}
@@ -0,0 +1,529 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// ServerSocketChannel/Selector 기반 서버
+// 이벤트 루프 스레드(코어당 1개)는 소켓 읽기/쓰기만 하고, 파일을 다루는 요청 처리 함수는 워커 풀에서 실행한다
+public class NioHttpServer {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    // 연결 하나에 쌓아둘 수 있는 보내지 못한 응답 바이트
+    private static final int MAX_QUEUED_BYTES = 1024 * 1024;
+    // 한 번에 워커로 넘기는 파이프라이닝 요청 수
+    private static final int MAX_PIPELINED_REQUESTS = 64;
+
+    private final int port;
+    private final EventLoop[] loops;
+    private final ExecutorService workers;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private ServerSocketChannel serverChannel;
+
+    public NioHttpServer(int port, ServerConfig config) throws IOException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.port = port;
+        this.loops = new EventLoop[Math.max(1, config.getInt("eventLoops", cores))];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(i);
+        }
+        this.workers = Executors.newFixedThreadPool(Math.max(1, config.getInt("workers", cores * 2)));
+    }
+
+    public void run() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        serverChannel.configureBlocking(false);
+
+        // accept는 첫 번째 이벤트 루프가 담당하고, 연결은 라운드 로빈으로 각 루프에 배정
+        loops[0].execute(() -> {
+            try {
+                serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+
+        Thread[] threads = new Thread[loops.length];
+        for (int i = 0; i < loops.length; i++) {
+            threads[i] = new Thread(loops[i], "nio-loop-" + i);
+            threads[i].start();
+        }
+        System.out.println(port + "번 포트에서 서버 실행되는 중 (NIO, 이벤트 루프 " + loops.length + "개)");
+
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // 새 연결 받기를 멈춤 (서버 종료, 열려 있는 연결은 ConnectionLifecycle.drain()이 정리)
+    public void stopAccepting() {
+        if (serverChannel == null) return;
+        loops[0].execute(() -> {
+            try {
+                serverChannel.close();
+            } catch (IOException ignored) {
+            }
+        });
+    }
+
+    private EventLoop nextLoop() {
+        return loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+    }
+
+    // 하나의 Selector를 돌리는 이벤트 루프
+    private class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        // 루프 안의 모든 연결이 같이 쓰는 읽기 버퍼 (연결마다 버퍼를 잡지 않아 메모리가 연결 수에 비례해 늘지 않음)
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        private final int index;
+
+        EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.index = index;
+        }
+
+        // 다른 스레드에서 루프 스레드로 작업 넘기기
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) continue;
+
+                        if (key.isAcceptable()) {
+                            accept((ServerSocketChannel) key.channel());
+                            continue;
+                        }
+                        Connection conn = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) conn.onReadable();
+                            if (key.isValid() && key.isWritable()) conn.onWritable();
+                        } catch (IOException e) {
+                            conn.close();
+                        }
+                    }
+                } catch (IOException e) {
+                    HttpServer.accessLog.error("이벤트 루프 " + index + " 오류", e);
+                }
+            }
+        }
+
+        private void accept(ServerSocketChannel serverChannel) throws IOException {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                EventLoop loop = nextLoop();
+                SocketChannel accepted = channel;
+                if (loop == this) {
+                    loop.register(accepted);
+                } else {
+                    loop.execute(() -> loop.register(accepted));
+                }
+            }
+        }
+
+        private void register(SocketChannel channel) {
+            try {
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new Connection(this, channel, key));
+                HttpServer.stats.connectionAccepted();
+            } catch (IOException e) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    // 연결 하나의 상태 (루프 스레드에서만 접근)
+    private class Connection {
+        private final EventLoop loop;
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        // 보낼 응답 조각 (ByteBuffer 또는 FileRegion)
+        private final ArrayDeque<Object> pendingWrites = new ArrayDeque<>();
+        // 아직 처리하지 못한 요청 바이트 (요청이 다 모이지 않았을 때만 할당)
+        private byte[] in;
+        private int inLength;
+        // 연결당 보내지 못하고 쌓아둘 수 있는 응답 바이트 (느린 클라이언트 때문에 메모리가 늘지 않도록)
+        private final Semaphore writeCredits = new Semaphore(MAX_QUEUED_BYTES);
+        // 워커에서 요청을 처리하는 중이면 다음 요청을 읽지 않는다 (응답 순서 보장)
+        private boolean busy;
+        private boolean closeAfterWrite;
+        private boolean closed;
+        // 대기/헤더/본문 제한 시간 (지나면 루프 스레드에서 onTimeout)
+        private final ConnectionLifecycle lifecycle;
+
+        Connection(EventLoop loop, SocketChannel channel, SelectionKey key) {
+            this.loop = loop;
+            this.channel = channel;
+            this.key = key;
+            this.lifecycle = new ConnectionLifecycle(() -> loop.execute(this::onTimeout));
+        }
+
+        // 제한 시간이 지났거나 서버가 종료 중인데 다음 요청을 기다리는 연결
+        private void onTimeout() {
+            if (closed) return;
+            ConnectionLifecycle.Phase expired = lifecycle.expiredIn();
+            if (expired == null && busy) return;
+            if (expired == null && !pendingWrites.isEmpty()) {
+                // 종료 중: 보내던 응답은 마저 보내고 닫음
+                closeAfterWrite = true;
+                updateInterest();
+                return;
+            }
+            if ((expired == ConnectionLifecycle.Phase.HEADERS || expired == ConnectionLifecycle.Phase.BODY)
+                && !busy && pendingWrites.isEmpty()) {
+                respondAndClose(408, "Request Timeout", "요청을 받는 데 시간이 너무 오래 걸립니다.");
+                return;
+            }
+            close();
+        }
+
+        void onReadable() throws IOException {
+            ByteBuffer buffer = loop.readBuffer;
+            buffer.clear();
+            int n = channel.read(buffer);
+            if (n == -1) {
+                close();
+                return;
+            }
+            if (n == 0) return;
+            buffer.flip();
+            append(buffer);
+            dispatch();
+        }
+
+        void onWritable() throws IOException {
+            flush();
+        }
+
+        private void append(ByteBuffer buffer) {
+            int n = buffer.remaining();
+            if (in == null) {
+                in = new byte[Math.max(1024, n)];
+            } else if (inLength + n > in.length) {
+                byte[] grown = new byte[Math.max(in.length * 2, inLength + n)];
+                System.arraycopy(in, 0, grown, 0, inLength);
+                in = grown;
+            }
+            buffer.get(in, inLength, n);
+            inLength += n;
+        }
+
+        private void consume(int n) {
+            if (n >= inLength) {
+                in = null;
+                inLength = 0;
+            } else {
+                System.arraycopy(in, n, in, 0, inLength - n);
+                inLength -= n;
+            }
+        }
+
+        // 버퍼에 완성된 요청이 있으면 워커 풀로 넘긴다
+        private void dispatch() {
+            if (busy || closeAfterWrite) {
+                updateInterest();
+                return;
+            }
+
+            // 버퍼에 이미 다 들어와 있는 요청을 모두 꺼낸다 (파이프라이닝된 요청은 한 번에 처리하고 응답도 모아서 보냄)
+            List<HttpRequest> requests = new ArrayList<>(1);
+            List<String> connectionHeaders = new ArrayList<>(1);
+            boolean last = false;
+            // 마지막 파싱 결과 (0이면 헤더가 덜 옴, 음수면 본문이 덜 옴)
+            int consumed = 0;
+            int offset = 0;
+            while (requests.size() < MAX_PIPELINED_REQUESTS) {
+                // 요청 사이의 빈 줄 건너뛰기
+                offset = HttpRequestParser.skipBlankLines(in, offset, inLength);
+                if (offset == inLength) break;
+
+                // 본문까지 다 모인 요청만 꺼낸다
+                HttpRequest request = new HttpRequest();
+                try {
+                    consumed = HttpRequestParser.parse(in, offset, inLength, request);
+                } catch (HttpRequestParser.ParseException e) {
+                    // 앞의 요청들을 먼저 처리하고, 다음 dispatch에서 다시 만나면 오류 응답
+                    if (!requests.isEmpty()) break;
+                    respondAndClose(e.statusCode, e.statusText, e.getMessage());
+                    return;
+                }
+                if (consumed <= 0) break;
+                offset += consumed;
+                requests.add(request);
+                // Connection: close (또는 최대 요청 수, 서버 종료) 뒤의 요청은 처리하지 않는다
+                last = lifecycle.lastRequest(request);
+                connectionHeaders.add(lifecycle.connectionHeader(last));
+                if (last) break;
+            }
+            consume(offset);
+            if (requests.isEmpty()) {
+                if (in == null) lifecycle.idle();
+                else if (consumed < 0) lifecycle.readingBody();
+                else lifecycle.readingHeaders();
+                updateInterest();
+                return;
+            }
+
+            busy = true;
+            lifecycle.busy();
+            updateInterest();
+            boolean close = last;
+            workers.execute(() -> process(requests, connectionHeaders, close));
+        }
+
+        // 워커 스레드: 기존 요청 처리 함수를 메모리 버퍼에 대고 요청 순서대로 실행한 뒤 결과를 루프로 돌려준다
+        private void process(List<HttpRequest> requests, List<String> connectionHeaders, boolean close) {
+            // 처리 함수가 flush할 때마다 지금까지의 응답을 루프로 넘긴다 (chunked 응답이 만들어지는 대로 전송됨)
+            ResponseBuffer out = new ResponseBuffer(this::emit);
+            try (HttpResponseWriter writer = new HttpResponseWriter(out)) {
+                for (int i = 0; i < requests.size(); i++) {
+                    writer.connectionHeader(connectionHeaders.get(i));
+                    HttpServer.handle(requests.get(i), writer, out);
+                }
+                writer.drain();
+            } catch (RuntimeException e) {
+                HttpServer.accessLog.error("요청 처리 중 오류 " + channel.socket().getRemoteSocketAddress(), e);
+                out.discard();
+                loop.execute(this::close);
+                return;
+            }
+            List<Object> rest = out.finish();
+            acquireCredits(rest);
+            loop.execute(() -> {
+                busy = false;
+                if (close) closeAfterWrite = true;
+                enqueue(rest);
+                try {
+                    dispatch();
+                } catch (RuntimeException e) {
+                    close();
+                }
+            });
+        }
+
+        // 워커 스레드: 응답 일부를 루프로 넘김 (아직 보내지 못한 양이 많으면 소켓이 비워질 때까지 대기)
+        private void emit(List<Object> items) {
+            acquireCredits(items);
+            loop.execute(() -> enqueue(items));
+        }
+
+        // 루프 스레드: 응답 조각을 쓰기 큐에 넣고 바로 보내본다
+        private void enqueue(List<Object> items) {
+            if (!channel.isOpen()) {
+                discardItems(items);
+                return;
+            }
+            pendingWrites.addAll(items);
+            try {
+                flush();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        // 클라이언트가 writeTimeout 동안 하나도 읽어 가지 않으면 연결을 끊는다 (느린 클라이언트 몇 개가 워커 풀을 붙잡지 않도록)
+        private void acquireCredits(List<Object> items) {
+            for (Object item : items) {
+                if (!(item instanceof ByteBuffer)) continue;
+                int credits = creditsOf((ByteBuffer) item);
+                long stalledSince = System.nanoTime();
+                try {
+                    // 연결이 닫히면 더 기다리지 않는다
+                    while (!writeCredits.tryAcquire(credits, 100, TimeUnit.MILLISECONDS)) {
+                        if (!channel.isOpen()) return;
+                        if (System.nanoTime() - stalledSince >= ConnectionLifecycle.writeTimeoutMillis * 1_000_000) {
+                            HttpServer.stats.connectionTimedOut();
+                            loop.execute(this::close);
+                            return;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private void respondAndClose(int statusCode, String statusText, String body) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            try (HttpResponseWriter writer = new HttpResponseWriter(out)) {
+                HttpServer.sendHttpResponse(writer, statusCode, statusText, body, ConnectionLifecycle.CLOSE_HEADER);
+                writer.flush();
+            }
+            pendingWrites.add(ByteBuffer.wrap(out.toByteArray()));
+            closeAfterWrite = true;
+            in = null;
+            inLength = 0;
+            try {
+                flush();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void flush() throws IOException {
+            // 응답을 보내는 동안은 느리게 읽는 클라이언트라도 진행이 있으면 대기 제한 시간을 다시 시작
+            if (!pendingWrites.isEmpty()) lifecycle.touch();
+            while (!pendingWrites.isEmpty()) {
+                Object item = pendingWrites.peek();
+                if (item instanceof FileRegion) {
+                    // 파일 본문은 transferTo로 소켓에 직접 전송 (소켓 버퍼가 차면 다음 OP_WRITE에서 이어감)
+                    FileRegion region = (FileRegion) item;
+                    region.position += region.file.transferTo(region.position, region.end - region.position, channel);
+                    if (region.position < region.end) break;
+                    region.file.close();
+                } else {
+                    ByteBuffer buffer = (ByteBuffer) item;
+                    channel.write(buffer);
+                    if (buffer.hasRemaining()) break;
+                    writeCredits.release(creditsOf(buffer));
+                }
+                pendingWrites.poll();
+            }
+            if (pendingWrites.isEmpty() && closeAfterWrite) {
+                close();
+                return;
+            }
+            updateInterest();
+        }
+
+        private void updateInterest() {
+            if (!key.isValid()) return;
+            int ops = 0;
+            if (!pendingWrites.isEmpty()) ops |= SelectionKey.OP_WRITE;
+            if (!busy && !closeAfterWrite) ops |= SelectionKey.OP_READ;
+            key.interestOps(ops);
+        }
+
+        void close() {
+            if (!closed) {
+                closed = true;
+                HttpServer.stats.connectionClosed();
+                lifecycle.close();
+            }
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            discardItems(pendingWrites);
+            pendingWrites.clear();
+            // 응답을 만들다 대기 중인 워커가 있으면 풀어준다
+            writeCredits.release(MAX_QUEUED_BYTES);
+        }
+    }
+
+    // 보내지 못한 파일 본문 닫기
+    private static void discardItems(Iterable<Object> items) {
+        for (Object item : items) {
+            if (item instanceof FileRegion) ((FileRegion) item).closeQuietly();
+        }
+    }
+
+    // 버퍼 하나가 차지하는 쓰기 크레딧 (한 버퍼가 한도보다 커도 기다리다 멈추지 않도록 한도로 자름)
+    private static int creditsOf(ByteBuffer buffer) {
+        return Math.min(buffer.limit(), MAX_QUEUED_BYTES);
+    }
+
+    // 아직 보내지 않은 파일 구간
+    private static class FileRegion {
+        final FileChannel file;
+        final long end;
+        long position;
+
+        FileRegion(FileChannel file, long count) {
+            this.file = file;
+            this.end = count;
+        }
+
+        void closeQuietly() {
+            try {
+                file.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // 워커가 만든 응답: 바이트 조각과 파일 구간을 순서대로 모으고, flush될 때마다 모은 것을 내보낸다
+    private static class ResponseBuffer extends ByteArrayOutputStream implements FileSink {
+        private final Consumer<List<Object>> emitter;
+        private List<Object> items = new ArrayList<>(2);
+
+        ResponseBuffer(Consumer<List<Object>> emitter) {
+            super(256);
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void sendFile(FileChannel file, long count) {
+            cut();
+            items.add(new FileRegion(file, count));
+        }
+
+        @Override
+        public void flush() {
+            cut();
+            if (items.isEmpty()) return;
+            emitter.accept(items);
+            items = new ArrayList<>(2);
+        }
+
+        List<Object> finish() {
+            cut();
+            return items;
+        }
+
+        void discard() {
+            discardItems(items);
+            items.clear();
+        }
+
+        // 지금까지 쓴 바이트를 하나의 조각으로 잘라 넣기
+        private void cut() {
+            if (count == 0) return;
+            items.add(ByteBuffer.wrap(toByteArray()));
+            reset();
+        }
+    }
+}
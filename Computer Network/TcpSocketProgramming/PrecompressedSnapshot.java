@@ -0,0 +1,112 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// users.txt 스냅샷을 gzip으로 미리 압축해 둔 users.txt.gz (GET /users에 Accept-Encoding: gzip이면 이 파일을 그대로 전송)
+// 저장소 버전이 바뀐 뒤 처음 요청이 오면 백그라운드 스레드 하나가 다시 만들고, 그동안은 압축하지 않은 스냅샷으로 응답한다
+// 스냅샷이 아직 압축되지 않은 변경보다 오래됐으면 만들지 않는다 (압축기가 스냅샷을 새로 만든 뒤에 만듦)
+// 요청마다 압축하지 않으므로 CPU는 버전당 한 번만 쓴다
+public class PrecompressedSnapshot {
+    // 다 만들어진 압축본
+    static final class Snapshot {
+        final long version;
+        final long lastModified;
+        // 압축본 크기와 압축하기 전 users.txt 크기
+        final long size;
+        final long sourceSize;
+
+        Snapshot(long version, long lastModified, long size, long sourceSize) {
+            this.version = version;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.sourceSize = sourceSize;
+        }
+    }
+
+    private final UserStore store;
+    private final Path file;
+    private final ExecutorService builder = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "snapshot-compressor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean building = new AtomicBoolean();
+    // 지금 file에 있는 압축본 (파일을 교체하는 동안에는 null)
+    private volatile Snapshot ready;
+
+    public PrecompressedSnapshot(UserStore store, Path snapshotFile) throws IOException {
+        this.store = store;
+        this.file = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".gz");
+        // 이전 실행에서 남은 압축본은 어느 버전인지 알 수 없으므로 버림
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(tempFile());
+    }
+
+    // version의 압축본 (아직 없으면 다시 만들기를 시작하고 null)
+    public Snapshot current(long version) {
+        Snapshot snapshot = ready;
+        if (snapshot != null && snapshot.version == version) return snapshot;
+        if (store.currentSnapshot() != null && building.compareAndSet(false, true)) {
+            builder.execute(this::rebuild);
+        }
+        return null;
+    }
+
+    // snapshot의 파일 열기 (그사이 다른 버전으로 교체됐으면 null, 반환한 채널은 호출한 쪽이 닫는다)
+    public FileChannel open(Snapshot snapshot) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return null;
+        }
+        // 교체는 ready를 비우고 나서 하므로, 연 뒤에도 ready가 그대로면 연 파일이 snapshot의 내용이다
+        if (ready != snapshot) {
+            channel.close();
+            return null;
+        }
+        return channel;
+    }
+
+    private void rebuild() {
+        try {
+            // 버전을 먼저 읽어 두므로 만드는 도중에 바뀐 데이터가 섞여도 다음 요청에서 다시 만든다
+            long version = store.version();
+            long lastModified = store.lastModified();
+            Path source = store.currentSnapshot();
+            // 아직 스냅샷 파일이 없는 빈 저장소 (압축기가 처음 압축하면 만들어짐)
+            if (source == null || !Files.exists(source)) return;
+            Path temp = tempFile();
+            long sourceSize = 0;
+            try (InputStream in = Files.newInputStream(source);
+                 OutputStream out = ContentEncoding.compressor(Files.newOutputStream(temp), ContentEncoding.GZIP, false)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    sourceSize += read;
+                }
+            }
+            long size = Files.size(temp);
+            ready = null;
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            ready = new Snapshot(version, lastModified, size, sourceSize);
+        } catch (IOException e) {
+            System.out.println(file.getFileName() + " 압축 중 오류가 발생했습니다: " + e.getMessage());
+        } finally {
+            building.set(false);
+        }
+    }
+
+    private Path tempFile() {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+}
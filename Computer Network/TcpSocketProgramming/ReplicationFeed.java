@@ -0,0 +1,61 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+
+// 복제 리더가 팔로워에게 보낼 변경 로그 바이트를 최근 capacity 바이트만큼 담아 두는 링 버퍼
+// 위치(offset)는 MutationLog.position()과 같은 기준(이 프로세스가 기록한 누적 바이트 수)이라서
+// 팔로워는 "어디까지 받았는지"를 위치 하나로 말하고, 그 위치가 아직 버퍼에 있으면 거기서부터 이어 받는다
+// 리더를 다시 시작하면 위치가 0부터 다시 시작하므로 시작할 때마다 epoch를 새로 뽑아 구별한다
+public class ReplicationFeed implements MutationLog.Listener {
+    final long epoch = ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE;
+    private final byte[] ring;
+    // 지금까지 받은 바이트의 끝 위치
+    private long end;
+
+    // start는 버퍼를 붙이는 시점의 로그 위치
+    public ReplicationFeed(int capacity, long start) {
+        this.ring = new byte[capacity];
+        this.end = start;
+    }
+
+    // MutationLog writer 스레드: 방금 기록한 레코드를 이어 붙이고 기다리는 팔로워를 깨움
+    @Override
+    public synchronized void written(ByteBuffer[] records, int count, long position) {
+        for (int i = 0; i < count; i++) {
+            ByteBuffer record = records[i];
+            while (record.hasRemaining()) {
+                int at = (int) (end % ring.length);
+                int n = Math.min(record.remaining(), ring.length - at);
+                record.get(ring, at, n);
+                end += n;
+            }
+        }
+        notifyAll();
+    }
+
+    public synchronized long end() {
+        return end;
+    }
+
+    // offset부터 이어 보낼 수 있는지 (이미 링에서 밀려났거나 아직 오지 않은 위치면 false)
+    public synchronized boolean contains(long offset) {
+        return offset <= end && offset >= end - ring.length && offset >= 0;
+    }
+
+    // from 위치부터 dst에 복사하고 복사한 바이트 수 반환
+    // 새 바이트가 없으면 waitMillis까지 기다렸다가 0, from이 이미 밀려났으면 -1
+    public synchronized int read(long from, byte[] dst, long waitMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + waitMillis * 1_000_000;
+        while (end == from) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return 0;
+            wait(Math.max(1, remaining / 1_000_000));
+        }
+        if (!contains(from)) return -1;
+        int n = (int) Math.min(dst.length, end - from);
+        int at = (int) (from % ring.length);
+        int first = Math.min(n, ring.length - at);
+        System.arraycopy(ring, at, dst, 0, first);
+        if (first < n) System.arraycopy(ring, 0, dst, first, n - first);
+        return n;
+    }
+}
@@ -0,0 +1,220 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+// 복제 팔로워 (--replicaOf=host:port): 리더의 복제 포트에 붙어 변경 로그를 받아 자기 저장소와 변경 로그에 반영하고, 읽기 요청만 처리한다
+// 어디까지 받았는지(epoch, 위치)는 replication.state 파일에 남겨 두고, 다시 시작하거나 연결이 끊기면 거기서부터 이어 받는다
+// (위치는 자기 변경 로그에 기록한 뒤에 저장하므로 뒤처질 수는 있어도 앞서지는 않고, 레코드는 사용자 전체 값이라 다시 적용해도 결과가 같다)
+// 리더가 이어 줄 수 없으면 전체 스냅샷을 받아 데이터를 통째로 바꾼다
+// 응답마다 X-Replication-Lag(밀리초) 헤더로 리더보다 얼마나 뒤처졌는지 알린다
+public class ReplicationFollower implements ServerMetrics.Source {
+    private static final long RETRY_MILLIS = 1000;
+    // 받은 위치를 파일에 저장하는 최소 간격
+    private static final long SAVE_INTERVAL_NANOS = 200_000_000L;
+
+    private final String host;
+    private final int port;
+    private final UserStore store;
+    private final Path stateFile;
+    // 쓰기 요청을 보낼 리더의 HTTP 주소 (host:port, 없으면 403)
+    private final String leaderHttp;
+
+    private long epoch;
+    // 자기 저장소에 반영한 위치, 마지막으로 알게 된 리더의 끝 위치
+    private volatile long applied;
+    private volatile long leaderEnd;
+    private volatile boolean connected;
+    // 마지막으로 리더에게서 무언가 받은 시각, 뒤처지기 시작한 시각 (따라잡았으면 0)
+    private volatile long lastContactNanos = System.nanoTime();
+    private volatile long behindSinceNanos;
+    private long savedAtNanos;
+    private final LongAdder snapshotsReceived = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+
+    public ReplicationFollower(String leader, UserStore store, Path dataDir, String leaderHttp) throws IOException {
+        int colon = leader.lastIndexOf(':');
+        if (colon <= 0) throw new IllegalArgumentException("--replicaOf는 host:port 형식이어야 합니다: " + leader);
+        this.host = leader.substring(0, colon);
+        this.port = Integer.parseInt(leader.substring(colon + 1));
+        this.store = store;
+        this.stateFile = dataDir.resolve("replication.state");
+        this.leaderHttp = leaderHttp;
+        if (Files.exists(stateFile)) {
+            String[] state = Files.readString(stateFile).trim().split(" ");
+            epoch = Long.parseLong(state[0]);
+            applied = Long.parseLong(state[1]);
+        }
+    }
+
+    // 리더를 따라가는 스레드 시작 (끊기면 RETRY_MILLIS 뒤에 다시 연결)
+    public void start() {
+        Thread thread = new Thread(() -> {
+            while (true) {
+                try {
+                    follow();
+                } catch (IOException | RuntimeException e) {
+                    if (connected) System.out.println("복제 리더 " + host + ":" + port + "와 연결이 끊겼습니다: " + e);
+                }
+                connected = false;
+                reconnects.increment();
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "replication-follower");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void follow() throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), (int) RETRY_MILLIS);
+            socket.setTcpNoDelay(true);
+            // 하트비트가 몇 번 오지 않으면 리더가 멈춘 것으로 보고 다시 연결
+            socket.setSoTimeout((int) (ReplicationLeader.HEARTBEAT_MILLIS * 6));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 256 * 1024));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeLong(epoch);
+            out.writeLong(applied);
+            out.flush();
+            connected = true;
+            System.out.println("복제 리더 " + host + ":" + port + "에 연결했습니다 (위치 " + applied + ").");
+
+            // 레코드 중간에서 잘린 프레임의 뒷부분을 기다리는 바이트
+            byte[] pending = new byte[0];
+            while (true) {
+                byte type = in.readByte();
+                lastContactNanos = System.nanoTime();
+                if (type == ReplicationLeader.SNAPSHOT) {
+                    receiveSnapshot(in);
+                    pending = new byte[0];
+                } else if (type == ReplicationLeader.WRITE) {
+                    long from = in.readLong();
+                    updateLeaderEnd(in.readLong());
+                    int length = in.readInt();
+                    if (from != applied + pending.length) throw new IOException("복제 위치가 맞지 않습니다: " + from + " != " + (applied + pending.length));
+                    byte[] data = Arrays.copyOf(pending, pending.length + length);
+                    in.readFully(data, pending.length, length);
+                    pending = apply(data);
+                } else if (type == ReplicationLeader.HEARTBEAT) {
+                    updateLeaderEnd(in.readLong());
+                    if (System.nanoTime() - savedAtNanos >= SAVE_INTERVAL_NANOS) saveState();
+                } else {
+                    throw new IOException("알 수 없는 복제 프레임: " + type);
+                }
+            }
+        }
+    }
+
+    // 온전한 레코드까지 반영하고 남은(잘린) 바이트 반환
+    private byte[] apply(byte[] data) throws IOException {
+        ByteBuffer scan = ByteBuffer.wrap(data);
+        MutationLog.decode(scan, (type, payload) -> { });
+        if (MutationLog.hasCompleteRecord(scan)) throw new IOException("복제 데이터의 레코드가 깨졌습니다 (위치 " + (applied + scan.position()) + ").");
+        int complete = scan.position();
+        if (complete > 0) {
+            store.applyReplicated(ByteBuffer.wrap(data, 0, complete));
+            applied += complete;
+            updateLag();
+            if (System.nanoTime() - savedAtNanos >= SAVE_INTERVAL_NANOS) saveState();
+        }
+        return Arrays.copyOfRange(data, complete, data.length);
+    }
+
+    // 스냅샷을 받아 데이터를 통째로 바꿈
+    private void receiveSnapshot(DataInputStream in) throws IOException {
+        long snapshotEpoch = in.readLong();
+        long position = in.readLong();
+        int count = in.readInt();
+        List<User> users = new ArrayList<>(count);
+        byte[] buffer = new byte[1024];
+        for (int i = 0; i < count; i++) {
+            int length = in.readInt();
+            if (length > buffer.length) buffer = new byte[Math.max(length, buffer.length * 2)];
+            in.readFully(buffer, 0, length);
+            users.add(User.parse(new String(buffer, 0, length, StandardCharsets.UTF_8)));
+        }
+        long started = System.nanoTime();
+        store.replaceAll(users);
+        epoch = snapshotEpoch;
+        applied = position;
+        updateLeaderEnd(position);
+        saveState();
+        snapshotsReceived.increment();
+        System.out.println("복제 리더의 스냅샷(" + count + "명)을 받았습니다 (" + (System.nanoTime() - started) / 1_000_000 + "ms).");
+    }
+
+    private void updateLeaderEnd(long end) {
+        leaderEnd = end;
+        updateLag();
+    }
+
+    private void updateLag() {
+        if (applied >= leaderEnd) {
+            behindSinceNanos = 0;
+        } else if (behindSinceNanos == 0) {
+            behindSinceNanos = System.nanoTime();
+        }
+    }
+
+    // (epoch, 위치)를 임시 파일에 쓰고 원자적으로 교체
+    private void saveState() throws IOException {
+        Path temp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        Files.writeString(temp, epoch + " " + applied + "\n");
+        Files.move(temp, stateFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        savedAtNanos = System.nanoTime();
+    }
+
+    // 리더보다 뒤처진 시간 (밀리초): 연결돼 있으면 뒤처지기 시작한 뒤로 지난 시간, 끊겼으면 마지막으로 받은 뒤로 지난 시간
+    public long lagMillis() {
+        long now = System.nanoTime();
+        if (!connected) return (now - lastContactNanos) / 1_000_000;
+        long since = behindSinceNanos;
+        return since == 0 ? 0 : (now - since) / 1_000_000;
+    }
+
+    public String lagHeader() {
+        return "X-Replication-Lag: " + lagMillis();
+    }
+
+    // 팔로워는 읽기 전용: POST/PUT/DELETE는 리더로 307 (리더 주소를 모르면 403)
+    public void rejectWrite(HttpRequest request, HttpResponseWriter writer) {
+        if (leaderHttp != null) {
+            HttpServer.sendHttpResponse(writer, 307, "Temporary Redirect", "쓰기 요청은 복제 리더에서 처리합니다.",
+                "Location: http://" + leaderHttp + request.path());
+        } else {
+            HttpServer.sendHttpResponse(writer, 403, "Forbidden", "읽기 전용 복제본입니다. 쓰기 요청은 리더로 보내 주세요.");
+        }
+    }
+
+    @Override
+    public void appendMetrics(StringBuilder out) {
+        out.append("# HELP replication_connected 복제 리더와 연결돼 있는지\n# TYPE replication_connected gauge\n");
+        out.append("replication_connected ").append(connected ? 1 : 0).append('\n');
+        out.append("# HELP replication_applied_position 반영한 리더 변경 로그 위치 (바이트)\n# TYPE replication_applied_position counter\n");
+        out.append("replication_applied_position ").append(applied).append('\n');
+        out.append("# HELP replication_lag_bytes 리더보다 뒤처진 변경 로그 바이트\n# TYPE replication_lag_bytes gauge\n");
+        out.append("replication_lag_bytes ").append(Math.max(0, leaderEnd - applied)).append('\n');
+        out.append("# HELP replication_lag_seconds 리더보다 뒤처진 시간\n# TYPE replication_lag_seconds gauge\n");
+        out.append("replication_lag_seconds ").append(lagMillis() / 1000.0).append('\n');
+        out.append("# HELP replication_snapshots_received_total 리더에게 받은 전체 스냅샷 수\n# TYPE replication_snapshots_received_total counter\n");
+        out.append("replication_snapshots_received_total ").append(snapshotsReceived.sum()).append('\n');
+        out.append("# HELP replication_reconnects_total 리더와 다시 연결한 횟수\n# TYPE replication_reconnects_total counter\n");
+        out.append("replication_reconnects_total ").append(reconnects.sum()).append('\n');
+    }
+}
@@ -0,0 +1,150 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// 복제 리더 (--replicationPort): 팔로워가 TCP로 붙으면 변경 로그를 기록되는 대로 바이트 그대로 흘려보낸다 (비동기, 팔로워의 확인을 기다리지 않음)
+// 팔로워는 처음에 (epoch, 받은 위치)를 보내고, 리더는 그 위치가 ReplicationFeed에 남아 있으면 거기서부터 이어 보내고
+// 아니면(처음 붙음, 리더가 다시 시작됨, 너무 밀림) 한 시점의 전체 사용자 스냅샷과 그 위치를 먼저 보낸 뒤 이어 보낸다
+//
+// 리더 → 팔로워 프레임 (DataOutputStream)
+//  'S' epoch(long) 위치(long) 사용자 수(int) [길이(int) 사용자 JSON]...   스냅샷
+//  'W' 시작 위치(long) 리더 끝 위치(long) 길이(int) 로그 바이트            변경 로그 (레코드 경계와 상관없이 잘릴 수 있음)
+//  'H' 리더 끝 위치(long)                                                   보낼 것이 없을 때 HEARTBEAT_MILLIS마다
+public class ReplicationLeader implements ServerMetrics.Source {
+    static final byte SNAPSHOT = 'S';
+    static final byte WRITE = 'W';
+    static final byte HEARTBEAT = 'H';
+    static final long HEARTBEAT_MILLIS = 500;
+    // 링 버퍼는 배열 하나라서 2GB보다 조금 작게
+    private static final long MAX_BACKLOG_BYTES = Integer.MAX_VALUE - 8;
+
+    private final UserStore store;
+    private final ReplicationFeed feed;
+    // 팔로워 주소 → 보낸 위치
+    private final Map<String, AtomicLong> followers = new ConcurrentHashMap<>();
+    private final LongAdder snapshotsSent = new LongAdder();
+
+    // feed는 store의 변경 로그에 붙여 두고, 그 뒤의 변경부터 팔로워에게 간다
+    public ReplicationLeader(UserStore store, long backlogBytes) {
+        if (backlogBytes <= 0) throw new IllegalArgumentException("--replicationBacklogMB는 1 이상이어야 합니다.");
+        if (backlogBytes > MAX_BACKLOG_BYTES) {
+            System.out.println("복제 backlog는 최대 " + MAX_BACKLOG_BYTES / (1024 * 1024) + "MB까지라 그 크기로 줄입니다.");
+            backlogBytes = MAX_BACKLOG_BYTES;
+        }
+        this.store = store;
+        this.feed = new ReplicationFeed((int) backlogBytes, store.consistentSnapshot().position);
+        store.replicateTo(feed);
+    }
+
+    // port에서 팔로워 연결을 받는 스레드 시작
+    public void start(int port) throws IOException {
+        ServerSocket server = new ServerSocket();
+        server.bind(new InetSocketAddress(port));
+        System.out.println(port + "번 포트에서 복제 팔로워를 기다리는 중");
+        Thread acceptor = new Thread(() -> {
+            while (true) {
+                try {
+                    Socket socket = server.accept();
+                    socket.setTcpNoDelay(true);
+                    Thread sender = new Thread(() -> serve(socket), "replication-sender");
+                    sender.setDaemon(true);
+                    sender.start();
+                } catch (IOException e) {
+                    HttpServer.accessLog.error("복제 연결 수락 중 오류", e);
+                }
+            }
+        }, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    // 팔로워 하나에게 보내기 (연결이 끊기거나 팔로워가 링 버퍼에서 밀려나면 끝, 팔로워가 다시 붙으면 스냅샷부터)
+    private void serve(Socket socket) {
+        String name = socket.getRemoteSocketAddress().toString();
+        AtomicLong sent = new AtomicLong();
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 64 * 1024))) {
+            long epoch = in.readLong();
+            long from = in.readLong();
+            if (epoch != feed.epoch || !feed.contains(from)) from = sendSnapshot(out);
+            sent.set(from);
+            followers.put(name, sent);
+
+            byte[] buffer = new byte[256 * 1024];
+            while (true) {
+                int n = feed.read(from, buffer, HEARTBEAT_MILLIS);
+                if (n < 0) {
+                    System.out.println("복제 팔로워 " + name + "가 너무 밀려서 연결을 끊습니다 (다시 붙으면 스냅샷부터 보냄).");
+                    return;
+                }
+                if (n == 0) {
+                    out.writeByte(HEARTBEAT);
+                    out.writeLong(feed.end());
+                } else {
+                    out.writeByte(WRITE);
+                    out.writeLong(from);
+                    out.writeLong(feed.end());
+                    out.writeInt(n);
+                    out.write(buffer, 0, n);
+                    from += n;
+                    sent.set(from);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // 팔로워가 끊어짐
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            followers.remove(name, sent);
+        }
+    }
+
+    // 한 시점의 전체 사용자를 보내고 그 위치 반환 (그 위치부터 이어 보내면 빠짐도 겹침도 없음)
+    private long sendSnapshot(DataOutputStream out) throws IOException {
+        UserStore.Snapshot snapshot = store.consistentSnapshot();
+        snapshotsSent.increment();
+        out.writeByte(SNAPSHOT);
+        out.writeLong(feed.epoch);
+        out.writeLong(snapshot.position);
+        out.writeInt(snapshot.size);
+        StringBuilder json = new StringBuilder(256);
+        for (User user : snapshot.users) {
+            json.setLength(0);
+            user.appendJson(json);
+            byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        out.flush();
+        return snapshot.position;
+    }
+
+    @Override
+    public void appendMetrics(StringBuilder out) {
+        long end = feed.end();
+        out.append("# HELP replication_log_position 복제 리더가 기록한 변경 로그 위치 (바이트)\n# TYPE replication_log_position counter\n");
+        out.append("replication_log_position ").append(end).append('\n');
+        out.append("# HELP replication_followers 연결된 복제 팔로워 수\n# TYPE replication_followers gauge\n");
+        out.append("replication_followers ").append(followers.size()).append('\n');
+        out.append("# HELP replication_follower_unsent_bytes 팔로워에게 아직 보내지 않은 변경 로그 바이트\n");
+        out.append("# TYPE replication_follower_unsent_bytes gauge\n");
+        for (Map.Entry<String, AtomicLong> follower : followers.entrySet()) {
+            out.append("replication_follower_unsent_bytes{follower=\"").append(follower.getKey()).append("\"} ")
+                .append(Math.max(0, end - follower.getValue().get())).append('\n');
+        }
+        out.append("# HELP replication_snapshots_sent_total 팔로워에게 보낸 전체 스냅샷 수\n# TYPE replication_snapshots_sent_total counter\n");
+        out.append("replication_snapshots_sent_total ").append(snapshotsSent.sum()).append('\n');
+    }
+}
@@ -0,0 +1,207 @@
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// GET/HEAD 응답 캐시 (경로와 쿼리 → 응답 본문과 ETag/Last-Modified)
+// 항목은 만들 때의 저장소 버전(UserStore.version())을 기억하고, POST/PUT/DELETE로 버전이 바뀌면 더 이상 쓰지 않는다
+// 본문 크기 합(나중에 붙는 압축본 포함)이 maxBytes를 넘으면 가장 오래 쓰지 않은 항목부터 버린다 (LRU)
+public class ResponseCache {
+    // 캐시된 응답 하나
+    static final class Entry {
+        final long version;
+        final int statusCode;
+        final String statusText;
+        // null이면 본문은 스냅샷 파일 (GET /users)
+        final byte[] body;
+        final long contentLength;
+        final String etag;
+        final long lastModifiedSecond;
+        // 응답 헤더 줄 ("ETag: ...", "Last-Modified: ...")
+        final String etagHeader;
+        final String lastModifiedHeader;
+        // 그 밖의 응답 헤더 줄 (ex) X-Next-Cursor)
+        final String[] headers;
+        // 압축한 표현은 ETag가 달라야 하므로 인코딩 이름을 붙인다 (ex) "epoch-version-gzip")
+        private final String gzipEtag;
+        private final String deflateEtag;
+        private final String gzipEtagHeader;
+        private final String deflateEtagHeader;
+        // 처음 요청될 때 한 번만 압축해 두는 본문 (ResponseCache.encodedBody()가 캐시 락을 잡고 붙이고 크기에 더함)
+        private volatile byte[] gzipBody;
+        private volatile byte[] deflateBody;
+        // 지금 캐시에 들어 있는지 (캐시 락 안에서만 바꿈)
+        private boolean cached;
+
+        Entry(long version, long lastModifiedMillis, int statusCode, String statusText, byte[] body, long contentLength,
+              String... headers) {
+            this.version = version;
+            this.statusCode = statusCode;
+            this.statusText = statusText;
+            this.body = body;
+            this.contentLength = contentLength;
+            this.headers = headers;
+            // 서버를 다시 띄우면 버전이 처음부터 다시 세어지므로 프로세스마다 다른 값을 앞에 붙인다
+            this.etag = "\"" + EPOCH + "-" + version + "\"";
+            this.lastModifiedSecond = lastModifiedMillis / 1000;
+            this.etagHeader = "ETag: " + etag;
+            this.gzipEtag = "\"" + EPOCH + "-" + version + "-" + ContentEncoding.GZIP + "\"";
+            this.deflateEtag = "\"" + EPOCH + "-" + version + "-" + ContentEncoding.DEFLATE + "\"";
+            this.gzipEtagHeader = "ETag: " + gzipEtag;
+            this.deflateEtagHeader = "ETag: " + deflateEtag;
+            this.lastModifiedHeader = "Last-Modified: " + DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                Instant.ofEpochSecond(lastModifiedSecond).atOffset(ZoneOffset.UTC));
+        }
+
+        // 문자열 본문 항목
+        static Entry of(long version, long lastModifiedMillis, int statusCode, String statusText, String body,
+                        String... headers) {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            return new Entry(version, lastModifiedMillis, statusCode, statusText, bytes, bytes.length, headers);
+        }
+
+        // If-None-Match / If-Modified-Since 조건에 맞아 304로 답해도 되는지 (If-None-Match가 있으면 그것만 본다)
+        boolean notModified(HttpRequest request) {
+            if (statusCode != 200) return false;
+            String ifNoneMatch = request.header(HttpRequest.IF_NONE_MATCH);
+            if (ifNoneMatch != null) {
+                for (String tag : ifNoneMatch.split(",")) {
+                    tag = tag.trim();
+                    if (tag.startsWith("W/")) tag = tag.substring(2);
+                    if (tag.equals("*") || tag.equals(etag) || tag.equals(gzipEtag) || tag.equals(deflateEtag)) return true;
+                }
+                return false;
+            }
+            String ifModifiedSince = request.header(HttpRequest.IF_MODIFIED_SINCE);
+            if (ifModifiedSince != null) {
+                try {
+                    long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+                    return lastModifiedSecond <= since;
+                } catch (DateTimeParseException e) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        // 인코딩별 ETag 헤더 줄 (encoding이 null이면 압축하지 않은 본문)
+        String etagHeader(String encoding) {
+            if (encoding == null) return etagHeader;
+            return encoding.equals(ContentEncoding.GZIP) ? gzipEtagHeader : deflateEtagHeader;
+        }
+
+        private byte[] encoded(String encoding) {
+            return encoding.equals(ContentEncoding.GZIP) ? gzipBody : deflateBody;
+        }
+
+        private long size() {
+            byte[] gzip = gzipBody;
+            byte[] deflate = deflateBody;
+            return (body != null ? body.length : 0) + (gzip != null ? gzip.length : 0)
+                + (deflate != null ? deflate.length : 0) + 128;
+        }
+    }
+
+    private static final String EPOCH = Long.toHexString(ThreadLocalRandom.current().nextLong() >>> 16);
+
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    // 접근 순서로 정렬 (맨 앞이 가장 오래 쓰지 않은 항목)
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ResponseCache(long maxBytes, int maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    // 본문이 이보다 크면 캐시하지 않는다
+    public int maxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    // 현재 버전의 항목 (없거나 오래됐으면 null)
+    public synchronized Entry get(String key, long version) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.version == version) {
+            hits.incrementAndGet();
+            return entry;
+        }
+        // 오래된 항목은 다시 쓸 일이 없으므로 바로 버림
+        if (entry != null) remove(key);
+        misses.incrementAndGet();
+        return null;
+    }
+
+    // 항목을 넣고 그대로 반환 (본문이 너무 크거나 더 새 버전의 항목이 이미 있으면 넣지 않음)
+    public synchronized Entry put(String key, Entry entry) {
+        if (entry.body != null && entry.body.length > maxEntryBytes) return entry;
+        Entry old = entries.get(key);
+        if (old != null && old.version > entry.version) return entry;
+        entries.put(key, entry);
+        if (old != null) {
+            old.cached = false;
+            bytes -= old.size();
+        }
+        entry.cached = true;
+        bytes += entry.size();
+        evict(entry);
+        return entry;
+    }
+
+    // entry의 본문을 encoding으로 압축한 것 (처음 요청될 때 락 밖에서 압축한 뒤 항목에 붙이고, 캐시에 있는 항목이면 그 크기를 더한다)
+    // 여러 스레드가 동시에 처음 요청하면 각자 압축하지만 먼저 붙인 것 하나만 남는다
+    public byte[] encodedBody(Entry entry, String encoding) {
+        byte[] encoded = entry.encoded(encoding);
+        if (encoded != null) return encoded;
+        encoded = ContentEncoding.compress(entry.body, encoding);
+        synchronized (this) {
+            byte[] existing = entry.encoded(encoding);
+            if (existing != null) return existing;
+            if (encoding.equals(ContentEncoding.GZIP)) entry.gzipBody = encoded;
+            else entry.deflateBody = encoded;
+            if (entry.cached) {
+                bytes += encoded.length;
+                evict(entry);
+            }
+        }
+        return encoded;
+    }
+
+    // 크기 합이 maxBytes 아래로 내려갈 때까지 가장 오래 쓰지 않은 항목부터 버림 (keep은 남김)
+    private void evict(Entry keep) {
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Entry evicted = eldest.next().getValue();
+            if (evicted == keep) continue;
+            eldest.remove();
+            evicted.cached = false;
+            bytes -= evicted.size();
+        }
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    private void remove(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            old.cached = false;
+            bytes -= old.size();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+import java.util.HashMap;
+import java.util.Map;
+
+// 서버 실행 옵션 (--key=value 인자, 없으면 -Dkey=value 시스템 프로퍼티, 없으면 기본값)
+public class ServerConfig {
+    private final Map<String, String> options = new HashMap<>();
+
+    public ServerConfig(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--")) continue;
+            int eq = arg.indexOf('=');
+            if (eq == -1) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+    }
+
+    public String get(String key, String defaultValue) {
+        String value = options.get(key);
+        if (value == null) value = System.getProperty(key);
+        return value != null ? value : defaultValue;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = get(key, null);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key, null);
+        return value != null ? Boolean.parseBoolean(value.trim()) : defaultValue;
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+// GET /metrics로 내보내는 서버 통계 (Prometheus 텍스트 형식)
+// 경로별 요청 수(상태 코드별)와 처리 시간 히스토그램, 요청/응답 바이트 수를 요청 스레드가 락 없이 LongAdder에 더하고,
+// 연결 수, 저장소 크기, 변경 로그/압축 시간, 캐시 적중 등은 /metrics 요청이 올 때 각 객체에서 읽어온다
+public class ServerMetrics {
+    // 서버 모드에 따라 붙는 통계 (샤드 라우터, 복제 리더/팔로워)
+    interface Source {
+        void appendMetrics(StringBuilder out);
+    }
+
+    // 통계를 나누는 경로 (라우팅과 같은 기준)
+    enum Route {
+        GET_USERS("GET", "/users"),
+        GET_USERS_QUERY("GET", "/users?query"),
+        GET_USERS_EXPORT("GET", "/users/export"),
+        HEAD_USERS("HEAD", "/users"),
+        HEAD_USERS_QUERY("HEAD", "/users?query"),
+        POST_USERS("POST", "/users"),
+        POST_USERS_BULK("POST", "/users/bulk"),
+        PUT_USERS("PUT", "/users"),
+        DELETE_USER("DELETE", "/users/{id}"),
+        GET_METRICS("GET", "/metrics"),
+        OTHER("other", "other");
+
+        // method="GET",route="/users"
+        final String labels;
+
+        Route(String method, String route) {
+            this.labels = "method=\"" + method + "\",route=\"" + route + "\"";
+        }
+    }
+
+    // 서버가 보내는 상태 코드 (그 밖의 코드는 마지막 칸 "other"에 센다)
+    private static final int[] STATUS_CODES = {200, 201, 304, 307, 400, 403, 404, 405, 408, 411, 413, 431, 500, 502, 503};
+    private static final Route[] ROUTES = Route.values();
+
+    // [경로][상태 코드 칸]
+    private final LongAdder[][] requests = new LongAdder[ROUTES.length][STATUS_CODES.length + 1];
+    private final MetricsHistogram[] latencies = new MetricsHistogram[ROUTES.length];
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+
+    public ServerMetrics() {
+        for (int r = 0; r < ROUTES.length; r++) {
+            for (int s = 0; s < requests[r].length; s++) {
+                requests[r][s] = new LongAdder();
+            }
+            latencies[r] = new MetricsHistogram();
+        }
+    }
+
+    static Route routeOf(String method, String path) {
+        boolean users = path.equals("/users");
+        boolean query = path.startsWith("/users?");
+        switch (method) {
+            case "GET":
+                if (users) return Route.GET_USERS;
+                if (query) return Route.GET_USERS_QUERY;
+                if (path.equals("/users/export")) return Route.GET_USERS_EXPORT;
+                return path.equals("/metrics") ? Route.GET_METRICS : Route.OTHER;
+            case "HEAD":
+                if (users) return Route.HEAD_USERS;
+                return query ? Route.HEAD_USERS_QUERY : Route.OTHER;
+            case "POST":
+                if (users) return Route.POST_USERS;
+                return path.equals("/users/bulk") ? Route.POST_USERS_BULK : Route.OTHER;
+            case "PUT":
+                return users ? Route.PUT_USERS : Route.OTHER;
+            case "DELETE":
+                return path.startsWith("/users/") ? Route.DELETE_USER : Route.OTHER;
+            default:
+                return Route.OTHER;
+        }
+    }
+
+    // 처리가 끝난 요청 하나 기록
+    public void record(HttpRequest request, int statusCode, long nanos, long responseBytes) {
+        int route = routeOf(request.method(), request.path()).ordinal();
+        requests[route][statusIndexOf(statusCode)].increment();
+        latencies[route].recordNanos(nanos);
+        bytesIn.add(request.wireLength());
+        bytesOut.add(responseBytes);
+    }
+
+    // Prometheus 텍스트 형식으로 전체 통계 (sources는 켜져 있는 모드의 통계)
+    public String render(ConnectionStats stats, UserStore store, ResponseCache cache, AccessLog accessLog, List<Source> sources) {
+        StringBuilder out = new StringBuilder(16 * 1024);
+
+        type(out, "http_requests_total", "counter", "처리한 요청 수 (경로, 상태 코드별)");
+        for (int r = 0; r < ROUTES.length; r++) {
+            for (int s = 0; s < requests[r].length; s++) {
+                long count = requests[r][s].sum();
+                if (count == 0) continue;
+                String status = s < STATUS_CODES.length ? String.valueOf(STATUS_CODES[s]) : "other";
+                out.append("http_requests_total{").append(ROUTES[r].labels).append(",status=\"").append(status)
+                    .append("\"} ").append(count).append('\n');
+            }
+        }
+
+        type(out, "http_request_duration_seconds", "histogram", "요청 처리 시간 (응답을 버퍼에 다 쓰기까지)");
+        for (int r = 0; r < ROUTES.length; r++) {
+            latencies[r].appendTo(out, "http_request_duration_seconds", ROUTES[r].labels);
+        }
+
+        type(out, "http_request_bytes_total", "counter", "받은 요청 바이트 수 (요청 줄, 헤더, 본문)");
+        out.append("http_request_bytes_total ").append(bytesIn.sum()).append('\n');
+        type(out, "http_response_bytes_total", "counter", "보낸 응답 바이트 수 (헤더, 본문)");
+        out.append("http_response_bytes_total ").append(bytesOut.sum()).append('\n');
+
+        type(out, "http_connections_active", "gauge", "열려 있는 연결 수 (keep-alive 포함)");
+        out.append("http_connections_active ").append(stats.active()).append('\n');
+        type(out, "http_connections_accepted_total", "counter", "수락한 연결 수");
+        out.append("http_connections_accepted_total ").append(stats.accepted()).append('\n');
+        type(out, "http_connections_rejected_total", "counter", "연결 수 제한으로 거절한 연결 수");
+        out.append("http_connections_rejected_total ").append(stats.rejected()).append('\n');
+        type(out, "http_connections_timed_out_total", "counter", "대기/헤더/본문/쓰기 제한 시간이 지나 끊은 연결 수");
+        out.append("http_connections_timed_out_total ").append(stats.timedOut()).append('\n');
+        type(out, "http_requests_rejected_total", "counter", "처리 중인 요청 수 제한으로 503 응답한 요청 수");
+        out.append("http_requests_rejected_total ").append(stats.rejectedRequests()).append('\n');
+
+        type(out, "user_store_users", "gauge", "저장된 사용자 수");
+        out.append("user_store_users ").append(store.size()).append('\n');
+        type(out, "user_store_version", "counter", "저장소 데이터 버전 (변경마다 1 증가)");
+        out.append("user_store_version ").append(store.version()).append('\n');
+        type(out, "user_store_wal_bytes", "gauge", "현재 세대 변경 로그 크기");
+        out.append("user_store_wal_bytes ").append(store.walSize()).append('\n');
+        type(out, "user_store_load_seconds", "gauge", "시작할 때 스냅샷과 변경 로그를 읽는 데 걸린 시간");
+        out.append("user_store_load_seconds ").append(store.loadNanos() / 1e9).append('\n');
+        type(out, "user_store_wal_flush_seconds", "histogram", "변경 로그 배치 하나를 쓰고 fsync하는 데 걸린 시간");
+        store.walFlushTimes().appendTo(out, "user_store_wal_flush_seconds", "");
+        type(out, "user_store_compaction_seconds", "histogram", "스냅샷 압축 한 번에 걸린 시간");
+        store.compactionTimes().appendTo(out, "user_store_compaction_seconds", "");
+
+        type(out, "response_cache_hits_total", "counter", "응답 캐시 적중 수");
+        out.append("response_cache_hits_total ").append(cache.hits()).append('\n');
+        type(out, "response_cache_misses_total", "counter", "응답 캐시 실패 수");
+        out.append("response_cache_misses_total ").append(cache.misses()).append('\n');
+
+        type(out, "access_log_dropped_total", "counter", "링 버퍼가 가득 차서 버린 접근 로그 줄 수");
+        out.append("access_log_dropped_total ").append(accessLog.dropped()).append('\n');
+        type(out, "access_log_written_total", "counter", "접근 로그 파일에 쓴 줄 수");
+        out.append("access_log_written_total ").append(accessLog.written()).append('\n');
+        for (Source source : sources) {
+            source.appendMetrics(out);
+        }
+        return out.toString();
+    }
+
+    private static int statusIndexOf(int statusCode) {
+        for (int i = 0; i < STATUS_CODES.length; i++) {
+            if (STATUS_CODES[i] == statusCode) return i;
+        }
+        return STATUS_CODES.length;
+    }
+
+    private static void type(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+}
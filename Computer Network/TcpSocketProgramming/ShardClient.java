@@ -0,0 +1,239 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// 다른 샤드 하나로 요청을 보내는 클라이언트
+// 지속 연결을 풀에 모아 두고 재사용하며, 풀에서 꺼낸 연결이 그사이 닫혀 있었으면(상대의 대기 제한 시간) 새 연결로 한 번 더 보낸다
+public class ShardClient {
+    private static final int MAX_IDLE_CONNECTIONS = 64;
+
+    final String host;
+    final int port;
+    private final int timeoutMillis;
+    private final BlockingQueue<Connection> idle = new ArrayBlockingQueue<>(MAX_IDLE_CONNECTIONS);
+
+    // 샤드의 응답 (본문을 끝까지 읽으면 연결이 풀로 돌아가고, 다 읽기 전에 close()하면 연결을 버린다)
+    static final class Response implements Closeable {
+        final int statusCode;
+        final String statusText;
+        // "이름: 값" 그대로
+        final List<String> headers;
+        final InputStream body;
+        private final Connection connection;
+
+        private Response(int statusCode, String statusText, List<String> headers, Connection connection, BodyInput body) {
+            this.statusCode = statusCode;
+            this.statusText = statusText;
+            this.headers = headers;
+            this.connection = connection;
+            this.body = body;
+        }
+
+        // 헤더 값 (없으면 null, 이름은 대소문자 구분 없음)
+        String header(String name) {
+            for (String line : headers) {
+                int colon = line.indexOf(':');
+                if (colon == name.length() && line.regionMatches(true, 0, name, 0, colon)) {
+                    return line.substring(colon + 1).trim();
+                }
+            }
+            return null;
+        }
+
+        byte[] readBody() throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            body.transferTo(out);
+            return out.toByteArray();
+        }
+
+        @Override
+        public void close() {
+            if (!((BodyInput) body).done) connection.close();
+        }
+    }
+
+    public ShardClient(String host, int port, int timeoutMillis) {
+        this.host = host;
+        this.port = port;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    // 요청 하나 보내고 응답 헤더까지 읽기 (body는 없으면 null, headers는 "이름: 값")
+    Response send(String method, String path, byte[] body, String... headers) throws IOException {
+        Connection connection = idle.poll();
+        if (connection != null) {
+            try {
+                return exchange(connection, method, path, body, headers);
+            } catch (IOException e) {
+                // 재사용한 연결이 이미 닫혀 있었음
+                connection.close();
+            }
+        }
+        connection = new Connection();
+        try {
+            return exchange(connection, method, path, body, headers);
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private Response exchange(Connection c, String method, String path, byte[] body, String[] headers) throws IOException {
+        StringBuilder head = new StringBuilder(128);
+        head.append(method).append(' ').append(path).append(" HTTP/1.1\r\n");
+        head.append("Host: ").append(host).append(':').append(port).append("\r\n");
+        for (String header : headers) {
+            if (header != null) head.append(header).append("\r\n");
+        }
+        if (body != null) head.append("Content-Length: ").append(body.length).append("\r\n");
+        head.append("\r\n");
+        c.out.write(head.toString().getBytes(StandardCharsets.UTF_8));
+        if (body != null) c.out.write(body);
+        c.out.flush();
+
+        String statusLine = readLine(c.in);
+        if (statusLine == null) throw new EOFException(host + ":" + port + " 샤드가 응답 전에 연결을 닫았습니다.");
+        String[] parts = statusLine.split(" ", 3);
+        if (parts.length < 2) throw new IOException("잘못된 응답 줄: " + statusLine);
+        int statusCode;
+        try {
+            statusCode = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("잘못된 응답 줄: " + statusLine);
+        }
+        List<String> responseHeaders = new ArrayList<>();
+        long length = 0;
+        boolean chunked = false;
+        boolean close = false;
+        String line;
+        while ((line = readLine(c.in)) != null && !line.isEmpty()) {
+            responseHeaders.add(line);
+            String lower = line.toLowerCase();
+            if (lower.startsWith("content-length:")) {
+                length = Long.parseLong(line.substring(line.indexOf(':') + 1).trim());
+            } else if (lower.startsWith("transfer-encoding:") && lower.contains("chunked")) {
+                chunked = true;
+            } else if (lower.startsWith("connection:") && lower.contains("close")) {
+                close = true;
+            }
+        }
+        if (line == null) throw new EOFException(host + ":" + port + " 샤드의 응답 헤더가 끊겼습니다.");
+        // HEAD, 304에는 본문이 없다
+        boolean noBody = method.equals("HEAD") || statusCode == 304 || statusCode == 204;
+        BodyInput input = new BodyInput(c, noBody ? 0 : length, !noBody && chunked, close);
+        return new Response(statusCode, parts.length > 2 ? parts[2] : "", responseHeaders, c, input);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') line.setLength(length - 1);
+                return line.toString();
+            }
+            line.append((char) b);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    // 샤드로 가는 연결 하나
+    private final class Connection {
+        final Socket socket;
+        final InputStream in;
+        final OutputStream out;
+
+        Connection() throws IOException {
+            socket = new Socket();
+            socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+            socket.setTcpNoDelay(true);
+            // 샤드가 멈춰도 요청 스레드가 끝없이 기다리지 않도록
+            socket.setSoTimeout(timeoutMillis);
+            in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+            out = new BufferedOutputStream(socket.getOutputStream(), 16 * 1024);
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // 응답 본문 (Content-Length만큼, 또는 chunked를 풀어서), 끝까지 읽으면 연결을 풀에 돌려준다
+    private final class BodyInput extends InputStream {
+        private final Connection connection;
+        private final boolean chunked;
+        private final boolean closeAfter;
+        // 지금 청크(또는 본문 전체)에서 남은 바이트
+        private long remaining;
+        boolean done;
+
+        BodyInput(Connection connection, long length, boolean chunked, boolean closeAfter) throws IOException {
+            this.connection = connection;
+            this.chunked = chunked;
+            this.closeAfter = closeAfter;
+            this.remaining = chunked ? 0 : length;
+            if (!chunked && length == 0) finish();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (done) return -1;
+            if (len == 0) return 0;
+            if (remaining == 0 && !nextChunk()) return -1;
+            int n = connection.in.read(b, off, (int) Math.min(len, remaining));
+            if (n == -1) throw new EOFException(host + ":" + port + " 샤드의 응답 본문이 끊겼습니다.");
+            remaining -= n;
+            if (remaining == 0) {
+                if (chunked) {
+                    readLine(connection.in);
+                } else {
+                    finish();
+                }
+            }
+            return n;
+        }
+
+        private boolean nextChunk() throws IOException {
+            String line = readLine(connection.in);
+            if (line == null) throw new EOFException(host + ":" + port + " 샤드의 응답 본문이 끊겼습니다.");
+            int semicolon = line.indexOf(';');
+            long size = Long.parseLong((semicolon == -1 ? line : line.substring(0, semicolon)).trim(), 16);
+            if (size == 0) {
+                while ((line = readLine(connection.in)) != null && !line.isEmpty()) {
+                    // trailer는 무시
+                }
+                finish();
+                return false;
+            }
+            remaining = size;
+            return true;
+        }
+
+        private void finish() {
+            done = true;
+            if (closeAfter || !idle.offer(connection)) connection.close();
+        }
+    }
+}
@@ -0,0 +1,519 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+// 샤드 모드 (--shards=host:port,host:port,...): 서버 여러 개가 사용자를 id의 일관된 해시로 나눠 저장한다
+// id가 정해지는 요청(POST/PUT 본문의 id, DELETE /users/{id}, GET/HEAD /users?id=...)은 주인 샤드가 처리하고,
+// 다른 샤드에 온 요청은 주인에게 대신 보내 응답을 그대로 돌려주거나(--shardRouting=forward) 307로 주인 주소를 알려준다(redirect)
+// id를 모르는 조회(GET/HEAD /users, /users?조건, /users/export)는 모든 샤드에 동시에 묻고 결과를 합쳐 응답한다
+// 샤드끼리 보내는 요청에는 X-Shard-Local 헤더를 붙이고, 받은 샤드는 다시 전달하지 않고 자기 데이터로만 응답한다
+public class ShardRouter implements ServerMetrics.Source {
+    private static final String LOCAL_HEADER = "X-Shard-Local: 1";
+    // 샤드의 응답에서 클라이언트에게 그대로 넘기는 헤더
+    private static final String[] RELAYED_HEADERS = {
+        "ETag", "Last-Modified", "Content-Encoding", "Vary", "X-Next-Cursor", "Retry-After"
+    };
+
+    // 샤드 주소 (host:port)와 이 서버의 번호
+    final String[] addresses;
+    final int self;
+    private final boolean redirect;
+    private final ConsistentHashRing ring;
+    // 다른 샤드로 가는 클라이언트 (self 칸은 null)
+    private final ShardClient[] peers;
+    // 여러 샤드에 동시에 물을 때 쓰는 스레드 (응답을 기다리는 동안 막히기만 하므로 필요한 만큼 만든다)
+    private final ExecutorService fanout = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "shard-fanout");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LongAdder forwarded = new LongAdder();
+    private final LongAdder redirected = new LongAdder();
+    private final LongAdder scattered = new LongAdder();
+    private final LongAdder peerErrors = new LongAdder();
+
+    ShardRouter(String[] addresses, int self, boolean redirect, int vnodes, int timeoutMillis) {
+        this.addresses = addresses;
+        this.self = self;
+        this.redirect = redirect;
+        this.ring = new ConsistentHashRing(addresses, vnodes);
+        this.peers = new ShardClient[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            if (i == self) continue;
+            int colon = addresses[i].lastIndexOf(':');
+            peers[i] = new ShardClient(addresses[i].substring(0, colon), Integer.parseInt(addresses[i].substring(colon + 1)),
+                timeoutMillis);
+        }
+    }
+
+    // --shards가 없으면 null (샤드 모드 아님)
+    // --shardIndex가 없으면 --shards에서 포트가 같은 항목, --shardRouting=forward|redirect, --vnodes, --shardTimeout (초)
+    static ShardRouter fromConfig(ServerConfig config, int port) {
+        String shards = config.get("shards", null);
+        if (shards == null || shards.isBlank()) return null;
+        String[] addresses = shards.split(",");
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = addresses[i].trim();
+            if (addresses[i].lastIndexOf(':') <= 0) throw new IllegalArgumentException("샤드 주소는 host:port 형식이어야 합니다: " + addresses[i]);
+        }
+        int self = config.getInt("shardIndex", -1);
+        if (self < 0) {
+            for (int i = 0; i < addresses.length; i++) {
+                if (addresses[i].endsWith(":" + port)) self = i;
+            }
+        }
+        if (self < 0 || self >= addresses.length) {
+            throw new IllegalArgumentException("--shards에서 이 서버의 위치를 찾을 수 없습니다. --shardIndex를 지정해 주세요.");
+        }
+        return new ShardRouter(addresses, self, config.get("shardRouting", "forward").equals("redirect"),
+            config.getInt("vnodes", 128), config.getInt("shardTimeout", 10) * 1000);
+    }
+
+    int ownerOf(String id) {
+        return ring.ownerOf(id);
+    }
+
+    // 요청을 다른 샤드의 도움으로 처리했으면 true (false면 이 서버가 평소처럼 처리)
+    boolean route(HttpRequest request, HttpResponseWriter writer) {
+        if (request.header(HttpRequest.SHARD_LOCAL) != null) return false;
+        String method = request.method();
+        String path = request.path();
+        switch (method) {
+            case "POST":
+            case "PUT":
+                if (!path.equals("/users")) return false;
+                // 본문이 잘못됐거나 id가 없으면 여기서 400
+                return routeById(request, writer, HttpServer.extractValueFromJson(request.bodyAsString(), "id"));
+            case "DELETE":
+                return path.startsWith("/users/") && routeById(request, writer, path.substring("/users/".length()));
+            case "GET":
+            case "HEAD":
+                boolean head = method.equals("HEAD");
+                if (path.equals("/users")) {
+                    scatter(request, writer, UserQuery.ALL, null, head);
+                    return true;
+                }
+                if (path.equals("/users/export") && !head) {
+                    export(request, writer);
+                    return true;
+                }
+                if (!path.startsWith("/users?")) return false;
+                String rawQuery = path.substring(path.indexOf('?') + 1);
+                UserQuery query;
+                try {
+                    query = UserQuery.parse(rawQuery);
+                } catch (IllegalArgumentException e) {
+                    return false;
+                }
+                String id = query.exactId();
+                if (id != null) return routeById(request, writer, id);
+                scatter(request, writer, query, rawQuery, head);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean routeById(HttpRequest request, HttpResponseWriter writer, String id) {
+        if (id == null || id.isEmpty()) return false;
+        int owner = ring.ownerOf(id);
+        if (owner == self) return false;
+        if (redirect) {
+            redirected.increment();
+            HttpServer.sendHttpResponse(writer, 307, "Temporary Redirect", "샤드 " + owner + "가 맡은 사용자입니다.",
+                "Location: http://" + addresses[owner] + request.path());
+            return true;
+        }
+        forwarded.increment();
+        forward(owner, request, writer);
+        return true;
+    }
+
+    // 요청을 주인 샤드에 그대로 보내고 응답(상태, 캐시/인코딩 헤더, 본문)을 돌려준다
+    private void forward(int owner, HttpRequest request, HttpResponseWriter writer) {
+        boolean hasBody = request.method().equals("POST") || request.method().equals("PUT");
+        try (ShardClient.Response response = peers[owner].send(request.method(), request.path(), hasBody ? request.body() : null,
+                LOCAL_HEADER, headerLine("Accept-Encoding", request.header(HttpRequest.ACCEPT_ENCODING)),
+                headerLine("If-None-Match", request.header(HttpRequest.IF_NONE_MATCH)),
+                headerLine("If-Modified-Since", request.header(HttpRequest.IF_MODIFIED_SINCE)))) {
+            byte[] body = response.readBody();
+            writer.status(response.statusCode, response.statusText);
+            relayHeaders(response, writer);
+            if (request.method().equals("HEAD")) {
+                String length = response.header("Content-Length");
+                if (length != null) {
+                    writer.contentLength(Long.parseLong(length));
+                } else {
+                    writer.chunked();
+                }
+            } else if (response.statusCode != 304) {
+                writer.contentLength(body.length);
+            }
+            writer.endHeaders();
+            if (body.length > 0) writer.write(body);
+        } catch (IOException e) {
+            peerUnavailable(writer, owner, e);
+        }
+    }
+
+    // 조건에 맞는 사용자를 모든 샤드에서 모아 응답
+    // 페이지가 아니면 이 서버의 결과 뒤에 각 샤드의 응답 본문을 그대로 이어서 chunked로 흘려보내고,
+    // 페이지 조회는 샤드마다 cursor 다음부터 offset+limit개까지 받아 id 순서로 합친 뒤 offset을 건너뛰고 limit개를 보낸다
+    // (전체의 앞쪽 N개는 반드시 어느 한 샤드의 앞쪽 N개 안에 있으므로 샤드마다 N개씩이면 충분하다)
+    private void scatter(HttpRequest request, HttpResponseWriter writer, UserQuery query, String rawQuery, boolean head) {
+        scattered.increment();
+        if (query.paged()) {
+            int wanted = query.offset + (query.limit < 0 ? UserQuery.MAX_LIMIT : query.limit);
+            if (wanted > UserQuery.MAX_LIMIT) {
+                HttpServer.sendHttpResponse(writer, 400, "Bad Request",
+                    "샤드 모드에서는 offset+limit이 " + UserQuery.MAX_LIMIT + " 이하여야 합니다. 다음 페이지는 cursor로 조회해 주세요.");
+                return;
+            }
+            scatterPage(request, writer, query, pageQuery(rawQuery, query, wanted), wanted, head);
+            return;
+        }
+
+        List<Future<ShardClient.Response>> pending = sendAll(head ? "HEAD" : "GET", request.path());
+        List<ShardClient.Response> responses = new ArrayList<>();
+        try {
+            int failedShard = collect(pending, responses);
+            if (failedShard >= 0) {
+                closeAll(responses);
+                peerUnavailable(writer, failedShard, null);
+                return;
+            }
+            Iterator<User> local = HttpServer.store.exists() ? HttpServer.store.query(query).iterator() : null;
+            boolean found = local != null && local.hasNext();
+            for (ShardClient.Response response : responses) {
+                found |= response.statusCode == 200;
+            }
+            // 조건이 있는데 어느 샤드에도 없으면 404 (한 서버일 때와 같은 응답)
+            if (!found && !query.conditions.isEmpty()) {
+                closeAll(responses);
+                HttpServer.sendHttpResponse(writer, 404, "Not Found", "일치하는 사용자를 찾을 수 없습니다.");
+                return;
+            }
+            String encoding = HttpServer.encodingFor(request, Long.MAX_VALUE);
+            HttpServer.sendChunkedHeaders(writer, 200, "OK", encodingHeaders(encoding));
+            if (head) {
+                closeAll(responses);
+                return;
+            }
+            ChunkedWriter chunked = new ChunkedWriter(writer, encoding);
+            while (local != null && local.hasNext()) {
+                chunked.writeLine(local.next(), query.fields);
+            }
+            byte[] buffer = new byte[16 * 1024];
+            for (ShardClient.Response response : responses) {
+                if (response.statusCode != 200) continue;
+                relayBody(response, chunked, buffer);
+            }
+            chunked.finish();
+        } finally {
+            closeAll(responses);
+        }
+    }
+
+    private void scatterPage(HttpRequest request, HttpResponseWriter writer, UserQuery query, String subQuery, int wanted,
+                             boolean head) {
+        List<Future<ShardClient.Response>> pending = sendAll("GET", "/users?" + subQuery);
+        List<ShardClient.Response> responses = new ArrayList<>();
+        List<User> merged = new ArrayList<>();
+        boolean more = false;
+        try {
+            // 이 서버 몫 (다른 샤드와 같은 쿼리)
+            if (HttpServer.store.exists()) {
+                Iterator<User> local = HttpServer.store.query(UserQuery.parse(subQuery)).iterator();
+                for (int i = 0; i < wanted && local.hasNext(); i++) {
+                    merged.add(local.next());
+                }
+                more = local.hasNext();
+            }
+            int failedShard = collect(pending, responses);
+            if (failedShard >= 0) {
+                peerUnavailable(writer, failedShard, null);
+                return;
+            }
+            for (ShardClient.Response response : responses) {
+                if (response.statusCode != 200) {
+                    response.readBody();
+                    continue;
+                }
+                more |= response.header("X-Next-Cursor") != null;
+                for (String line : new String(response.readBody(), StandardCharsets.UTF_8).split("\n")) {
+                    if (!line.isEmpty()) merged.add(User.parse(line));
+                }
+            }
+        } catch (IOException | JsonTokenizer.JsonException e) {
+            peerUnavailable(writer, -1, e);
+            return;
+        } finally {
+            closeAll(responses);
+        }
+
+        merged.sort((a, b) -> a.id().compareTo(b.id()));
+        int end = Math.min(merged.size(), wanted);
+        more |= merged.size() > wanted;
+        StringBuilder body = new StringBuilder();
+        for (int i = Math.min(query.offset, end); i < end; i++) {
+            merged.get(i).appendJson(body, query.fields);
+            body.append('\n');
+        }
+        List<String> headers = new ArrayList<>();
+        if (more && end > query.offset) headers.add("X-Next-Cursor: " + UserQuery.encodeCursor(merged.get(end - 1).id()));
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        String encoding = HttpServer.encodingFor(request, bytes.length);
+        if (encoding != null) {
+            bytes = ContentEncoding.compress(bytes, encoding);
+            headers.add("Content-Encoding: " + encoding);
+        }
+        writer.status(200, "OK");
+        for (String header : headers) {
+            writer.header(header);
+        }
+        if (HttpServer.compress) writer.header(HttpServer.VARY_ACCEPT_ENCODING);
+        writer.contentLength(bytes.length);
+        writer.endHeaders();
+        if (!head) writer.write(bytes);
+    }
+
+    // GET /users/export: 샤드마다 한 시점의 목록을 이어 붙인다 (X-Snapshot-Version은 "샤드=버전" 목록)
+    // 샤드끼리 같은 시점은 아니다 (샤드 하나 안에서만 일관됨)
+    private void export(HttpRequest request, HttpResponseWriter writer) {
+        scattered.increment();
+        List<Future<ShardClient.Response>> pending = sendAll("GET", "/users/export");
+        UserStore.Snapshot snapshot = HttpServer.store.consistentSnapshot();
+        List<ShardClient.Response> responses = new ArrayList<>();
+        try {
+            int failedShard = collect(pending, responses);
+            if (failedShard >= 0) {
+                peerUnavailable(writer, failedShard, null);
+                return;
+            }
+            StringBuilder versions = new StringBuilder("X-Snapshot-Version: ");
+            int next = 0;
+            for (int shard = 0; shard < addresses.length; shard++) {
+                if (shard > 0) versions.append(',');
+                versions.append(shard).append('=');
+                versions.append(shard == self ? String.valueOf(snapshot.version) : responses.get(next++).header("X-Snapshot-Version"));
+            }
+            String encoding = HttpServer.encodingFor(request, Long.MAX_VALUE);
+            String[] encodingHeaders = encodingHeaders(encoding);
+            String[] headers = new String[encodingHeaders.length + 1];
+            headers[0] = versions.toString();
+            System.arraycopy(encodingHeaders, 0, headers, 1, encodingHeaders.length);
+            HttpServer.sendChunkedHeaders(writer, 200, "OK", headers);
+            ChunkedWriter chunked = new ChunkedWriter(writer, encoding);
+            for (User user : snapshot.users) {
+                chunked.writeLine(user);
+            }
+            byte[] buffer = new byte[16 * 1024];
+            for (ShardClient.Response response : responses) {
+                relayBody(response, chunked, buffer);
+            }
+            chunked.finish();
+        } finally {
+            closeAll(responses);
+        }
+    }
+
+    // 다른 샤드 전부에 같은 요청을 동시에 보냄 (샤드 번호 순서)
+    private List<Future<ShardClient.Response>> sendAll(String method, String path) {
+        List<Future<ShardClient.Response>> pending = new ArrayList<>();
+        for (ShardClient peer : peers) {
+            if (peer != null) pending.add(fanout.submit(() -> peer.send(method, path, null, LOCAL_HEADER)));
+        }
+        return pending;
+    }
+
+    // 응답 헤더를 모두 받음 (실패한 샤드가 있으면 그 번호, 없으면 -1)
+    private int collect(List<Future<ShardClient.Response>> pending, List<ShardClient.Response> responses) {
+        int failed = -1;
+        for (int i = 0; i < pending.size(); i++) {
+            try {
+                ShardClient.Response response = pending.get(i).get();
+                responses.add(response);
+                if (response.statusCode >= 500 && failed < 0) failed = shardOf(i);
+            } catch (ExecutionException e) {
+                if (failed < 0) failed = shardOf(i);
+                HttpServer.accessLog.error("샤드 " + shardOf(i) + " 요청 실패", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (failed < 0) failed = shardOf(i);
+            }
+        }
+        return failed;
+    }
+
+    // sendAll의 i번째 요청을 받은 샤드 번호
+    private int shardOf(int i) {
+        return i < self ? i : i + 1;
+    }
+
+    // 샤드 응답 본문을 이어 보냄 (헤더를 이미 보냈으므로 도중에 끊기면 연결 쪽 오류로 넘김)
+    private static void relayBody(ShardClient.Response response, ChunkedWriter chunked, byte[] buffer) {
+        try {
+            InputStream body = response.body;
+            int n;
+            while ((n = body.read(buffer)) != -1) {
+                chunked.write(buffer, 0, n);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 다른 샤드의 데이터를 보내는 부분 쿼리 (limit/offset/fields/cursor를 빼고 limit=wanted, fields에는 합칠 때 쓸 id를 넣음)
+    // cursor는 받은 문자열 대신 디코딩한 id를 다시 인코딩해서 붙인다
+    private static String pageQuery(String rawQuery, UserQuery query, int wanted) {
+        StringBuilder out = new StringBuilder();
+        for (String term : rawQuery.split("&")) {
+            if (term.isEmpty()) continue;
+            int at = 0;
+            while (at < term.length() && "=!<>".indexOf(term.charAt(at)) == -1) at++;
+            String key = term.substring(0, at).trim();
+            if (key.equals("limit") || key.equals("offset") || key.equals("fields") || key.equals("cursor")) continue;
+            out.append(term).append('&');
+        }
+        if (query.cursor != null) out.append("cursor=").append(UserQuery.encodeCursor(query.cursor)).append('&');
+        out.append("limit=").append(wanted);
+        if (query.fields != null) {
+            out.append("&fields=id");
+            for (String field : query.fields) {
+                if (!field.equals("id")) out.append(',').append(field);
+            }
+        }
+        return out.toString();
+    }
+
+    private static String[] encodingHeaders(String encoding) {
+        if (encoding != null) return new String[] {HttpServer.VARY_ACCEPT_ENCODING, "Content-Encoding: " + encoding};
+        return HttpServer.compress ? new String[] {HttpServer.VARY_ACCEPT_ENCODING} : new String[0];
+    }
+
+    private static void relayHeaders(ShardClient.Response response, HttpResponseWriter writer) {
+        for (String name : RELAYED_HEADERS) {
+            String value = response.header(name);
+            if (value != null) writer.header(name + ": " + value);
+        }
+    }
+
+    private static String headerLine(String name, String value) {
+        return value == null ? null : name + ": " + value;
+    }
+
+    private static void closeAll(List<ShardClient.Response> responses) {
+        for (ShardClient.Response response : responses) {
+            response.close();
+        }
+    }
+
+    // 샤드에 연결할 수 없거나 샤드가 5xx로 응답함 (shard가 -1이면 어느 샤드인지 모름)
+    private void peerUnavailable(HttpResponseWriter writer, int shard, Exception cause) {
+        peerErrors.increment();
+        if (cause != null) HttpServer.accessLog.error("샤드 " + (shard < 0 ? "" : shard + " ") + "요청 실패", cause);
+        String where = shard < 0 ? "다른 샤드" : "샤드 " + shard + "(" + addresses[shard] + ")";
+        HttpServer.sendHttpResponse(writer, 502, "Bad Gateway", where + "에서 응답을 받지 못했습니다.");
+    }
+
+    // POST /users/bulk를 샤드별로 나눔: 다른 샤드가 맡은 줄은 샤드마다 batchSize줄씩 모아 그 샤드의 /users/bulk로 보낸다
+    BulkForwarder bulkForwarder(int batchSize) {
+        return new BulkForwarder(batchSize);
+    }
+
+    final class BulkForwarder {
+        private final int batchSize;
+        private final StringBuilder[] lines = new StringBuilder[addresses.length];
+        private final long[][] lineNumbers = new long[addresses.length][];
+        private final int[] counts = new int[addresses.length];
+        long inserted;
+        long failed;
+        long batches;
+        // 보내지 못한 줄 번호와 이유 (응답에 적을 것)
+        final List<Long> failedLines = new ArrayList<>();
+        final List<String> failedReasons = new ArrayList<>();
+
+        private BulkForwarder(int batchSize) {
+            this.batchSize = batchSize;
+            for (int i = 0; i < addresses.length; i++) {
+                if (i == self) continue;
+                lines[i] = new StringBuilder();
+                lineNumbers[i] = new long[batchSize];
+            }
+        }
+
+        // 다른 샤드가 맡은 id면 그 샤드 몫으로 넘기고 true (이 서버가 맡으면 false)
+        boolean forward(String id, String line, long lineNumber) {
+            int owner = ring.ownerOf(id);
+            if (owner == self) return false;
+            lines[owner].append(line).append('\n');
+            lineNumbers[owner][counts[owner]++] = lineNumber;
+            if (counts[owner] == batchSize) send(owner);
+            return true;
+        }
+
+        // 남은 줄을 모두 보냄
+        void finish() {
+            for (int i = 0; i < addresses.length; i++) {
+                if (i != self && counts[i] > 0) send(i);
+            }
+        }
+
+        private void send(int shard) {
+            byte[] body = lines[shard].toString().getBytes(StandardCharsets.UTF_8);
+            int count = counts[shard];
+            lines[shard].setLength(0);
+            counts[shard] = 0;
+            batches++;
+            forwarded.increment();
+            String reason;
+            try (ShardClient.Response response = peers[shard].send("POST", HttpRequestParser.STREAMING_PATH, body, LOCAL_HEADER)) {
+                String summary = new String(response.readBody(), StandardCharsets.UTF_8);
+                if (response.statusCode == 200) {
+                    // 마지막 줄이 요약 {"received":..,"inserted":..,"failed":..}
+                    String last = summary.substring(summary.lastIndexOf('\n', summary.length() - 2) + 1);
+                    long ok = Long.parseLong(HttpServer.extractValueFromJson(last, "inserted"));
+                    inserted += ok;
+                    failed += count - ok;
+                    if (ok < count) {
+                        failedLines.add(lineNumbers[shard][0]);
+                        failedReasons.add("샤드 " + shard + "에 보낸 " + count + "줄 중 " + (count - ok) + "줄을 저장하지 못했습니다.");
+                    }
+                    return;
+                }
+                reason = "샤드 " + shard + " 응답 " + response.statusCode;
+            } catch (IOException | RuntimeException e) {
+                peerErrors.increment();
+                HttpServer.accessLog.error("샤드 " + shard + " 일괄 추가 실패", e);
+                reason = "샤드 " + shard + "(" + addresses[shard] + ")에 저장하지 못했습니다.";
+            }
+            failed += count;
+            for (int i = 0; i < count; i++) {
+                failedLines.add(lineNumbers[shard][i]);
+                failedReasons.add(reason);
+            }
+        }
+    }
+
+    // /metrics에 붙일 샤드 통계
+    @Override
+    public void appendMetrics(StringBuilder out) {
+        out.append("# HELP shard_info 이 서버의 샤드 번호와 전체 샤드 수\n# TYPE shard_info gauge\n");
+        out.append("shard_info{shard=\"").append(self).append("\",shards=\"").append(addresses.length).append("\"} 1\n");
+        out.append("# HELP shard_requests_total 다른 샤드로 보내거나 모아서 처리한 요청 수\n# TYPE shard_requests_total counter\n");
+        out.append("shard_requests_total{kind=\"forward\"} ").append(forwarded.sum()).append('\n');
+        out.append("shard_requests_total{kind=\"redirect\"} ").append(redirected.sum()).append('\n');
+        out.append("shard_requests_total{kind=\"scatter\"} ").append(scattered.sum()).append('\n');
+        out.append("# HELP shard_peer_errors_total 다른 샤드와 통신하지 못한 횟수\n# TYPE shard_peer_errors_total counter\n");
+        out.append("shard_peer_errors_total ").append(peerErrors.sum()).append('\n');
+    }
+}
@@ -0,0 +1,165 @@
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// 해시 타이밍 휠: 연결마다 타이머를 두지 않고 스레드 하나가 tick 간격으로 칸을 돌며 만료된 작업을 실행한다
+// 예약과 취소는 큐에 넣기만 하므로 O(1)이고, 칸에 옮기거나 빼는 일은 휠 스레드만 한다 (칸은 락 없이 사용)
+// 한 바퀴(tick × 칸 수)보다 먼 작업은 남은 바퀴 수를 적어 두고 칸을 지날 때마다 하나씩 줄인다
+// 작업은 휠 스레드에서 실행되므로 소켓 닫기, 다른 스레드로 넘기기처럼 금방 끝나는 일만 해야 한다
+public class TimingWheel {
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+    // tick 한 번에 칸으로 옮기는 최대 예약 수 (예약이 몰려도 만료 처리가 밀리지 않도록)
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    // 예약된 작업 하나
+    public static final class Timeout {
+        private final TimingWheel wheel;
+        private final Runnable task;
+        private final long deadlineNanos;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        // 휠 스레드만 사용
+        private long rounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(TimingWheel wheel, Runnable task, long deadlineNanos) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        // 아직 실행되지 않았으면 취소하고 true
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) return false;
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+    }
+
+    // 칸 하나 (이중 연결 리스트)
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+    }
+
+    private final long tickNanos;
+    private final Bucket[] buckets;
+    private final int mask;
+    private final long startNanos;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    // 지금까지 처리한 tick 수 (휠 스레드만 사용)
+    private long tick;
+
+    // slots는 2의 거듭제곱으로 올림
+    public TimingWheel(long tickMillis, int slots, String threadName) {
+        this.tickNanos = Math.max(1, tickMillis) * 1_000_000;
+        int size = Integer.highestOneBit(Math.max(2, slots) - 1) << 1;
+        this.buckets = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.startNanos = System.nanoTime();
+        Thread thread = new Thread(this::run, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // delayMillis 뒤에 task 실행 (tick 단위로 늦게 실행될 수는 있어도 일찍 실행되지는 않음)
+    public Timeout schedule(Runnable task, long delayMillis) {
+        Timeout timeout = new Timeout(this, task, System.nanoTime() + Math.max(0, delayMillis) * 1_000_000);
+        added.add(timeout);
+        return timeout;
+    }
+
+    private void run() {
+        while (true) {
+            // tick 번째 칸이 덮는 시간이 다 지날 때까지 대기
+            long wakeAt = startNanos + (tick + 1) * tickNanos;
+            long now;
+            while ((now = System.nanoTime()) < wakeAt) {
+                LockSupport.parkNanos(wakeAt - now);
+            }
+            removeCancelled();
+            transferAdded();
+            expire(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) timeout.bucket.remove(timeout);
+        }
+    }
+
+    // 새 예약을 만료 시각의 칸으로 (이미 지난 시각이면 지금 칸)
+    private void transferAdded() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = added.poll();
+            if (timeout == null) return;
+            if (timeout.state.get() != PENDING) continue;
+            long ticks = Math.max(tick, (timeout.deadlineNanos - startNanos) / tickNanos);
+            timeout.rounds = (ticks - tick) / buckets.length;
+            buckets[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Bucket bucket) {
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.rounds <= 0) {
+                bucket.remove(timeout);
+                if (timeout.state.compareAndSet(PENDING, EXPIRED)) {
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException e) {
+                        HttpServer.accessLog.error("타임아웃 작업 실행 중 오류", e);
+                    }
+                }
+            } else {
+                timeout.rounds--;
+            }
+            timeout = next;
+        }
+    }
+}
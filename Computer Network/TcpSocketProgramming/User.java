@@ -0,0 +1,179 @@
+// 파싱된 사용자 정보 (요청을 받을 때 한 번 파싱해서 이 형태로 저장하고, 응답/스냅샷을 쓸 때만 JSON으로 만든다)
+// 알려진 필드(id, name, address, tel, age)는 필드로, 그 밖의 필드는 extras에 이름/값 쌍으로 둔다
+// 값은 문자열로 보관하며 숫자나 true/false도 글자 그대로 문자열로 다룬다 (null 값은 필드가 없는 것으로 본다)
+public final class User {
+    private static final String[] NO_EXTRAS = new String[0];
+
+    private final String id;
+    private final String name;
+    private final String address;
+    private final String tel;
+    private final String age;
+    private final String[] extras;
+
+    User(String id, String name, String address, String tel, String age, String[] extras) {
+        this.id = id;
+        this.name = name;
+        this.address = address;
+        this.tel = tel;
+        this.age = age;
+        this.extras = extras;
+    }
+
+    // 한 줄짜리 JSON 객체를 User로 (객체가 아니거나 값에 객체/배열이 있으면 JsonTokenizer.JsonException)
+    public static User parse(String json) {
+        JsonTokenizer tokenizer = new JsonTokenizer(json);
+        if (tokenizer.next() != JsonTokenizer.Token.BEGIN_OBJECT) throw tokenizer.error("JSON 객체가 아닙니다.");
+
+        String id = null, name = null, address = null, tel = null, age = null;
+        String[] extras = NO_EXTRAS;
+        int extraCount = 0;
+        while (true) {
+            JsonTokenizer.Token token = tokenizer.next();
+            if (token == JsonTokenizer.Token.END_OBJECT) break;
+            if (token != JsonTokenizer.Token.NAME) throw tokenizer.error("필드 이름이 와야 합니다.");
+
+            // 이름은 원문에서 바로 비교하고, 알려지지 않은 필드만 이름 문자열을 만든다
+            int field = tokenizer.nameEquals("id") ? 0 : tokenizer.nameEquals("name") ? 1 : tokenizer.nameEquals("address") ? 2
+                : tokenizer.nameEquals("tel") ? 3 : tokenizer.nameEquals("age") ? 4 : -1;
+            String extraName = field == -1 ? tokenizer.value() : null;
+
+            JsonTokenizer.Token valueToken = tokenizer.next();
+            if (valueToken == JsonTokenizer.Token.BEGIN_OBJECT || valueToken == JsonTokenizer.Token.BEGIN_ARRAY) {
+                throw tokenizer.error("필드 값으로 객체나 배열은 지원하지 않습니다.");
+            }
+            if (valueToken == JsonTokenizer.Token.END_OBJECT || valueToken == JsonTokenizer.Token.END_ARRAY
+                    || valueToken == JsonTokenizer.Token.NAME || valueToken == JsonTokenizer.Token.END_DOCUMENT) {
+                throw tokenizer.error("필드 값이 없습니다.");
+            }
+            String value = valueToken == JsonTokenizer.Token.NULL ? null : tokenizer.value();
+
+            switch (field) {
+                case 0: id = value; break;
+                case 1: name = value; break;
+                case 2: address = value; break;
+                case 3: tel = value; break;
+                case 4: age = value; break;
+                default:
+                    if (value == null) break;
+                    if (extraCount + 2 > extras.length) {
+                        String[] grown = new String[Math.max(4, extras.length * 2)];
+                        System.arraycopy(extras, 0, grown, 0, extraCount);
+                        extras = grown;
+                    }
+                    extras[extraCount++] = extraName;
+                    extras[extraCount++] = value;
+                    break;
+            }
+        }
+        if (tokenizer.next() != JsonTokenizer.Token.END_DOCUMENT) throw tokenizer.error("JSON 객체 뒤에 내용이 더 있습니다.");
+        if (extraCount != extras.length) {
+            String[] trimmed = new String[extraCount];
+            System.arraycopy(extras, 0, trimmed, 0, extraCount);
+            extras = trimmed;
+        }
+        return new User(id, name, address, tel, age, extras);
+    }
+
+    public String id() {
+        return id;
+    }
+
+    // 필드 이름으로 값 찾기 (없으면 null)
+    public String field(String key) {
+        switch (key) {
+            case "id": return id;
+            case "name": return name;
+            case "address": return address;
+            case "tel": return tel;
+            case "age": return age;
+            default:
+                for (int i = 0; i < extras.length; i += 2) {
+                    if (extras[i].equals(key)) return extras[i + 1];
+                }
+                return null;
+        }
+    }
+
+    // 알려진 필드 밖의 필드 (저장 형식을 쓸 때 사용)
+    int extraCount() {
+        return extras.length / 2;
+    }
+
+    String extraName(int i) {
+        return extras[i * 2];
+    }
+
+    String extraValue(int i) {
+        return extras[i * 2 + 1];
+    }
+
+    public String toJson() {
+        StringBuilder out = new StringBuilder(96);
+        appendJson(out);
+        return out.toString();
+    }
+
+    // {"id":"...","name":"...",...} 한 줄 (값이 없는 필드는 생략)
+    public void appendJson(StringBuilder out) {
+        out.append('{');
+        boolean first = appendField(out, "id", id, true);
+        first = appendField(out, "name", name, first);
+        first = appendField(out, "address", address, first);
+        first = appendField(out, "tel", tel, first);
+        first = appendField(out, "age", age, first);
+        for (int i = 0; i < extras.length; i += 2) {
+            first = appendField(out, extras[i], extras[i + 1], first);
+        }
+        out.append('}');
+    }
+
+    // fields에 있는 필드만 요청 순서대로 (fields가 null이면 전부)
+    public void appendJson(StringBuilder out, String[] fields) {
+        if (fields == null) {
+            appendJson(out);
+            return;
+        }
+        out.append('{');
+        boolean first = true;
+        for (String field : fields) {
+            first = appendField(out, field, field(field), first);
+        }
+        out.append('}');
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+
+    private static boolean appendField(StringBuilder out, String key, String value, boolean first) {
+        if (value == null) return first;
+        if (!first) out.append(',');
+        appendString(out, key);
+        out.append(':');
+        appendString(out, value);
+        return false;
+    }
+
+    static void appendString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,183 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+// GET /users 쿼리 문자열 (ex) name=kim&age>=20&age<30&fields=id,name&limit=100&cursor=dTEyMw)
+// 조건은 모두 AND로 묶고, 연산자는 = != > >= < <= (크기 비교는 양쪽 값을 숫자로 바꿔서 비교)
+// limit/cursor/offset 중 하나라도 있으면 결과를 id 순서로 정렬해 페이지로 나눈다 (cursor는 이전 페이지 응답의 X-Next-Cursor 값)
+// fields가 있으면 그 필드만 골라서 응답한다
+public class UserQuery {
+    enum Op { EQ, NE, GT, GE, LT, LE }
+
+    // 한 페이지에 담을 수 있는 최대 사용자 수
+    static final int MAX_LIMIT = 10000;
+    // 조건 없이 전체 사용자
+    static final UserQuery ALL = new UserQuery(Collections.emptyList(), -1, 0, null, null);
+
+    // 필드 하나에 대한 조건
+    static final class Condition {
+        final String field;
+        final Op op;
+        final String value;
+        // 크기 비교일 때 value를 숫자로 바꾼 값
+        final double number;
+
+        Condition(String field, Op op, String value) {
+            this.field = field;
+            this.op = op;
+            this.value = value;
+            this.number = op == Op.EQ || op == Op.NE ? Double.NaN : toNumber(value);
+        }
+
+        boolean isRange() {
+            return op == Op.GT || op == Op.GE || op == Op.LT || op == Op.LE;
+        }
+
+        boolean matches(User user) {
+            String actual = user.field(field);
+            switch (op) {
+                case EQ: return value.equals(actual);
+                case NE: return !value.equals(actual);
+                default:
+                    if (actual == null) return false;
+                    double n = toNumber(actual);
+                    if (Double.isNaN(n)) return false;
+                    switch (op) {
+                        case GT: return n > number;
+                        case GE: return n >= number;
+                        case LT: return n < number;
+                        default: return n <= number;
+                    }
+            }
+        }
+    }
+
+    final List<Condition> conditions;
+    // 페이지 크기 (-1이면 제한 없음)
+    final int limit;
+    final int offset;
+    final String cursor;
+    // 응답에 넣을 필드 (null이면 전부)
+    final String[] fields;
+
+    private UserQuery(List<Condition> conditions, int limit, int offset, String cursor, String[] fields) {
+        this.conditions = conditions;
+        this.limit = limit;
+        this.offset = offset;
+        this.cursor = cursor;
+        this.fields = fields;
+    }
+
+    // "?" 뒤의 쿼리 문자열 파싱 (잘못되면 응답에 그대로 쓸 메시지로 IllegalArgumentException)
+    static UserQuery parse(String query) {
+        if (query.trim().isEmpty()) throw new IllegalArgumentException("쿼리 파라미터가 없습니다.");
+
+        List<Condition> conditions = new ArrayList<>();
+        int limit = -1;
+        int offset = 0;
+        String cursor = null;
+        String[] fields = null;
+        for (String term : query.split("&")) {
+            if (term.isEmpty()) continue;
+            // 연산자는 처음 나오는 = ! < > 부터
+            int at = 0;
+            while (at < term.length() && "=!<>".indexOf(term.charAt(at)) == -1) at++;
+            if (at == term.length()) throw new IllegalArgumentException("잘못된 쿼리 파라미터입니다.");
+            String key = term.substring(0, at).trim();
+            Op op;
+            int valueStart;
+            if (term.startsWith(">=", at)) { op = Op.GE; valueStart = at + 2; }
+            else if (term.startsWith("<=", at)) { op = Op.LE; valueStart = at + 2; }
+            else if (term.startsWith("!=", at)) { op = Op.NE; valueStart = at + 2; }
+            else if (term.charAt(at) == '>') { op = Op.GT; valueStart = at + 1; }
+            else if (term.charAt(at) == '<') { op = Op.LT; valueStart = at + 1; }
+            else if (term.charAt(at) == '=') { op = Op.EQ; valueStart = at + 1; }
+            else throw new IllegalArgumentException("잘못된 쿼리 파라미터입니다.");
+            String value = term.substring(valueStart).trim();
+            if (key.isEmpty() || value.isEmpty()) throw new IllegalArgumentException("잘못된 쿼리 파라미터입니다.");
+
+            boolean option = key.equals("limit") || key.equals("offset") || key.equals("cursor") || key.equals("fields");
+            if (option && op != Op.EQ) throw new IllegalArgumentException("잘못된 쿼리 파라미터입니다: " + term);
+            switch (key) {
+                case "limit":
+                    limit = parseCount(key, value);
+                    if (limit > MAX_LIMIT) throw new IllegalArgumentException("limit은 " + MAX_LIMIT + " 이하여야 합니다.");
+                    break;
+                case "offset":
+                    offset = parseCount(key, value);
+                    break;
+                case "cursor":
+                    cursor = decodeCursor(value);
+                    break;
+                case "fields":
+                    fields = value.split(",");
+                    for (int i = 0; i < fields.length; i++) {
+                        fields[i] = fields[i].trim();
+                    }
+                    break;
+                default:
+                    Condition condition = new Condition(key, op, value);
+                    if (condition.isRange() && Double.isNaN(condition.number)) {
+                        throw new IllegalArgumentException("크기 비교 값이 숫자가 아닙니다: " + term);
+                    }
+                    conditions.add(condition);
+                    break;
+            }
+        }
+        return new UserQuery(conditions, limit, offset, cursor, fields);
+    }
+
+    // X-Next-Cursor로 보내는 cursor: 마지막 id의 UTF-8 바이트를 base64url로 (헤더에 줄바꿈이나 ASCII 밖의 문자가 들어가지 않고 쿼리에 그대로 붙일 수 있다)
+    static String encodeCursor(String id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String value) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("잘못된 cursor입니다: " + value);
+        }
+    }
+
+    // 페이지 단위로 (id 순서로) 돌려줘야 하는지
+    boolean paged() {
+        return limit >= 0 || offset > 0 || cursor != null;
+    }
+
+    // id=값 조건의 값 (없으면 null, 샤드 모드에서 주인 샤드를 고를 때)
+    String exactId() {
+        for (Condition condition : conditions) {
+            if (condition.op == Op.EQ && condition.field.equals("id")) return condition.value;
+        }
+        return null;
+    }
+
+    boolean matches(User user) {
+        for (Condition condition : conditions) {
+            if (!condition.matches(user)) return false;
+        }
+        return true;
+    }
+
+    private static int parseCount(String key, String value) {
+        try {
+            int count = Integer.parseInt(value);
+            if (count >= 0) return count;
+        } catch (NumberFormatException e) {
+            // 아래에서 400
+        }
+        throw new IllegalArgumentException(key + "는 0 이상의 정수여야 합니다.");
+    }
+
+    // 숫자로 바꾼 값 (숫자가 아니면 NaN)
+    static double toNumber(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
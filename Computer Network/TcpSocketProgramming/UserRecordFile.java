@@ -0,0 +1,951 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+// 사용자 바이너리 스냅샷 파일(users.dat)과 id → 레코드 오프셋 인덱스 파일(users.idx)
+// users.dat: [헤더 32바이트][레코드 ...][필드 이름 사전]
+//  - 헤더: 매직 "USRD" 4바이트, 형식 버전 4바이트, 레코드 수 8바이트, 사전 오프셋 8바이트, 스탬프 8바이트
+//  - 레코드: [본문 길이 varint][필드 태그 varint, 값]... (값이 없는 필드는 생략)
+//    필드 태그는 (필드 번호 << 1) | UUID 여부, 값은 [길이 varint][UTF-8] 또는 소문자 UUID 문자열(36자)이면 16바이트로 압축
+//  - 사전: [이름 수 varint][이름 길이 varint, UTF-8 이름]..., 필드 번호는 사전 순서 (0~4는 id, name, address, tel, age)
+// users.idx: [헤더 32바이트][슬롯 24바이트 × 슬롯 수][레코드 수 24바이트][필드별 postings]
+//  - 헤더: 매직 "USRI" 4바이트, 형식 버전 4바이트, 슬롯 수 8바이트, 스탬프 8바이트, 레코드 수 8바이트
+//  - 슬롯: (키 상위 8바이트, 키 하위 8바이트, 레코드 오프셋 8바이트)인 open addressing 해시 테이블, 오프셋 0은 빈 슬롯
+//    id가 소문자 UUID면 키는 UUID 128비트 그대로라서 키만 비교해도 같은 id인지 알 수 있다 (레코드를 읽지 않음)
+//    그 밖의 id는 키가 (id 해시, 0)이고 오프셋의 최상위 비트를 켜 두며, 키가 같으면 레코드의 id를 비교한다
+//  - 레코드 수: 서로 다른 id 수, id가 있는 레코드 수, id가 없는 레코드 수 (앞의 둘이 다르면 덮어쓰인 레코드가 있음)
+//  - postings: age, name, address, tel 순서로 필드마다 [값 수 8바이트][posting 수 8바이트][(값 키, 첫 posting 번호) 16바이트 × 값 수, 키 오름차순][레코드 오프셋 8바이트 × posting 수]
+//    age의 키는 숫자 값을 순서가 유지되는 long으로 바꾼 것이라 범위 조회가 되고 (숫자가 아닌 age는 빠짐), 나머지 필드의 키는 값의 해시라 일치 조회만 된다
+//    최신 레코드만 들어가고, 같은 키 안에서는 파일 순서
+//  - 스탬프가 users.dat와 다르면 (두 파일을 교체하는 도중에 죽은 경우 등) 열 때 인덱스를 다시 만든다
+// 인덱스는 열 때 메모리 매핑만 하므로(힙에 올리지 않음) 사용자 수와 상관없이 바로 열리고 GC가 훑을 객체도 없다
+// id 하나를 찾는 데 슬롯 몇 개와 레코드 하나만 읽고, 필드 조건은 postings 구간의 레코드만 읽는다
+public class UserRecordFile implements AutoCloseable {
+    private static final int DATA_MAGIC = 0x55535244;
+    private static final int INDEX_MAGIC = 0x55535249;
+    private static final int FORMAT_VERSION = 1;
+    // 인덱스 형식 버전 (1은 64비트 해시 키, 예전 파일은 열 때 한 번 다시 만든다)
+    private static final int INDEX_VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 24;
+    // UUID가 아닌 id의 슬롯 오프셋 표시 (키가 해시라서 레코드의 id를 비교해야 함)
+    private static final long HASHED_KEY = 1L << 63;
+    // postings를 두는 필드 (첫 번째인 age만 숫자 범위 조회용)
+    static final String[] POSTING_FIELDS = {"age", "name", "address", "tel"};
+    // 필드 값이 없음 (숫자가 아닌 age 포함, 값 키로는 나오지 않음)
+    private static final long NO_VALUE = Long.MIN_VALUE;
+    // postings 영역 앞의 레코드 수 칸 (서로 다른 id 수, id가 있는 레코드 수, id가 없는 레코드 수)
+    private static final int COUNTS = 3;
+    private static final String[] KNOWN_FIELDS = {"id", "name", "address", "tel", "age"};
+    private static final String[] NO_EXTRAS = new String[0];
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final FileChannel channel;
+    private final String[] names;
+    private final long count;
+    private final long dictionaryOffset;
+    private final LongRegion slots;
+    private final long slotMask;
+    // 레코드 수 칸과 필드별 postings 영역 ([값 수][posting 수][값 키, 첫 번호]...[오프셋]...)
+    private final LongRegion postings;
+    private final long idCount;
+    private final long anonymousCount;
+    // 덮어쓰인 같은 id 레코드가 있는지 (파일 순서로 훑을 때 최신인지 확인해야 함)
+    private final boolean overwritten;
+    // 필드마다 값 목록 시작 위치, 값 수, 오프셋 목록 시작 위치, posting 수 (postings 영역 안의 long 번호)
+    private final long[] valuesAt = new long[POSTING_FIELDS.length];
+    private final long[] valueCounts = new long[POSTING_FIELDS.length];
+    private final long[] offsetsAt = new long[POSTING_FIELDS.length];
+    private final long[] postingCounts = new long[POSTING_FIELDS.length];
+
+    private UserRecordFile(FileChannel channel, String[] names, long count, long dictionaryOffset,
+                           LongRegion slots, long slotCount, LongRegion postings) {
+        this.channel = channel;
+        this.names = names;
+        this.count = count;
+        this.dictionaryOffset = dictionaryOffset;
+        this.slots = slots;
+        this.slotMask = slotCount - 1;
+        this.postings = postings;
+        this.idCount = postings.get(0);
+        this.overwritten = idCount != postings.get(1);
+        this.anonymousCount = postings.get(2);
+        long at = COUNTS;
+        for (int field = 0; field < POSTING_FIELDS.length; field++) {
+            valueCounts[field] = postings.get(at);
+            postingCounts[field] = postings.get(at + 1);
+            valuesAt[field] = at + 2;
+            offsetsAt[field] = valuesAt[field] + valueCounts[field] * 2;
+            at = offsetsAt[field] + postingCounts[field];
+        }
+    }
+
+    // 바이너리 저장 형식을 쓰는 스냅샷 경로인지 (users.dat)
+    public static boolean isRecordFile(Path file) {
+        return file.getFileName().toString().endsWith(".dat");
+    }
+
+    // users.dat 옆의 인덱스 파일 경로 (users.idx)
+    public static Path indexFileOf(Path data) {
+        String name = data.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return data.resolveSibling((dot == -1 ? name : name.substring(0, dot)) + ".idx");
+    }
+
+    // users.dat를 열고 인덱스를 매핑 (인덱스가 없거나 맞지 않으면 새로 만든다)
+    public static UserRecordFile open(Path data) throws IOException {
+        FileChannel channel = FileChannel.open(data, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = readAt(channel, 0, HEADER_SIZE);
+            if (header.remaining() < HEADER_SIZE || header.getInt() != DATA_MAGIC || header.getInt() != FORMAT_VERSION) {
+                throw new IOException(data + "은(는) 사용자 바이너리 파일이 아닙니다.");
+            }
+            long count = header.getLong();
+            long dictionaryOffset = header.getLong();
+            long stamp = header.getLong();
+            if (dictionaryOffset < HEADER_SIZE || dictionaryOffset > channel.size()) {
+                throw new IOException(data + "의 헤더가 손상되었습니다.");
+            }
+            String[] names = readDictionary(channel, dictionaryOffset);
+
+            Path index = indexFileOf(data);
+            if (!isIndexValid(index, stamp)) {
+                System.out.println(index.getFileName() + " 인덱스를 다시 만듭니다.");
+                rebuildIndex(channel, names, dictionaryOffset, index, stamp, count);
+            }
+            try (FileChannel indexChannel = FileChannel.open(index, StandardOpenOption.READ)) {
+                long slotCount = readAt(indexChannel, 0, HEADER_SIZE).getLong(8);
+                long postingsStart = HEADER_SIZE + slotCount * SLOT_SIZE;
+                LongRegion slots = new LongRegion(indexChannel, FileChannel.MapMode.READ_ONLY, HEADER_SIZE, slotCount * 3);
+                LongRegion postings = new LongRegion(indexChannel, FileChannel.MapMode.READ_ONLY, postingsStart,
+                    (indexChannel.size() - postingsStart) / 8);
+                return new UserRecordFile(channel, names, count, dictionaryOffset, slots, slotCount, postings);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // 레코드 수 (덮어쓰인 같은 id 레코드 포함)
+    public long count() {
+        return count;
+    }
+
+    // 최신 레코드 수 (서로 다른 id 수 + id가 없는 레코드 수)
+    public long liveCount() {
+        return idCount + anonymousCount;
+    }
+
+    // id로 사용자 하나 읽기 (인덱스 슬롯 탐색 후 레코드 하나만 읽음), 없으면 null
+    public User get(String id) throws IOException {
+        boolean uuid = isUuid(id);
+        long high = uuid ? uuidBits(id, 0) : hashOf(id);
+        long low = uuid ? uuidBits(id, 19) : 0;
+        for (long slot = slotOf(high, low) & slotMask; ; slot = (slot + 1) & slotMask) {
+            long offset = slots.get(slot * 3 + 2);
+            if (offset == 0) return null;
+            if (slots.get(slot * 3) != high || slots.get(slot * 3 + 1) != low || (offset >= 0) != uuid) continue;
+            User user = readRecord(channel, names, offset & ~HASHED_KEY);
+            if (uuid || id.equals(user.id())) return user;
+        }
+    }
+
+    // id의 레코드 오프셋, 없으면 -1 (UUID id는 슬롯만 보고 레코드를 읽지 않는다)
+    public long offsetOf(String id) throws IOException {
+        boolean uuid = isUuid(id);
+        long high = uuid ? uuidBits(id, 0) : hashOf(id);
+        long low = uuid ? uuidBits(id, 19) : 0;
+        for (long slot = slotOf(high, low) & slotMask; ; slot = (slot + 1) & slotMask) {
+            long offset = slots.get(slot * 3 + 2);
+            if (offset == 0) return -1;
+            if (slots.get(slot * 3) != high || slots.get(slot * 3 + 1) != low || (offset >= 0) != uuid) continue;
+            if (uuid) return offset;
+            if (id.equals(readRecord(channel, names, offset & ~HASHED_KEY).id())) return offset & ~HASHED_KEY;
+        }
+    }
+
+    public boolean contains(String id) throws IOException {
+        return offsetOf(id) >= 0;
+    }
+
+    // age가 min 이상 max 이하인 사용자 수 (postings 구간 길이만 보고 레코드는 읽지 않음)
+    public long countByAge(double min, double max) {
+        if (!(min <= max)) return 0;
+        return firstPosting(0, numberKey(max), true) - firstPosting(0, numberKey(min), false);
+    }
+
+    // age가 min 이상 max 이하인 사용자를 age 순서로 (같은 age 안에서는 파일 순서)
+    public void forEachByAge(double min, double max, Visitor action) throws IOException {
+        Iterator<User> users = byAge(min, max);
+        try {
+            while (users.hasNext()) {
+                action.accept(users.next());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // forEachByAge()를 하나씩 꺼내 읽는 형태로 (읽기 오류는 UncheckedIOException)
+    public Iterator<User> byAge(double min, double max) {
+        if (!(min <= max)) return Collections.emptyIterator();
+        return postingsOf(0, firstPosting(0, numberKey(min), false), firstPosting(0, numberKey(max), true), null, null);
+    }
+
+    // field 값이 value와 같을 수 있는 사용자 수 (해시가 겹친 다른 값 포함), postings로 고를 수 없는 조건이면 -1
+    public long countWithValue(String field, String value) {
+        int posting = postingFieldOf(field);
+        long key = posting < 0 ? NO_VALUE : valueKey(posting, value);
+        if (key == NO_VALUE) return -1;
+        return firstPosting(posting, key, true) - firstPosting(posting, key, false);
+    }
+
+    // field 값이 value와 같은 사용자 (postings 구간의 레코드만 읽고 값을 비교), postings로 고를 수 없는 조건이면 null
+    public Iterator<User> withValue(String field, String value) {
+        int posting = postingFieldOf(field);
+        long key = posting < 0 ? NO_VALUE : valueKey(posting, value);
+        if (key == NO_VALUE) return null;
+        return postingsOf(posting, firstPosting(posting, key, false), firstPosting(posting, key, true), field, value);
+    }
+
+    // age 값 수, posting 수 (age가 숫자인 사용자 수)
+    public long ageValueCount() {
+        return valueCounts[0];
+    }
+
+    public long postingCount() {
+        return postingCounts[0];
+    }
+
+    // field의 postings 번호, 없으면 -1
+    private static int postingFieldOf(String field) {
+        for (int i = 0; i < POSTING_FIELDS.length; i++) {
+            if (POSTING_FIELDS[i].equals(field)) return i;
+        }
+        return -1;
+    }
+
+    // 필드 값의 postings 키 (age는 숫자 값, 나머지는 해시), 값이 없거나 숫자가 아닌 age면 NO_VALUE
+    private static long valueKey(int posting, String value) {
+        if (value == null) return NO_VALUE;
+        if (posting != 0) return hashOf(value);
+        double number = UserQuery.toNumber(value);
+        return Double.isNaN(number) ? NO_VALUE : numberKey(number);
+    }
+
+    // double을 크기 순서가 그대로인 long으로 (음수는 부호 외의 비트를 뒤집음, -0.0과 0.0은 같은 값)
+    private static long numberKey(double number) {
+        long bits = Double.doubleToLongBits(number == 0 ? 0.0 : number);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    // 키가 이 값 이상인(after면 이 값보다 큰) 첫 posting 번호 (값 목록을 이진 탐색)
+    private long firstPosting(int posting, long key, boolean after) {
+        long low = 0;
+        long high = valueCounts[posting];
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            long value = postings.get(valuesAt[posting] + mid * 2);
+            if (value < key || (after && value == key)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low == valueCounts[posting] ? postingCounts[posting] : postings.get(valuesAt[posting] + low * 2 + 1);
+    }
+
+    // from부터 to 앞까지 posting의 레코드 (field가 있으면 값이 value와 같은 것만)
+    private Iterator<User> postingsOf(int posting, long from, long to, String field, String value) {
+        return new Iterator<User>() {
+            private long next = from;
+            private User user;
+
+            @Override
+            public boolean hasNext() {
+                while (user == null && next < to) {
+                    try {
+                        User candidate = readRecord(channel, names, postings.get(offsetsAt[posting] + next++));
+                        if (field == null || value.equals(candidate.field(field))) user = candidate;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return user != null;
+            }
+
+            @Override
+            public User next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                User result = user;
+                user = null;
+                return result;
+            }
+        };
+    }
+
+    // 레코드를 하나씩 받는 쪽
+    public interface Visitor {
+        void accept(User user) throws IOException;
+    }
+
+    // 모든 레코드를 파일 순서대로 (같은 id가 여러 번 있으면 뒤의 것이 최신)
+    public void forEach(Visitor action) throws IOException {
+        scan(channel, names, dictionaryOffset, (offset, user) -> action.accept(user));
+    }
+
+    // 최신 레코드만 파일 순서대로 하나씩 (덮어쓰인 레코드는 건너뜀, 읽기 오류는 UncheckedIOException)
+    public Iterator<User> latest() {
+        Scanner scanner = new Scanner(channel, names, dictionaryOffset);
+        return new Iterator<User>() {
+            private User user;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (user == null) {
+                        User candidate = scanner.next();
+                        if (candidate == null) return false;
+                        if (!overwritten || candidate.id() == null || offsetOf(candidate.id()) == scanner.offset) user = candidate;
+                    }
+                    return true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public User next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                User result = user;
+                user = null;
+                return result;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // 스냅샷을 쓰는 쪽: 레코드를 차례로 덧붙이고 finish()에서 사전, 헤더, 인덱스를 기록
+    public static class Writer implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        // 필드 이름 → 필드 번호
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private final long stamp = ThreadLocalRandom.current().nextLong();
+        private byte[] record = new byte[256];
+        private long position = HEADER_SIZE;
+        private long count;
+        // 인덱스를 만들 (키, 레코드 오프셋, age) 목록
+        private final IndexEntries entries = new IndexEntries();
+
+        public Writer(Path data) throws IOException {
+            channel = FileChannel.open(data, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            channel.position(HEADER_SIZE);
+            for (String name : KNOWN_FIELDS) {
+                intern(name);
+            }
+        }
+
+        public void add(User user) throws IOException {
+            int length = 0;
+            for (int i = 0; i < KNOWN_FIELDS.length; i++) {
+                length = putField(length, i, user.field(KNOWN_FIELDS[i]));
+            }
+            for (int i = 0; i < user.extraCount(); i++) {
+                length = putField(length, intern(user.extraName(i)), user.extraValue(i));
+            }
+
+            entries.add(user, position);
+            if (buffer.remaining() < 5) flushBuffer();
+            position += putVarint(buffer, length);
+            write(record, length);
+            count++;
+        }
+
+        // 사전과 헤더를 쓰고 fsync한 뒤 인덱스 파일 생성
+        public void finish(Path index) throws IOException {
+            long dictionaryOffset = position;
+            ByteBuffer dictionaryHeader = ByteBuffer.allocate(5);
+            putVarint(dictionaryHeader, names.size());
+            write(dictionaryHeader.array(), dictionaryHeader.position());
+            for (String name : names) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer length = ByteBuffer.allocate(5);
+                putVarint(length, bytes.length);
+                write(length.array(), length.position());
+                write(bytes, bytes.length);
+            }
+            flushBuffer();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(DATA_MAGIC).putInt(FORMAT_VERSION).putLong(count).putLong(dictionaryOffset).putLong(stamp);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+
+            writeIndex(channel, names.toArray(new String[0]), index, stamp, count, entries);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private int intern(String name) {
+            Integer id = dictionary.get(name);
+            if (id != null) return id;
+            dictionary.put(name, names.size());
+            names.add(name);
+            return names.size() - 1;
+        }
+
+        // record[length]부터 필드 하나를 붙이고 새 길이 반환
+        private int putField(int length, int field, String value) {
+            if (value == null) return length;
+            if (isUuid(value)) {
+                if (length + 21 > record.length) record = Arrays.copyOf(record, record.length * 2);
+                length = putVarint(record, length, (field << 1) | 1);
+                for (int i = 0; i < value.length(); i++) {
+                    if (value.charAt(i) == '-') continue;
+                    // 16진수 두 글자가 한 바이트 (앞 글자는 상위 4비트)
+                    int digit = Character.digit(value.charAt(i), 16);
+                    int dashes = i > 23 ? 4 : i > 18 ? 3 : i > 13 ? 2 : i > 8 ? 1 : 0;
+                    int nibble = i - dashes;
+                    if ((nibble & 1) == 0) {
+                        record[length + nibble / 2] = (byte) (digit << 4);
+                    } else {
+                        record[length + nibble / 2] |= (byte) digit;
+                    }
+                }
+                return length + 16;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (length + 10 + bytes.length > record.length) {
+                record = Arrays.copyOf(record, Math.max(record.length * 2, length + 10 + bytes.length));
+            }
+            length = putVarint(record, length, field << 1);
+            length = putVarint(record, length, bytes.length);
+            System.arraycopy(bytes, 0, record, length, bytes.length);
+            return length + bytes.length;
+        }
+
+        private void write(byte[] bytes, int length) throws IOException {
+            if (length > buffer.remaining()) {
+                flushBuffer();
+                if (length > buffer.capacity()) {
+                    ByteBuffer large = ByteBuffer.wrap(bytes, 0, length);
+                    while (large.hasRemaining()) {
+                        channel.write(large);
+                    }
+                    position += length;
+                    return;
+                }
+            }
+            buffer.put(bytes, 0, length);
+            position += length;
+        }
+
+        private void flushBuffer() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    // 레코드 하나를 읽었을 때 받는 쪽
+    private interface RecordVisitor {
+        void visit(long offset, User user) throws IOException;
+    }
+
+    // 헤더 다음부터 사전 앞까지 레코드를 1MB씩 읽어 차례로 디코딩
+    private static void scan(FileChannel channel, String[] names, long end, RecordVisitor visitor) throws IOException {
+        Scanner scanner = new Scanner(channel, names, end);
+        for (User user = scanner.next(); user != null; user = scanner.next()) {
+            visitor.visit(scanner.offset, user);
+        }
+    }
+
+    // 레코드를 파일 순서대로 하나씩 꺼내는 쪽 (1MB 버퍼에 이어서 읽음)
+    private static class Scanner {
+        private final FileChannel channel;
+        private final long end;
+        private final RecordReader reader;
+        private byte[] buf = new byte[1 << 20];
+        private long filePosition = HEADER_SIZE;
+        private long bufferOffset = HEADER_SIZE;
+        private int start;
+        private int limit;
+        // 마지막으로 꺼낸 레코드의 오프셋
+        long offset;
+
+        Scanner(FileChannel channel, String[] names, long end) {
+            this.channel = channel;
+            this.end = end;
+            this.reader = new RecordReader(names);
+        }
+
+        // 다음 레코드, 사전 영역에 닿으면 null
+        User next() throws IOException {
+            while (true) {
+                // 버퍼에 레코드 하나가 온전히 있으면 디코딩
+                reader.reset(buf, start, limit);
+                long length = reader.readVarint();
+                if (length >= 0 && reader.position + length <= limit) {
+                    int bodyStart = reader.position;
+                    offset = bufferOffset + start;
+                    start = bodyStart + (int) length;
+                    return reader.decode(bodyStart, start);
+                }
+                if (filePosition >= end) {
+                    if (start == limit) return null;
+                    throw new IOException("레코드가 사전 영역 앞에서 끝나지 않습니다 (오프셋 " + (bufferOffset + start) + ")");
+                }
+
+                // 남은 조각을 앞으로 당기고 (레코드가 버퍼보다 크면 버퍼를 키워서) 이어서 읽기
+                int remaining = limit - start;
+                long recordSize = length >= 0 ? reader.position - start + length : 0;
+                if (recordSize > buf.length) {
+                    if (recordSize > Integer.MAX_VALUE - 8) throw new IOException("레코드가 너무 큽니다 (오프셋 " + (bufferOffset + start) + ")");
+                    buf = Arrays.copyOf(buf, (int) recordSize);
+                }
+                System.arraycopy(buf, start, buf, 0, remaining);
+                bufferOffset += start;
+                start = 0;
+                limit = remaining;
+                ByteBuffer target = ByteBuffer.wrap(buf, limit, (int) Math.min(buf.length - limit, end - filePosition));
+                while (target.hasRemaining()) {
+                    int read = channel.read(target, filePosition);
+                    if (read < 0) throw new IOException("파일이 헤더에 적힌 길이보다 짧습니다.");
+                    filePosition += read;
+                }
+                limit = target.position();
+            }
+        }
+    }
+
+    // offset 위치의 레코드 하나 읽기 (앞 256바이트를 먼저 읽고, 레코드가 더 길면 나머지를 읽는다)
+    private static User readRecord(FileChannel channel, String[] names, long offset) throws IOException {
+        ByteBuffer head = readAt(channel, offset, 256);
+        RecordReader reader = new RecordReader(names);
+        reader.reset(head.array(), 0, head.limit());
+        long length = reader.readVarint();
+        if (length < 0) throw new IOException("레코드가 손상되었습니다 (오프셋 " + offset + ")");
+        int bodyStart = reader.position;
+        if (bodyStart + length <= head.limit()) return reader.decode(bodyStart, bodyStart + (int) length);
+
+        ByteBuffer whole = readAt(channel, offset, bodyStart + (int) length);
+        if (whole.limit() < bodyStart + length) throw new IOException("레코드가 손상되었습니다 (오프셋 " + offset + ")");
+        reader.reset(whole.array(), 0, whole.limit());
+        return reader.decode(bodyStart, bodyStart + (int) length);
+    }
+
+    // 레코드 본문 디코더 (varint와 필드 목록)
+    private static class RecordReader {
+        private final String[] names;
+        private byte[] buf;
+        private int position;
+        private int limit;
+
+        RecordReader(String[] names) {
+            this.names = names;
+        }
+
+        void reset(byte[] buf, int position, int limit) {
+            this.buf = buf;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        // varint 하나 (limit 안에서 끝나지 않으면 -1)
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; position < limit && shift < 64; shift += 7) {
+                byte b = buf[position++];
+                value |= (long) (b & 0x7f) << shift;
+                if (b >= 0) return value;
+            }
+            return -1;
+        }
+
+        User decode(int start, int end) throws IOException {
+            position = start;
+            limit = end;
+            String[] known = new String[KNOWN_FIELDS.length];
+            String[] extras = NO_EXTRAS;
+            int extraCount = 0;
+            while (position < end) {
+                long tag = readVarint();
+                long field = tag >>> 1;
+                long length = (tag & 1) != 0 ? 16 : readVarint();
+                if (tag < 0 || field >= names.length || length < 0 || position + length > end) {
+                    throw new IOException("레코드가 손상되었습니다.");
+                }
+                String value = (tag & 1) != 0 ? uuidAt(position) : new String(buf, position, (int) length, StandardCharsets.UTF_8);
+                position += (int) length;
+                if (field < KNOWN_FIELDS.length) {
+                    known[(int) field] = value;
+                } else {
+                    if (extraCount + 2 > extras.length) extras = Arrays.copyOf(extras, Math.max(4, extras.length * 2));
+                    extras[extraCount++] = names[(int) field];
+                    extras[extraCount++] = value;
+                }
+            }
+            if (extraCount != extras.length) extras = Arrays.copyOf(extras, extraCount);
+            return new User(known[0], known[1], known[2], known[3], known[4], extras);
+        }
+
+        // 16바이트를 소문자 UUID 문자열로
+        private String uuidAt(int start) {
+            char[] chars = new char[36];
+            int c = 0;
+            for (int i = 0; i < 16; i++) {
+                if (i == 4 || i == 6 || i == 8 || i == 10) chars[c++] = '-';
+                chars[c++] = HEX[(buf[start + i] >> 4) & 0xf];
+                chars[c++] = HEX[buf[start + i] & 0xf];
+            }
+            return new String(chars);
+        }
+    }
+
+    private static String[] readDictionary(FileChannel channel, long dictionaryOffset) throws IOException {
+        ByteBuffer bytes = readAt(channel, dictionaryOffset, (int) (channel.size() - dictionaryOffset));
+        RecordReader reader = new RecordReader(null);
+        reader.reset(bytes.array(), 0, bytes.limit());
+        long size = reader.readVarint();
+        if (size < KNOWN_FIELDS.length || size > bytes.limit()) throw new IOException("필드 이름 사전이 손상되었습니다.");
+        String[] names = new String[(int) size];
+        for (int i = 0; i < names.length; i++) {
+            long length = reader.readVarint();
+            if (length < 0 || reader.position + length > reader.limit) throw new IOException("필드 이름 사전이 손상되었습니다.");
+            names[i] = new String(reader.buf, reader.position, (int) length, StandardCharsets.UTF_8);
+            reader.position += (int) length;
+        }
+        return names;
+    }
+
+    private static boolean isIndexValid(Path index, long stamp) throws IOException {
+        if (!Files.exists(index)) return false;
+        try (FileChannel indexChannel = FileChannel.open(index, StandardOpenOption.READ)) {
+            ByteBuffer header = readAt(indexChannel, 0, HEADER_SIZE);
+            if (header.remaining() < HEADER_SIZE || header.getInt() != INDEX_MAGIC || header.getInt() != INDEX_VERSION) return false;
+            long slotCount = header.getLong();
+            if (header.getLong() != stamp || Long.bitCount(slotCount) != 1) return false;
+            // 필드별 postings 크기를 따라가며 파일 길이가 맞는지 확인
+            long position = HEADER_SIZE + slotCount * SLOT_SIZE + COUNTS * 8;
+            for (int field = 0; field < POSTING_FIELDS.length; field++) {
+                ByteBuffer counts = readAt(indexChannel, position, 16);
+                if (counts.remaining() < 16) return false;
+                long valueCount = counts.getLong();
+                long postingCount = counts.getLong();
+                if (valueCount < 0 || postingCount < 0 || valueCount > postingCount) return false;
+                position += 16 + valueCount * 16 + postingCount * 8;
+            }
+            return indexChannel.size() == position;
+        }
+    }
+
+    // 레코드를 처음부터 훑어 인덱스 파일을 다시 만든다
+    private static void rebuildIndex(FileChannel channel, String[] names, long dictionaryOffset, Path index,
+                                     long stamp, long count) throws IOException {
+        IndexEntries entries = new IndexEntries();
+        scan(channel, names, dictionaryOffset, (offset, user) -> entries.add(user, offset));
+        Path temp = index.resolveSibling(index.getFileName() + ".tmp");
+        writeIndex(channel, names, temp, stamp, count, entries);
+        Files.move(temp, index, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // 인덱스를 만들 레코드 목록 (박싱 없이 long 배열로, 만드는 동안만 힙에 둔다)
+    private static class IndexEntries {
+        long[] keyHigh = new long[1024];
+        long[] keyLow = new long[1024];
+        // 레코드 오프셋 (UUID가 아닌 id는 HASHED_KEY 비트를 켬, id가 없는 레코드는 키 (0, 0)에 HASHED_KEY)
+        long[] offsets = new long[1024];
+        // postings 필드마다 값 키 (없으면 NO_VALUE)
+        long[][] values = new long[POSTING_FIELDS.length][1024];
+        int size;
+
+        void add(User user, long offset) {
+            if (size == offsets.length) {
+                keyHigh = Arrays.copyOf(keyHigh, size * 2);
+                keyLow = Arrays.copyOf(keyLow, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+                for (int field = 0; field < values.length; field++) {
+                    values[field] = Arrays.copyOf(values[field], size * 2);
+                }
+            }
+            String id = user.id();
+            if (id != null && isUuid(id)) {
+                keyHigh[size] = uuidBits(id, 0);
+                keyLow[size] = uuidBits(id, 19);
+                offsets[size] = offset;
+            } else {
+                // 해시는 0이 아니므로 id가 없는 레코드의 키 (0, 0)과 겹치지 않는다
+                keyHigh[size] = id == null ? 0 : hashOf(id);
+                keyLow[size] = 0;
+                offsets[size] = offset | HASHED_KEY;
+            }
+            for (int field = 0; field < values.length; field++) {
+                values[field][size] = valueKey(field, user.field(POSTING_FIELDS[field]));
+            }
+            size++;
+        }
+
+        boolean anonymous(int i) {
+            return keyHigh[i] == 0 && offsets[i] < 0;
+        }
+    }
+
+    // 목록으로 인덱스 파일 작성 (같은 id가 여러 번 나오면 뒤의 오프셋으로 교체, postings에는 최신 레코드만)
+    private static void writeIndex(FileChannel data, String[] names, Path index, long stamp, long count,
+                                   IndexEntries entries) throws IOException {
+        int size = entries.size;
+        // 적재율 50% 이하
+        long slotCount = Math.max(16, Long.highestOneBit(Math.max(1, size) * 2L - 1) << 1);
+        long slotMask = slotCount - 1;
+        try (FileChannel indexChannel = FileChannel.open(index, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(INDEX_MAGIC).putInt(INDEX_VERSION).putLong(slotCount).putLong(stamp).putLong(count);
+            header.flip();
+            while (header.hasRemaining()) {
+                indexChannel.write(header, header.position());
+            }
+            LongRegion slots = new LongRegion(indexChannel, FileChannel.MapMode.READ_WRITE, HEADER_SIZE, slotCount * 3);
+
+            long ids = 0;
+            long anonymous = 0;
+            for (int i = 0; i < size; i++) {
+                if (entries.anonymous(i)) {
+                    anonymous++;
+                    continue;
+                }
+                long high = entries.keyHigh[i];
+                long low = entries.keyLow[i];
+                long offset = entries.offsets[i];
+                for (long slot = slotOf(high, low) & slotMask; ; slot = (slot + 1) & slotMask) {
+                    long slotOffset = slots.get(slot * 3 + 2);
+                    if (slotOffset == 0) {
+                        slots.put(slot * 3, high);
+                        slots.put(slot * 3 + 1, low);
+                        slots.put(slot * 3 + 2, offset);
+                        ids++;
+                        break;
+                    }
+                    if (slots.get(slot * 3) != high || slots.get(slot * 3 + 1) != low || (slotOffset >= 0) != (offset >= 0)) continue;
+                    // UUID 키가 같으면 같은 id, 해시 키가 같으면 실제 id를 비교 (드물게만 일어남)
+                    if (offset >= 0 || readRecord(data, names, slotOffset & ~HASHED_KEY).id()
+                            .equals(readRecord(data, names, offset & ~HASHED_KEY).id())) {
+                        slots.put(slot * 3 + 2, offset);
+                        break;
+                    }
+                }
+            }
+
+            // 슬롯에 남은(덮어쓰이지 않은) 레코드와 id가 없는 레코드만 postings에 넣는다
+            boolean[] live = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                if (entries.anonymous(i)) {
+                    live[i] = true;
+                    continue;
+                }
+                long offset = entries.offsets[i];
+                for (long slot = slotOf(entries.keyHigh[i], entries.keyLow[i]) & slotMask; ; slot = (slot + 1) & slotMask) {
+                    long slotOffset = slots.get(slot * 3 + 2);
+                    if (slotOffset == 0) break;
+                    if (slotOffset == offset) {
+                        live[i] = true;
+                        break;
+                    }
+                }
+            }
+            long position = HEADER_SIZE + slotCount * SLOT_SIZE;
+            LongRegion counts = new LongRegion(indexChannel, FileChannel.MapMode.READ_WRITE, position, COUNTS);
+            counts.put(0, ids);
+            counts.put(1, size - anonymous);
+            counts.put(2, anonymous);
+            position += COUNTS * 8;
+            slots.force();
+            counts.force();
+            for (int field = 0; field < POSTING_FIELDS.length; field++) {
+                position = writePostings(indexChannel, position, entries.values[field], entries.offsets, live, size);
+            }
+        }
+    }
+
+    // 필드 하나의 postings를 position부터 쓰고 끝 위치 반환 (한 필드씩 만들어서 힙에는 그 필드의 배열만 둔다)
+    private static long writePostings(FileChannel indexChannel, long position, long[] keys, long[] offsets,
+                                      boolean[] live, int size) throws IOException {
+        long[] liveKeys = new long[size];
+        long[] liveOffsets = new long[size];
+        int postingCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (!live[i] || keys[i] == NO_VALUE) continue;
+            liveKeys[postingCount] = keys[i];
+            liveOffsets[postingCount] = offsets[i] & ~HASHED_KEY;
+            postingCount++;
+        }
+        // 값 키 목록 (정렬 후 중복 제거)과 값마다 첫 posting 번호
+        long[] values = Arrays.copyOf(liveKeys, postingCount);
+        Arrays.sort(values);
+        int valueCount = 0;
+        for (int i = 0; i < postingCount; i++) {
+            if (valueCount == 0 || values[valueCount - 1] != values[i]) values[valueCount++] = values[i];
+        }
+        long[] next = new long[valueCount + 1];
+        for (int i = 0; i < postingCount; i++) {
+            next[Arrays.binarySearch(values, 0, valueCount, liveKeys[i]) + 1]++;
+        }
+        for (int i = 0; i < valueCount; i++) {
+            next[i + 1] += next[i];
+        }
+        long length = 2 + valueCount * 2L + postingCount;
+        LongRegion region = new LongRegion(indexChannel, FileChannel.MapMode.READ_WRITE, position, length);
+        region.put(0, valueCount);
+        region.put(1, postingCount);
+        for (int i = 0; i < valueCount; i++) {
+            region.put(2 + i * 2L, values[i]);
+            region.put(2 + i * 2L + 1, next[i]);
+        }
+        long postings = 2 + valueCount * 2L;
+        for (int i = 0; i < postingCount; i++) {
+            region.put(postings + next[Arrays.binarySearch(values, 0, valueCount, liveKeys[i])]++, liveOffsets[i]);
+        }
+        region.force();
+        return position + length * 8;
+    }
+
+    // 파일의 한 구간을 long 배열처럼 쓰는 매핑 (매핑 하나는 2GB를 넘을 수 없으므로 1GB씩 나눠 매핑, READ_WRITE면 파일 크기도 늘어남)
+    private static class LongRegion {
+        private static final int CHUNK_SHIFT = 27;
+        private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+        private final MappedByteBuffer[] chunks;
+
+        LongRegion(FileChannel channel, FileChannel.MapMode mode, long position, long length) throws IOException {
+            chunks = new MappedByteBuffer[(int) ((length + CHUNK_MASK) >>> CHUNK_SHIFT)];
+            for (int i = 0; i < chunks.length; i++) {
+                long longs = Math.min(1L << CHUNK_SHIFT, length - ((long) i << CHUNK_SHIFT));
+                chunks[i] = channel.map(mode, position + ((long) i << CHUNK_SHIFT) * 8, longs * 8);
+            }
+        }
+
+        long get(long index) {
+            return chunks[(int) (index >>> CHUNK_SHIFT)].getLong((int) (index & CHUNK_MASK) << 3);
+        }
+
+        void put(long index, long value) {
+            chunks[(int) (index >>> CHUNK_SHIFT)].putLong((int) (index & CHUNK_MASK) << 3, value);
+        }
+
+        void force() {
+            for (MappedByteBuffer chunk : chunks) {
+                chunk.force();
+            }
+        }
+    }
+
+    // position부터 최대 length바이트 읽기 (파일 끝이면 그만큼만)
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) break;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int putVarint(ByteBuffer buffer, long value) {
+        int written = 1;
+        while ((value & ~0x7fL) != 0) {
+            buffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+            written++;
+        }
+        buffer.put((byte) value);
+        return written;
+    }
+
+    private static int putVarint(byte[] bytes, int position, long value) {
+        while ((value & ~0x7fL) != 0) {
+            bytes[position++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    // 16바이트로 줄여도 글자 그대로 되살릴 수 있는 UUID 문자열인지 (8-4-4-4-12, 소문자 16진수)
+    private static boolean isUuid(String value) {
+        if (value.length() != 36) return false;
+        for (int i = 0; i < 36; i++) {
+            char c = value.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') return false;
+            } else if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // UUID가 아닌 id와 postings 필드 값의 해시 (FNV-1a 뒤에 비트를 섞음, 0과 NO_VALUE는 나오지 않음)
+    static long hashOf(String id) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash != 0 && hash != NO_VALUE ? hash : 1;
+    }
+
+    // 소문자 UUID 문자열의 from부터 16진수 16자리(대시 제외)를 64비트로 (0이면 상위, 19면 하위)
+    private static long uuidBits(String id, int from) {
+        long bits = 0;
+        for (int i = from, digits = 0; digits < 16; i++) {
+            char c = id.charAt(i);
+            if (c == '-') continue;
+            bits = (bits << 4) | (c <= '9' ? c - '0' : c - 'a' + 10);
+            digits++;
+        }
+        return bits;
+    }
+
+    // 128비트 키의 첫 슬롯 (두 값을 섞어서 비트를 고르게)
+    private static long slotOf(long high, long low) {
+        long hash = high * 0x9e3779b97f4a7c15L + low;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,120 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+// users.txt(JSON 한 줄에 한 명) ↔ users.dat(바이너리 레코드 + users.idx 인덱스) 변환/조회 도구
+// 서버가 쓰지 않는 스냅샷 파일에 사용한다 (변경 로그 users.log.*는 건드리지 않음)
+// 실행: java UserRecordTool import users.txt users.dat
+//      java UserRecordTool export users.dat users.txt
+//      java UserRecordTool get users.dat <id>
+//      java UserRecordTool age users.dat <min> [max]
+//      java UserRecordTool info users.dat
+public class UserRecordTool {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            printUsage();
+            System.exit(1);
+        }
+        switch (args[0]) {
+            case "import":
+                if (args.length < 3) break;
+                importText(Paths.get(args[1]), Paths.get(args[2]));
+                return;
+            case "export":
+                if (args.length < 3) break;
+                exportText(Paths.get(args[1]), Paths.get(args[2]));
+                return;
+            case "get":
+                if (args.length < 3) break;
+                try (UserRecordFile records = UserRecordFile.open(Paths.get(args[1]))) {
+                    User user = records.get(args[2]);
+                    System.out.println(user != null ? user.toJson() : "해당 id의 사용자가 없습니다.");
+                }
+                return;
+            case "age":
+                if (args.length < 3) break;
+                try (UserRecordFile records = UserRecordFile.open(Paths.get(args[1]))) {
+                    long min = Long.parseLong(args[2]);
+                    long max = args.length > 3 ? Long.parseLong(args[3]) : min;
+                    records.forEachByAge(min, max, user -> System.out.println(user.toJson()));
+                    System.out.println(records.countByAge(min, max) + "명");
+                }
+                return;
+            case "info":
+                try (UserRecordFile records = UserRecordFile.open(Paths.get(args[1]))) {
+                    Path data = Paths.get(args[1]);
+                    System.out.println("레코드 " + records.count() + "개, " + data.getFileName() + " " + Files.size(data)
+                        + "바이트, " + UserRecordFile.indexFileOf(data).getFileName() + " "
+                        + Files.size(UserRecordFile.indexFileOf(data)) + "바이트 (age 값 " + records.ageValueCount()
+                        + "개, postings " + records.postingCount() + "개)");
+                }
+                return;
+            default:
+                break;
+        }
+        printUsage();
+        System.exit(1);
+    }
+
+    // JSON 줄을 하나씩 읽어 바이너리로 (읽지 못한 줄은 건너뜀)
+    private static void importText(Path text, Path data) throws IOException {
+        long start = System.nanoTime();
+        long count = 0;
+        long skipped = 0;
+        Path temp = data.resolveSibling(data.getFileName() + ".tmp");
+        Path tempIndex = temp.resolveSibling(UserRecordFile.indexFileOf(data).getFileName() + ".tmp");
+        try (BufferedReader reader = Files.newBufferedReader(text, StandardCharsets.UTF_8);
+             UserRecordFile.Writer writer = new UserRecordFile.Writer(temp)) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty()) continue;
+                try {
+                    writer.add(User.parse(line));
+                    count++;
+                } catch (JsonTokenizer.JsonException e) {
+                    System.out.println(lineNumber + "번째 줄을 읽지 못해 건너뜁니다: " + e.getMessage());
+                    skipped++;
+                }
+            }
+            writer.finish(tempIndex);
+        }
+        Files.move(temp, data, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(tempIndex, UserRecordFile.indexFileOf(data), StandardCopyOption.REPLACE_EXISTING);
+        System.out.printf("%d명 변환, %d줄 건너뜀, %dms: %s %d바이트 → %s %d바이트 (+ 인덱스 %d바이트)%n",
+            count, skipped, (System.nanoTime() - start) / 1_000_000, text.getFileName(), Files.size(text),
+            data.getFileName(), Files.size(data), Files.size(UserRecordFile.indexFileOf(data)));
+    }
+
+    // 바이너리 레코드를 파일 순서대로 JSON 줄로 (같은 id가 여러 번 있으면 users.txt처럼 뒤의 줄이 최신)
+    private static void exportText(Path data, Path text) throws IOException {
+        long start = System.nanoTime();
+        long[] count = {0};
+        try (UserRecordFile records = UserRecordFile.open(data);
+             BufferedWriter writer = Files.newBufferedWriter(text, StandardCharsets.UTF_8)) {
+            StringBuilder line = new StringBuilder(128);
+            records.forEach(user -> {
+                line.setLength(0);
+                user.appendJson(line);
+                writer.append(line).append('\n');
+                count[0]++;
+            });
+        }
+        System.out.printf("%d명 내보냄, %dms: %s %d바이트%n", count[0], (System.nanoTime() - start) / 1_000_000,
+            text.getFileName(), Files.size(text));
+    }
+
+    private static void printUsage() {
+        System.out.println("사용법: java UserRecordTool import <users.txt> <users.dat>");
+        System.out.println("       java UserRecordTool export <users.dat> <users.txt>");
+        System.out.println("       java UserRecordTool get <users.dat> <id>");
+        System.out.println("       java UserRecordTool age <users.dat> <min> [max]");
+        System.out.println("       java UserRecordTool info <users.dat>");
+    }
+}
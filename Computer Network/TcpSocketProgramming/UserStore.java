@@ -0,0 +1,915 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// users.txt를 시작할 때 한 번 읽어 메모리에 올려두는 사용자 저장소
+// id → 사용자(User, 저장할 때 한 번 파싱한 형태) 기본 맵과 name/address/tel/age 값 → id 보조 인덱스로 조회한다
+// 페이지 조회와 범위 조회를 위해 id 정렬 인덱스와 age 숫자 값 정렬 인덱스도 둔다
+// 변경은 MutationLog에 덧붙이기만 하고, 백그라운드 압축이 users.txt 스냅샷을 새로 만들어 원자적으로 교체한다
+// 스냅샷 경로가 users.dat이면 JSON 대신 UserRecordFile 바이너리 형식(+ users.idx 인덱스)으로 읽고 쓴다
+// 바이너리 형식이면 스냅샷을 힙에 올리지 않고 열어 두기만 한다: id 조회는 매핑한 인덱스로, name/address/tel/age 조건은 postings로
+// 필요한 레코드만 읽고, 힙의 맵과 인덱스(Delta)에는 스냅샷 이후의 변경(변경 로그에 있는 것)만 둔다
+//
+// 동시성: 조회는 락 없이 ConcurrentHashMap을 읽고, 변경은 id별 스트라이프 락으로 같은 id끼리만 순서대로 처리한다
+// (다른 id의 변경은 병렬로 진행). 파일 쓰기는 MutationLog의 단일 writer 스레드가 맡는다.
+// 층 구성(Layers)은 모든 스트라이프 락을 잡고서만 바꾸므로, 변경은 락을 잡은 동안 같은 층 구성을 본다.
+public class UserStore {
+    static final String[] INDEXED_FIELDS = {"name", "address", "tel", "age"};
+    // 숫자 값으로 정렬해 두는 필드 (범위 조회용)
+    static final String RANGE_INDEXED_FIELD = "age";
+    private static final int LOCK_STRIPES = 64;
+    // 페이지 조회에서 후보가 이보다 적으면 후보만 id로 정렬하고, 많으면 id 순서로 전체를 훑으며 거른다
+    private static final int SORT_CANDIDATES_LIMIT = 10000;
+
+    private final Path file;
+    // 스냅샷이 바이너리 형식인지 (users.dat)
+    private final boolean binary;
+    private final MutationLog log;
+    // 압축은 한 번에 하나만
+    private final Object compactLock = new Object();
+    // 조회할 층들 (텍스트 형식이면 active 층 하나에 전체가 있음)
+    private volatile Layers layers = new Layers(null, null, new Delta());
+    // id 해시로 고르는 변경용 락
+    private final ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+    // id가 없는 줄에 붙이는 임시 키 번호
+    private final AtomicInteger anonymousCount = new AtomicInteger();
+    // 사용자 수 (바이너리 형식이면 스냅샷 파일의 사용자 포함)
+    private final AtomicLong count = new AtomicLong();
+    // 메모리 데이터가 바뀔 때마다 증가하는 버전
+    private final AtomicLong version = new AtomicLong();
+    // users.txt 스냅샷을 만든 시점의 버전 (version과 같으면 스냅샷이 최신)
+    private volatile long snapshotVersion;
+    // 저장된 데이터(스냅샷 파일이나 변경 로그)가 있는지 (시작할 때 한 번 확인하고, 이후에는 변경이 생기면 true)
+    private volatile boolean stored;
+    // 마지막으로 데이터가 바뀐 시각 (밀리초, Last-Modified 응답 헤더용)
+    private volatile long lastModified;
+    // 시작할 때 스냅샷과 로그를 읽는 데 걸린 시간, 압축 한 번에 걸린 시간 (/metrics용)
+    private long loadNanos;
+    private final MetricsHistogram compactionTimes = new MetricsHistogram();
+
+    private UserStore(Path file, MutationLog log) {
+        this.file = file;
+        this.binary = UserRecordFile.isRecordFile(file);
+        this.log = log;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    // 스냅샷 파일을 읽고 변경 로그를 replay해서 저장소 생성 (파일이 없으면 빈 저장소)
+    public static UserStore load(Path file, MutationLog log) throws IOException {
+        long started = System.nanoTime();
+        UserStore store = new UserStore(file, log);
+        // 압축 도중 죽어서 남은 임시 파일은 버린다 (원본 스냅샷과 로그가 그대로 있음)
+        Files.deleteIfExists(tempFileOf(file));
+        Files.deleteIfExists(tempFileOf(UserRecordFile.indexFileOf(file)));
+        if (Files.exists(file) && store.binary) {
+            // 바이너리 스냅샷은 디코딩하지 않고 열어만 둔다 (조회할 때 인덱스로 필요한 레코드만 읽음)
+            UserRecordFile base = UserRecordFile.open(file);
+            store.layers = new Layers(base, null, new Delta());
+            store.count.set(base.liveCount());
+        } else if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                int lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isEmpty()) continue;
+                    try {
+                        User user = User.parse(line);
+                        store.put(store.keyOf(user), user);
+                    } catch (JsonTokenizer.JsonException e) {
+                        System.out.println(file + " " + lineNumber + "번째 줄을 읽지 못해 건너뜁니다: " + e.getMessage());
+                    }
+                }
+            }
+        }
+        long loadedVersion = store.version.get();
+        long fileModified = Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : 0;
+        log.open((type, payload) -> {
+            if (type == MutationLog.UPSERT) {
+                User user = User.parse(payload);
+                store.put(store.keyOf(user), user);
+            } else {
+                store.remove(payload);
+            }
+        });
+        // replay한 변경이 있으면 스냅샷은 오래된 것이므로 snapshotVersion을 맞추지 않는다 (다음 압축에서 새로 쓴다)
+        boolean replayed = store.version.get() != loadedVersion;
+        if (!replayed) store.snapshotVersion = loadedVersion;
+        // replay가 lastModified를 지금 시각으로 바꿔 두므로 스냅샷과 로그 파일의 수정 시각으로 되돌린다
+        long modified = Math.max(fileModified, log.replayedModified());
+        store.lastModified = modified > 0 ? modified : System.currentTimeMillis();
+        if (Files.exists(file) || replayed) store.stored = true;
+        store.loadNanos = System.nanoTime() - started;
+        return store;
+    }
+
+    // 저장된 사용자 데이터(users.txt 스냅샷 또는 변경 로그)가 있는지 (파일을 보지 않고 메모리의 값만 읽음)
+    public boolean exists() {
+        return count.get() > 0 || stored;
+    }
+
+    public long version() {
+        return version.get();
+    }
+
+    public long lastModified() {
+        return lastModified;
+    }
+
+    public long loadNanos() {
+        return loadNanos;
+    }
+
+    // 현재 세대 변경 로그 크기
+    public long walSize() {
+        return log.size();
+    }
+
+    public MetricsHistogram walFlushTimes() {
+        return log.flushTimes();
+    }
+
+    public MetricsHistogram compactionTimes() {
+        return compactionTimes;
+    }
+
+    public int size() {
+        return (int) Math.min(count.get(), Integer.MAX_VALUE);
+    }
+
+    public User get(String id) {
+        return layers.get(id);
+    }
+
+    // key 필드 값이 value와 정확히 일치하는 사용자 목록
+    public List<User> findBy(String key, String value) {
+        return streamBy(key, value).collect(Collectors.toList());
+    }
+
+    // key 필드 값이 value와 정확히 일치하는 사용자를 하나씩 흘려보내는 스트림 (결과를 모아두지 않음)
+    public Stream<User> streamBy(String key, String value) {
+        if (key.equals("id")) {
+            return Stream.ofNullable(get(value));
+        }
+
+        return layered(layers, delta -> {
+            Map<String, Set<String>> index = delta.indexes.get(key);
+            if (index == null) return delta.users.values().stream();
+            // 인덱스를 읽는 사이에 지워진 사용자는 건너뛴다
+            return index.getOrDefault(value, Collections.emptySet()).stream()
+                .map(delta.users::get)
+                .filter(Objects::nonNull);
+        }, base -> {
+            Iterator<User> users = base.withValue(key, value);
+            return users != null ? users : base.latest();
+        })
+            // 인덱스가 없는 필드는 메모리에서 파싱된 필드 값을 그대로 비교
+            .filter(user -> value.equals(user.field(key)));
+    }
+
+    // 쿼리 조건에 맞는 사용자 스트림
+    // 가장 범위가 좁은 인덱스(id, 값 일치, age 범위 순)로 후보를 고른 뒤 나머지 조건으로 거른다
+    // 페이지 조회면 id 순서로 cursor 다음부터, offset만큼 건너뛴 결과를 준다 (limit은 받는 쪽에서)
+    public Stream<User> query(UserQuery query) {
+        Layers layers = this.layers;
+        if (layers.base == null && layers.frozen == null) return query(layers.active, query);
+
+        // 층마다 따로 후보를 고른다 (스냅샷 파일은 id 인덱스나 postings로)
+        Stream<User> matched = layered(layers, delta -> candidateUsers(delta, query), base -> baseCandidates(base, query))
+            .filter(query::matches);
+        if (!query.paged()) return matched;
+
+        // 스냅샷 파일에는 id 정렬 인덱스가 없으므로 후보를 한 번 훑으며 cursor 다음 id를 작은 것부터 offset + limit + 1명만 남긴다
+        // (한 명 더 남겨서 받는 쪽이 다음 페이지가 있는지 알 수 있게 함)
+        long wanted = (long) query.offset + (query.limit < 0 ? UserQuery.MAX_LIMIT : query.limit) + 1;
+        Comparator<User> byId = Comparator.comparing(User::id);
+        PriorityQueue<User> page = new PriorityQueue<>(byId.reversed());
+        matched.filter(user -> user.id() != null && (query.cursor == null || user.id().compareTo(query.cursor) > 0))
+            .forEach(user -> {
+                page.add(user);
+                if (page.size() > wanted) page.poll();
+            });
+        List<User> sorted = new ArrayList<>(page);
+        sorted.sort(byId);
+        return sorted.stream().skip(query.offset);
+    }
+
+    // 층 하나(텍스트 형식에서는 전체)에 대한 쿼리
+    private static Stream<User> query(Delta delta, UserQuery query) {
+        if (!query.paged()) return candidateUsers(delta, query).filter(query::matches);
+
+        Collection<String> candidates = candidatesOf(delta, query);
+        Stream<String> ids;
+        if (candidates != null && candidates.size() <= SORT_CANDIDATES_LIMIT) {
+            // 후보가 적으면 후보만 정렬
+            ids = candidates.stream()
+                .filter(id -> query.cursor == null || id.compareTo(query.cursor) > 0)
+                .sorted();
+        } else {
+            // 후보가 많으면 정렬된 id를 cursor부터 훑으면서 조건으로 거름 (페이지가 차면 멈춘다)
+            ids = (query.cursor == null ? delta.sortedIds : delta.sortedIds.tailSet(query.cursor, false)).stream();
+        }
+        return ids.map(delta.users::get)
+            .filter(Objects::nonNull)
+            // id가 없는 사용자(#번호 키)는 cursor를 만들 수 없으므로 페이지 조회에서 뺀다
+            .filter(user -> user.id() != null && query.matches(user))
+            .skip(query.offset);
+    }
+
+    // 층에서 인덱스로 고른 후보 사용자 (쓸 수 있는 인덱스가 없으면 층 전체)
+    private static Stream<User> candidateUsers(Delta delta, UserQuery query) {
+        Collection<String> candidates = candidatesOf(delta, query);
+        return candidates == null ? delta.users.values().stream()
+            : candidates.stream().map(delta.users::get).filter(Objects::nonNull);
+    }
+
+    // 인덱스로 고른 후보 id (쓸 수 있는 인덱스가 없으면 null)
+    private static Collection<String> candidatesOf(Delta delta, UserQuery query) {
+        Collection<String> best = null;
+        for (UserQuery.Condition condition : query.conditions) {
+            if (condition.op != UserQuery.Op.EQ) continue;
+            Collection<String> ids;
+            if (condition.field.equals("id")) {
+                ids = delta.users.containsKey(condition.value) ? Collections.singleton(condition.value) : Collections.emptySet();
+            } else {
+                Map<String, Set<String>> index = delta.indexes.get(condition.field);
+                if (index == null) continue;
+                ids = index.getOrDefault(condition.value, Collections.emptySet());
+            }
+            if (best == null || ids.size() < best.size()) best = ids;
+        }
+        AgeRange range = AgeRange.of(query);
+        if (best != null || range == null) return best;
+        if (range.isEmpty()) return Collections.emptySet();
+
+        // 구간 안의 값마다 있는 id 집합을 이어 붙인 뷰 (크기는 집합 크기의 합이라 age처럼 값 종류가 적으면 바로 나온다)
+        NavigableMap<Double, Set<String>> values = delta.rangeIndex.subMap(range.lower, range.lowerInclusive, range.upper, range.upperInclusive);
+        return new AbstractCollection<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return values.values().stream().flatMap(Set::stream).iterator();
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+                for (Set<String> ids : values.values()) {
+                    size += ids.size();
+                }
+                return size;
+            }
+        };
+    }
+
+    // 스냅샷 파일에서 쿼리에 맞을 수 있는 레코드 (id, 또는 postings로 고를 수 있는 조건 중 가장 좁은 것, 없으면 전체)
+    private static Iterator<User> baseCandidates(UserRecordFile base, UserQuery query) {
+        String field = null;
+        String value = null;
+        long best = Long.MAX_VALUE;
+        for (UserQuery.Condition condition : query.conditions) {
+            if (condition.op != UserQuery.Op.EQ) continue;
+            if (condition.field.equals("id")) {
+                User user = readBase(base, condition.value);
+                return user == null ? Collections.emptyIterator() : Collections.singletonList(user).iterator();
+            }
+            long size = base.countWithValue(condition.field, condition.value);
+            if (size >= 0 && size < best) {
+                field = condition.field;
+                value = condition.value;
+                best = size;
+            }
+        }
+        AgeRange range = AgeRange.of(query);
+        if (range != null) {
+            if (range.isEmpty()) return Collections.emptyIterator();
+            // postings 구간은 양 끝을 포함하므로 끝 값의 포함 여부는 나머지 조건 검사에서 거른다
+            if (base.countByAge(range.lower, range.upper) < best) return base.byAge(range.lower, range.upper);
+        }
+        return field != null ? base.withValue(field, value) : base.latest();
+    }
+
+    // 쿼리의 age 범위 조건들을 합친 구간
+    private static final class AgeRange {
+        double lower = Double.NEGATIVE_INFINITY;
+        double upper = Double.POSITIVE_INFINITY;
+        boolean lowerInclusive = true;
+        boolean upperInclusive = true;
+
+        // 범위 조건이 없으면 null
+        static AgeRange of(UserQuery query) {
+            AgeRange range = null;
+            for (UserQuery.Condition condition : query.conditions) {
+                if (!condition.isRange() || !condition.field.equals(RANGE_INDEXED_FIELD)) continue;
+                // 같은 필드의 범위 조건은 하나의 구간으로 합친다
+                if (range == null) range = new AgeRange();
+                boolean inclusive = condition.op == UserQuery.Op.GE || condition.op == UserQuery.Op.LE;
+                if (condition.op == UserQuery.Op.GT || condition.op == UserQuery.Op.GE) {
+                    if (condition.number > range.lower || (condition.number == range.lower && !inclusive)) {
+                        range.lower = condition.number;
+                        range.lowerInclusive = inclusive;
+                    }
+                } else if (condition.number < range.upper || (condition.number == range.upper && !inclusive)) {
+                    range.upper = condition.number;
+                    range.upperInclusive = inclusive;
+                }
+            }
+            return range;
+        }
+
+        boolean isEmpty() {
+            return lower > upper || (lower == upper && !(lowerInclusive && upperInclusive));
+        }
+    }
+
+    // 전체 사용자를 하나씩 흘려보내는 스트림
+    public Stream<User> streamAll() {
+        return layered(layers, delta -> delta.users.values().stream(), UserRecordFile::latest);
+    }
+
+    // 층마다 고른 사용자를 위 층부터 이어 붙인 스트림 (아래 층의 사용자는 위 층에 같은 id가 있거나 지워졌으면 뺀다)
+    // 스냅샷 파일은 스트림을 읽어 나갈 때 필요한 만큼만 읽는다 (읽기 오류는 UncheckedIOException)
+    private static Stream<User> layered(Layers layers, Function<Delta, Stream<User>> fromDelta,
+                                        Function<UserRecordFile, Iterator<User>> fromBase) {
+        Stream<User> users = fromDelta.apply(layers.active);
+        if (layers.frozen != null) {
+            users = Stream.concat(users, fromDelta.apply(layers.frozen).filter(user -> !layers.active.hides(user.id())));
+        }
+        if (layers.base != null) {
+            Stream<User> base = StreamSupport.stream(() -> Spliterators.spliteratorUnknownSize(fromBase.apply(layers.base), 0), 0, false);
+            users = Stream.concat(users, base.filter(user -> !layers.hidesBase(user.id())));
+        }
+        return users;
+    }
+
+    // 스냅샷 파일이 JSON 줄 형식이라 그대로 응답 본문으로 보낼 수 있는지
+    public boolean hasTextSnapshot() {
+        return !binary;
+    }
+
+    // 전체 사용자 (한 줄에 한 명)
+    public String allAsText() {
+        StringBuilder content = new StringBuilder();
+        streamAll().forEach(user -> {
+            user.appendJson(content);
+            content.append("\n");
+        });
+        return content.toString();
+    }
+
+    // 사용자 추가 (같은 id가 있으면 교체)
+    public void insert(User user) throws IOException {
+        String id = keyOf(user);
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            log.appendUpsert(user.toJson());
+            put(id, user);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // id에 해당하는 사용자 정보 교체, 없으면 false
+    public boolean update(String id, User user) throws IOException {
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            if (!layers.contains(id)) return false;
+            log.appendUpsert(user.toJson());
+            put(id, user);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // id에 해당하는 사용자 삭제, 없으면 false
+    public boolean delete(String id) throws IOException {
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            if (!layers.contains(id)) return false;
+            log.appendTombstone(id);
+            remove(id);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 여러 사용자를 한 번에 추가 (같은 id가 있으면 교체)
+    // 관련된 스트라이프 락을 번호 순서대로 모두 잡고 변경 로그에 한 번 기록(fsync 한 번)한 뒤 메모리에 반영한다
+    public void insertAll(List<User> batch) throws IOException {
+        if (batch.isEmpty()) return;
+        List<String> ids = new ArrayList<>(batch.size());
+        List<String> jsons = new ArrayList<>(batch.size());
+        boolean[] locked = new boolean[stripes.length];
+        for (User user : batch) {
+            String id = keyOf(user);
+            ids.add(id);
+            jsons.add(user.toJson());
+            locked[Math.floorMod(id.hashCode(), stripes.length)] = true;
+        }
+        // 번호 순서대로 잡아서 다른 일괄 추가와 교착되지 않게 함
+        for (int i = 0; i < stripes.length; i++) {
+            if (locked[i]) stripes[i].lock();
+        }
+        try {
+            log.appendUpserts(jsons);
+            for (int i = 0; i < batch.size(); i++) {
+                put(ids.get(i), batch.get(i));
+            }
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                if (locked[i]) stripes[i].unlock();
+            }
+        }
+    }
+
+    // 리더에게 받은 변경 로그 레코드들을 자기 변경 로그에 바이트 그대로 기록하고 메모리에 반영 (복제 팔로워)
+    // records는 온전한 레코드만 담은 힙 버퍼, 관련 스트라이프 락을 번호 순서대로 잡고 한 번에 기록한다
+    public void applyReplicated(ByteBuffer records) throws IOException {
+        List<Byte> types = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        boolean[] locked = new boolean[stripes.length];
+        MutationLog.decode(records.duplicate(), (type, payload) -> {
+            types.add(type);
+            if (type == MutationLog.UPSERT) {
+                User user = User.parse(payload);
+                values.add(user);
+                if (user.id() != null) locked[Math.floorMod(user.id().hashCode(), stripes.length)] = true;
+            } else {
+                values.add(payload);
+                locked[Math.floorMod(payload.hashCode(), stripes.length)] = true;
+            }
+        });
+        for (int i = 0; i < stripes.length; i++) {
+            if (locked[i]) stripes[i].lock();
+        }
+        try {
+            log.appendEncoded(records);
+            for (int i = 0; i < types.size(); i++) {
+                if (types.get(i) == MutationLog.UPSERT) {
+                    User user = (User) values.get(i);
+                    put(keyOf(user), user);
+                } else {
+                    remove((String) values.get(i));
+                }
+            }
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                if (locked[i]) stripes[i].unlock();
+            }
+        }
+    }
+
+    // 전체 데이터를 users로 바꾸고 스냅샷으로 저장 (복제 팔로워가 리더의 스냅샷을 받았을 때)
+    // 이전 로그는 압축이 끝나면 지워지므로, 도중에 죽으면 이전 스냅샷과 로그로 다시 시작한다
+    public void replaceAll(List<User> replacement) throws IOException {
+        // 진행 중인 압축이 이전 데이터로 층 구성을 되돌리지 않도록 압축 락부터 잡는다
+        synchronized (compactLock) {
+            lockAll();
+            try {
+                layers = new Layers(null, null, new Delta());
+                count.set(0);
+                for (User user : replacement) {
+                    put(keyOf(user), user);
+                }
+                version.incrementAndGet();
+            } finally {
+                unlockAll();
+            }
+            compact();
+        }
+    }
+
+    // 변경 로그를 기록할 때마다 listener에 넘김 (복제 리더)
+    public void replicateTo(MutationLog.Listener listener) {
+        log.setListener(listener);
+    }
+
+    // 한 시점의 전체 사용자 목록과 그때의 버전 (모든 스트라이프 락을 잡은 채 복사하므로 도중의 변경이 섞이지 않음)
+    // position은 그 시점까지 기록한 변경 로그 바이트 수 (락을 잡은 동안에는 기록 중인 변경이 없으므로 목록과 정확히 맞음)
+    // 바이너리 형식이면 힙의 변경만 복사하고, 스냅샷 파일(과 압축 중인 층)은 바뀌지 않으므로 목록을 읽을 때 그대로 읽는다
+    public Snapshot consistentSnapshot() {
+        lockAll();
+        try {
+            Layers layers = this.layers;
+            if (layers.base == null && layers.frozen == null) {
+                List<User> users = new ArrayList<>(layers.active.users.values());
+                return new Snapshot(version.get(), log.position(), users, users.size());
+            }
+            Layers view = new Layers(layers.base, layers.frozen, layers.active.copy());
+            return new Snapshot(version.get(), log.position(),
+                () -> layered(view, delta -> delta.users.values().stream(), UserRecordFile::latest).iterator(), size());
+        } finally {
+            unlockAll();
+        }
+    }
+
+    // consistentSnapshot()의 결과
+    public static final class Snapshot {
+        public final long version;
+        public final long position;
+        // 사용자 목록 (바이너리 형식이면 읽어 나가면서 스냅샷 파일을 읽음)
+        public final Iterable<User> users;
+        public final int size;
+
+        Snapshot(long version, long position, Iterable<User> users, int size) {
+            this.version = version;
+            this.position = position;
+            this.users = users;
+            this.size = size;
+        }
+    }
+
+    // 조회할 층 구성: 위에서부터 변경을 받는 active 층, 압축 중이면 압축하고 있는 frozen 층, 스냅샷 파일 base
+    // 위 층에 같은 id가 있거나 위 층에서 지운 id면 아래 층의 것은 보지 않는다
+    private static final class Layers {
+        final UserRecordFile base;
+        final Delta frozen;
+        final Delta active;
+
+        Layers(UserRecordFile base, Delta frozen, Delta active) {
+            this.base = base;
+            this.frozen = frozen;
+            this.active = active;
+        }
+
+        User get(String id) {
+            User user = active.users.get(id);
+            if (user != null || active.removed.contains(id)) return user;
+            if (frozen != null) {
+                user = frozen.users.get(id);
+                if (user != null || frozen.removed.contains(id)) return user;
+            }
+            return base == null ? null : readBase(base, id);
+        }
+
+        boolean contains(String id) {
+            return active.users.containsKey(id) || (!active.removed.contains(id) && containsBelow(id));
+        }
+
+        // active 아래 층(frozen, base)에 id가 있는지
+        boolean containsBelow(String id) {
+            if (frozen != null && frozen.users.containsKey(id)) return true;
+            if (frozen != null && frozen.removed.contains(id)) return false;
+            try {
+                return base != null && base.contains(id);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // 스냅샷 파일의 id가 위 층에 가려지는지
+        boolean hidesBase(String id) {
+            return active.hides(id) || (frozen != null && frozen.hides(id));
+        }
+    }
+
+    // 힙에 두는 사용자 층 (텍스트 형식이면 전체, 바이너리 형식이면 스냅샷 이후의 변경만)
+    private static final class Delta {
+        // id → 사용자
+        final Map<String, User> users = new ConcurrentHashMap<>();
+        // 이 층에서 지운 id (아래 층에 있던 것만)
+        final Set<String> removed = ConcurrentHashMap.newKeySet();
+        // 필드 이름 → (값 → id 집합)
+        final Map<String, Map<String, Set<String>>> indexes = new HashMap<>();
+        // id 정렬 인덱스 (cursor 페이지 조회용)
+        final NavigableSet<String> sortedIds = new ConcurrentSkipListSet<>();
+        // age 숫자 값 → id 집합 (숫자가 아닌 age는 들어가지 않음)
+        final NavigableMap<Double, Set<String>> rangeIndex = new ConcurrentSkipListMap<>();
+
+        Delta() {
+            for (String field : INDEXED_FIELDS) {
+                indexes.put(field, new ConcurrentHashMap<>());
+            }
+        }
+
+        // 사용자 목록과 지운 id만 복사 (인덱스는 비워 둠, 훑어 읽기용)
+        Delta copy() {
+            Delta copy = new Delta();
+            copy.users.putAll(users);
+            copy.removed.addAll(removed);
+            return copy;
+        }
+
+        // id가 이 층에 있거나 이 층에서 지워졌는지
+        boolean hides(String id) {
+            return id != null && (users.containsKey(id) || removed.contains(id));
+        }
+
+        // 맵에 먼저 넣고 지운 id에서 빼므로, 락 없이 읽는 쪽은 둘 중 하나(이전 또는 새 상태)만 본다
+        void put(String id, User user) {
+            User old = users.put(id, user);
+            removed.remove(id);
+            if (old != null) unindex(id, old);
+            index(id, user);
+        }
+
+        // hideBelow면 아래 층의 같은 id를 가린다
+        void remove(String id, boolean hideBelow) {
+            if (hideBelow) removed.add(id);
+            User old = users.remove(id);
+            if (old != null) unindex(id, old);
+            sortedIds.remove(id);
+        }
+
+        private void index(String id, User user) {
+            sortedIds.add(id);
+            double number = rangeValueOf(user);
+            if (!Double.isNaN(number)) {
+                rangeIndex.compute(number, (v, ids) -> {
+                    if (ids == null) ids = ConcurrentHashMap.newKeySet();
+                    ids.add(id);
+                    return ids;
+                });
+            }
+            for (String field : INDEXED_FIELDS) {
+                String value = user.field(field);
+                if (value == null) continue;
+                indexes.get(field).compute(value, (v, ids) -> {
+                    if (ids == null) ids = ConcurrentHashMap.newKeySet();
+                    ids.add(id);
+                    return ids;
+                });
+            }
+        }
+
+        private void unindex(String id, User user) {
+            double number = rangeValueOf(user);
+            if (!Double.isNaN(number)) {
+                rangeIndex.computeIfPresent(number, (v, ids) -> {
+                    ids.remove(id);
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
+            for (String field : INDEXED_FIELDS) {
+                String value = user.field(field);
+                if (value == null) continue;
+                // 빈 집합 제거와 다른 id의 추가가 엇갈리지 않도록 값 단위로 원자적으로 처리
+                indexes.get(field).computeIfPresent(value, (v, ids) -> {
+                    ids.remove(id);
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
+        }
+    }
+
+    private ReentrantLock lockFor(String id) {
+        return stripes[Math.floorMod(id.hashCode(), stripes.length)];
+    }
+
+    private void lockAll() {
+        for (ReentrantLock lock : stripes) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+
+    // 스트라이프 락을 잡은 채 호출 (층 구성이 바뀌지 않음)
+    private void put(String id, User user) {
+        Layers layers = this.layers;
+        if (!layers.contains(id)) count.incrementAndGet();
+        layers.active.put(id, user);
+        if (!stored) stored = true;
+        lastModified = System.currentTimeMillis();
+        version.incrementAndGet();
+    }
+
+    private void remove(String id) {
+        Layers layers = this.layers;
+        boolean below = layers.containsBelow(id);
+        if (layers.active.users.containsKey(id) || (below && !layers.active.removed.contains(id))) count.decrementAndGet();
+        layers.active.remove(id, below);
+        if (!stored) stored = true;
+        lastModified = System.currentTimeMillis();
+        version.incrementAndGet();
+    }
+
+    private String keyOf(User user) {
+        String id = user.id();
+        return id != null ? id : "#" + anonymousCount.getAndIncrement();
+    }
+
+    private static double rangeValueOf(User user) {
+        String value = user.field(RANGE_INDEXED_FIELD);
+        return value == null ? Double.NaN : UserQuery.toNumber(value);
+    }
+
+    // 스냅샷 파일에서 id 하나 읽기 (읽기 오류는 UncheckedIOException)
+    private static User readBase(UserRecordFile base, String id) {
+        try {
+            return base.get(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 스냅샷 압축: 새 로그 세대로 넘어간 시점의 사용자들로 스냅샷을 새로 쓰고 원자적으로 교체한 뒤 이전 로그 삭제
+    public void compact() throws IOException {
+        synchronized (compactLock) {
+            long started = System.nanoTime();
+            if (binary) {
+                compactRecordFile();
+            } else {
+                compactText();
+            }
+            compactionTimes.recordNanos(System.nanoTime() - started);
+        }
+    }
+
+    private void compactText() throws IOException {
+        long generation = log.rotate();
+        // 이전 세대 로그에 기록된 변경이 메모리에 모두 반영될 때까지 대기
+        // (변경은 스트라이프 락을 잡은 채 로그 기록 → 메모리 반영을 하므로, 락을 한 바퀴 잡았다 놓으면 끝난 것이 보장됨)
+        for (ReentrantLock lock : stripes) {
+            lock.lock();
+            lock.unlock();
+        }
+        // 이후에 반영되는 변경은 새 세대 로그에 있으므로 스냅샷에 섞여도 replay 결과는 같다
+        long snapshotAt = version.get();
+        List<User> snapshot = new ArrayList<>(layers.active.users.values());
+
+        Path temp = tempFileOf(file);
+        writeTextSnapshot(temp, snapshot);
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        log.deleteUpTo(generation);
+        snapshotVersion = snapshotAt;
+    }
+
+    // 바이너리 형식 압축: 락을 모두 잡고 로그 세대를 넘기면서 active 층을 frozen 층으로 얼린 뒤 (이후 변경은 새 active 층으로)
+    // 바뀌지 않는 스냅샷 파일 + frozen 층을 흘려 읽으며 새 users.dat를 쓰고, 새 파일로 frozen 층을 대신한다
+    private void compactRecordFile() throws IOException {
+        long generation;
+        long snapshotAt;
+        Layers frozen;
+        lockAll();
+        try {
+            // 락을 잡은 동안에는 기록 중인 변경이 없으므로 이전 세대 로그의 변경은 정확히 지금 층들에 있다
+            generation = log.rotate();
+            snapshotAt = version.get();
+            frozen = new Layers(layers.base, layers.active, new Delta());
+            layers = frozen;
+        } finally {
+            unlockAll();
+        }
+
+        UserRecordFile base;
+        try {
+            // 데이터 파일을 먼저 교체 (인덱스 교체 전에 죽으면 스탬프가 맞지 않아 다음에 열 때 인덱스를 다시 만든다)
+            Path temp = tempFileOf(file);
+            Path index = UserRecordFile.indexFileOf(file);
+            try (UserRecordFile.Writer writer = new UserRecordFile.Writer(temp)) {
+                Iterator<User> users = layered(new Layers(frozen.base, null, frozen.frozen),
+                    delta -> delta.users.values().stream(), UserRecordFile::latest).iterator();
+                while (users.hasNext()) {
+                    writer.add(users.next());
+                }
+                writer.finish(tempFileOf(index));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tempFileOf(index), index, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            base = UserRecordFile.open(file);
+        } catch (IOException | RuntimeException e) {
+            thaw(frozen);
+            throw e;
+        }
+
+        // 이전 스냅샷 파일은 아직 읽고 있는 조회나 consistentSnapshot()이 있을 수 있어 닫지 않는다
+        // (참조가 모두 없어지면 GC가 채널을 닫고 매핑을 푼다, 압축 한 번에 하나씩만 생김)
+        lockAll();
+        try {
+            layers = new Layers(base, null, layers.active);
+        } finally {
+            unlockAll();
+        }
+        log.deleteUpTo(generation);
+        snapshotVersion = snapshotAt;
+    }
+
+    // 압축이 실패하면 얼렸던 층을 다시 active 층에 합친다 (active 층에 같은 id가 있으면 그쪽이 최신)
+    // 이전 세대 로그는 지우지 않았으므로 다시 시작해도 같은 결과로 replay된다
+    private void thaw(Layers frozen) {
+        lockAll();
+        try {
+            Delta active = layers.active;
+            for (Map.Entry<String, User> entry : frozen.frozen.users.entrySet()) {
+                if (!active.hides(entry.getKey())) active.put(entry.getKey(), entry.getValue());
+            }
+            for (String id : frozen.frozen.removed) {
+                if (!active.hides(id)) active.remove(id, true);
+            }
+            layers = new Layers(frozen.base, null, active);
+        } finally {
+            unlockAll();
+        }
+    }
+
+    // 사용자들을 JSON 줄로 temp에 쓰고 fsync
+    private static void writeTextSnapshot(Path temp, List<User> snapshot) throws IOException {
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            StringBuilder text = new StringBuilder(128);
+            for (User user : snapshot) {
+                text.setLength(0);
+                user.appendJson(text);
+                byte[] line = text.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+                if (line.length > buffer.remaining()) {
+                    writeFully(channel, buffer);
+                    if (line.length > buffer.capacity()) {
+                        ByteBuffer large = ByteBuffer.wrap(line);
+                        while (large.hasRemaining()) {
+                            channel.write(large);
+                        }
+                        continue;
+                    }
+                }
+                buffer.put(line);
+            }
+            writeFully(channel, buffer);
+            channel.force(true);
+        }
+    }
+
+    // 메모리 데이터와 같은 내용의 users.txt 경로, 압축되지 않은 변경이 있으면 null
+    // (요청 스레드에서 압축하지 않는다: 오래된 동안은 메모리에서 응답하고 압축은 백그라운드 압축기만 한다)
+    public Path currentSnapshot() {
+        return version.get() == snapshotVersion ? file : null;
+    }
+
+    // intervalSeconds마다 변경 로그가 thresholdBytes를 넘었으면 압축
+    public void startCompactor(int intervalSeconds, long thresholdBytes) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "user-store-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                // replay한 이전 세대 로그도 세어서 재시작 후 남은 로그도 압축되게 한다
+                if (log.totalSize() >= thresholdBytes) compact();
+            } catch (IOException | UncheckedIOException e) {
+                System.out.println(file.getFileName() + " 압축 중 오류가 발생했습니다: " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    // buffer에 쌓인 내용을 모두 쓰고 비우기
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static Path tempFileOf(Path file) {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+}
@@ -0,0 +1,125 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 동시 POST/PUT/DELETE 스트레스 테스트
+// 스레드마다 자기 id들만 변경하고 마지막으로 보낸 값을 기억해 두었다가, 끝난 뒤 서버의 값과 비교해 사라진 변경이 없는지 확인한다
+// 실행: java UserStressTest --host=localhost --port=7070 --threads=16 --users=50 --ops=200
+public class UserStressTest {
+    public static void main(String[] args) throws InterruptedException {
+        ServerConfig config = new ServerConfig(args);
+        String hostname = config.get("host", "localhost");
+        int port = config.getInt("port", 7070);
+        int threadCount = config.getInt("threads", 16);
+        int usersPerThread = config.getInt("users", 50);
+        int opsPerThread = config.getInt("ops", 200);
+
+        HttpClient.printResponses = false;
+
+        // id → 마지막으로 성공한 age 값 (삭제됐으면 "")
+        Map<String, String> expected = new ConcurrentHashMap<>();
+        AtomicInteger failures = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int t = 0; t < threadCount; t++) {
+            int seed = t;
+            Thread thread = new Thread(() -> {
+                try (Socket socket = new Socket(hostname, port)) {
+                    PrintWriter writer = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(socket.getOutputStream()), StandardCharsets.UTF_8));
+                    InputStream reader = new BufferedInputStream(socket.getInputStream());
+                    runWorker(writer, reader, hostname, seed, usersPerThread, opsPerThread, expected, failures);
+                } catch (IOException e) {
+                    System.out.println("스레드 " + seed + " 연결 오류: " + e.getMessage());
+                    failures.incrementAndGet();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // 서버에 남은 값과 비교
+        int lost = 0;
+        try (Socket socket = new Socket(hostname, port)) {
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(socket.getOutputStream()), StandardCharsets.UTF_8));
+            InputStream reader = new BufferedInputStream(socket.getInputStream());
+            for (Map.Entry<String, String> entry : expected.entrySet()) {
+                HttpClient.Response response = HttpClient.sendGetRequestWithKeyValue(writer, reader, hostname, "id", entry.getKey());
+                boolean deleted = entry.getValue().isEmpty();
+                boolean ok = deleted
+                    ? response != null && response.statusCode == 404
+                    : response != null && response.statusCode == 200 && response.body.contains("\"age\":\"" + entry.getValue() + "\"");
+                if (!ok) {
+                    lost++;
+                    System.out.println("불일치: id=" + entry.getKey() + " 기대값=" + (deleted ? "(삭제됨)" : entry.getValue())
+                        + " 응답=" + (response == null ? "없음" : response.statusCode + " " + response.body.trim()));
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("검증 중 연결 오류: " + e.getMessage());
+            System.exit(1);
+        }
+
+        int totalOps = threadCount * (usersPerThread + opsPerThread);
+        System.out.println("요청 " + totalOps + "개, " + elapsedMillis + "ms, 실패 응답 " + failures.get() + "개, 사라진 변경 " + lost + "개");
+        System.exit(lost == 0 && failures.get() == 0 ? 0 : 1);
+    }
+
+    private static void runWorker(PrintWriter writer, InputStream reader, String hostname, int seed,
+                                  int userCount, int opCount, Map<String, String> expected, AtomicInteger failures) throws IOException {
+        Random random = new Random(seed);
+        List<String> ids = new ArrayList<>();
+        Map<String, String> local = new HashMap<>();
+
+        for (int i = 0; i < userCount; i++) {
+            String id = UUID.randomUUID().toString();
+            HttpClient.Response response = HttpClient.sendPostRequest(writer, reader, hostname, id, "stress" + seed, "Seoul", "010-0000-0000", "0");
+            if (response == null || response.statusCode != 201) {
+                failures.incrementAndGet();
+                continue;
+            }
+            ids.add(id);
+            local.put(id, "0");
+        }
+        if (ids.isEmpty()) return;
+
+        for (int op = 1; op <= opCount; op++) {
+            String id = ids.get(random.nextInt(ids.size()));
+            boolean deleted = local.get(id).isEmpty();
+            HttpClient.Response response;
+
+            if (deleted) {
+                // 삭제된 사용자는 다시 추가
+                response = HttpClient.sendPostRequest(writer, reader, hostname, id, "stress" + seed, "Seoul", "010-0000-0000", String.valueOf(op));
+                if (response != null && response.statusCode == 201) local.put(id, String.valueOf(op));
+                else failures.incrementAndGet();
+            } else if (random.nextInt(10) == 0) {
+                response = HttpClient.sendDeleteRequest(writer, reader, hostname, id);
+                if (response != null && response.statusCode == 200) local.put(id, "");
+                else failures.incrementAndGet();
+            } else {
+                response = HttpClient.sendPutRequest(writer, reader, hostname, id, "stress" + seed, "Busan", "010-1111-1111", String.valueOf(op));
+                if (response != null && response.statusCode == 200) local.put(id, String.valueOf(op));
+                else failures.incrementAndGet();
+            }
+        }
+        expected.putAll(local);
+    }
+}